@@ -1,11 +1,14 @@
 package com.shop.authservice;
 
+import com.shop.common.config.VirtualThreadConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableScheduling
 @SpringBootApplication
+@Import(VirtualThreadConfig.class)
 public class AuthServiceApplication {
 
     public static void main(String[] args) {
@@ -1,13 +0,0 @@
-package com.shop.authservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class CartInfoResponse {
-    private String correlationId;
-    private boolean cartHasItems;
-}
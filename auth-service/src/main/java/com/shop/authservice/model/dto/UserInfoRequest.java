@@ -1,13 +0,0 @@
-package com.shop.authservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class UserInfoRequest {
-    private String userId;
-    private String correlationId;
-}
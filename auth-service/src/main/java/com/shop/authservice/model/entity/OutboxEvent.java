@@ -14,6 +14,7 @@ public class OutboxEvent {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String topic;
+    private String messageKey;
     private String eventType;
     @Lob
     @Column(columnDefinition = "TEXT")
@@ -22,8 +23,9 @@ public class OutboxEvent {
     private LocalDateTime sentAt;
     private LocalDateTime createdAt = LocalDateTime.now();
 
-    public OutboxEvent(String topic, String payload, String eventType) {
+    public OutboxEvent(String topic, String messageKey, String payload, String eventType) {
         this.topic = topic;
+        this.messageKey = messageKey;
         this.eventType = eventType;
         this.payload = payload;
     }
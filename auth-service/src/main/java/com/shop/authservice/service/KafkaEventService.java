@@ -8,18 +8,30 @@ import com.shop.authservice.model.entity.OutboxEvent;
 import com.shop.authservice.model.entity.User;
 import com.shop.authservice.repository.OutboxEventRepository;
 import com.shop.authservice.repository.UserRepository;
+import com.shop.common.contract.CartInfoRequest;
+import com.shop.common.contract.CartInfoResponse;
+import com.shop.common.contract.UserCustomerInfoRequest;
+import com.shop.common.contract.UserDataOperationEvent;
+import com.shop.common.contract.UserEmailRequest;
+import com.shop.common.contract.UserEmailResponse;
+import com.shop.common.contract.UserInfoRequest;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
+import com.shop.common.kafka.RequestDeadline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -29,8 +41,8 @@ public class KafkaEventService {
     private final ObjectMapper objectMapper;
     private final UserRepository userRepository;
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final Map<String, CompletableFuture<Boolean>> pendingCartChecks = new ConcurrentHashMap<>();
-    private final Map<String, CompletableFuture<List<UserCustomerDto>>> customersInfoRequests = new ConcurrentHashMap<>();
+    private final ReplyRouting replyRouting;
+    private final PendingRequestRegistry pendingRequests;
     private final OutboxEventRepository outboxEventRepository;
 
     public void sendRegistrationEvent(String email, Activation activation) {
@@ -45,6 +57,7 @@ public class KafkaEventService {
             String json = objectMapper.writeValueAsString(register);
             OutboxEvent event = new OutboxEvent(
                     "user-registration-events",
+                    email,
                     json,
                     register.getClass().getName()
             );
@@ -66,6 +79,7 @@ public class KafkaEventService {
             String json = objectMapper.writeValueAsString(register);
             OutboxEvent event = new OutboxEvent(
                     "user-password-reset-events",
+                    email,
                     json,
                     register.getClass().getName()
             );
@@ -84,7 +98,7 @@ public class KafkaEventService {
             try {
                 Object mappedClass = objectMapper
                         .readValue(event.getPayload(), Class.forName(event.getEventType()));
-                kafkaTemplate.send(event.getTopic(), mappedClass);
+                kafkaTemplate.send(event.getTopic(), event.getMessageKey(), mappedClass);
                 event.setSent(true);
                 event.setSentAt(LocalDateTime.now());
                 outboxEventRepository.save(event);
@@ -107,37 +121,29 @@ public class KafkaEventService {
 
     public CompletableFuture<Boolean> checkCartNotEmptyRequest(Long userId) {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-        pendingCartChecks.put(correlationId, future);
-
+        Instant deadline = RequestDeadline.forRequest(Duration.ofSeconds(2));
+        CompletableFuture<Boolean> future = pendingRequests.register(
+                correlationId, RequestDeadline.remaining(deadline), "Request timed out");
+        if (future.isDone()) {
+            return future;
+        }
         try {
             CartInfoRequest cartInfoRequest = new CartInfoRequest(correlationId, String.valueOf(userId));
-            kafkaTemplate.send("cart-items-request", cartInfoRequest);
-            ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-            executor.schedule(() -> {
-                if (!future.isDone()) {
-                    future.completeExceptionally(new TimeoutException("Request timed out"));
-                    pendingCartChecks.remove(correlationId);
-                }
-            }, 2, TimeUnit.SECONDS);
+            RequestDeadline.stamp(deadline, () -> kafkaTemplate.send("cart-items-request", String.valueOf(userId), cartInfoRequest));
             log.info("Sent cart check request for user: {}", userId);
         } catch (Exception e) {
-            future.completeExceptionally(e);
-            pendingCartChecks.remove(correlationId);
+            pendingRequests.completeExceptionally(correlationId, e);
         }
         return future;
     }
 
-    @KafkaListener(topics = "cart-items-response", groupId = "auth-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "cart-items-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void checkCartNotEmptyResponse(CartInfoResponse response) {
-        CompletableFuture<Boolean> future = pendingCartChecks.remove(response.getCorrelationId());
-        if (future != null) {
-            future.complete(response.isCartHasItems());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.isCartHasItems());
     }
 
-    @KafkaListener(topics = "user-info-request", groupId = "auth-service",
+    @KafkaListener(topics = "user-info-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void getUserInfoResponse(UserInfoRequest response) {
         try {
@@ -147,13 +153,13 @@ public class KafkaEventService {
                 userInfoDto = UserInfoDto.mapToDto(user);
             }
             UserInfoResponse userInfoResponse = new UserInfoResponse(userInfoDto, response.getCorrelationId());
-            kafkaTemplate.send("user-info-response", userInfoResponse);
+            sendReply("user-info-response", userInfoResponse);
         } catch (Exception e) {
             log.error("Error processing user info request", e);
         }
     }
 
-    @KafkaListener(topics = "user-email-request", groupId = "auth-service",
+    @KafkaListener(topics = "user-email-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void getUserInfoResponse(UserEmailRequest request) {
         User user = userRepository.findById(request.getUserId()).orElse(null);
@@ -162,33 +168,40 @@ public class KafkaEventService {
         if (user == null) {
             userEmailResponse.setEmail(null);
             userEmailResponse.setErrorMessage("User not found");
-            kafkaTemplate.send("user-email-response", userEmailResponse);
+            sendReply("user-email-response", userEmailResponse);
             return;
         }
         userEmailResponse.setEmail(user.getEmail());
-        kafkaTemplate.send("user-email-response", userEmailResponse);
+        sendReply("user-email-response", userEmailResponse);
     }
 
     public CompletableFuture<List<UserCustomerDto>> getCustomerByUserIds(List<Long> list) {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<List<UserCustomerDto>> future = new CompletableFuture<>();
-        customersInfoRequests.put(correlationId, future);
+        Instant deadline = RequestDeadline.forRequest(Duration.ofSeconds(5));
+        CompletableFuture<List<UserCustomerDto>> future = pendingRequests.register(
+                correlationId, RequestDeadline.remaining(deadline), "Request timed out");
+        if (future.isDone()) {
+            return future;
+        }
         try {
             UserCustomerInfoRequest customerInfoRequest = new UserCustomerInfoRequest(correlationId, list);
-            kafkaTemplate.send("user-customer-info-request", customerInfoRequest);
+            RequestDeadline.stamp(deadline, () -> kafkaTemplate.send("user-customer-info-request", customerInfoRequest));
         } catch (Exception e) {
-            future.completeExceptionally(e);
-            customersInfoRequests.remove(correlationId);
+            pendingRequests.completeExceptionally(correlationId, e);
         }
         return future;
     }
 
-    @KafkaListener(topics = "user-customer-info-response", groupId = "auth-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "user-customer-info-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void getCustomerInfoResponse(UserCustomerInfoResponse response) {
-        CompletableFuture<List<UserCustomerDto>> future = customersInfoRequests.remove(response.getCorrelationId());
-        if (future != null) {
-            future.complete(response.getCustomers());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getCustomers());
+    }
+
+    private void sendReply(String topic, Object response) {
+        Integer partition = replyRouting.currentReplyPartition();
+        RequestDeadline.stamp(RequestDeadline.current(), () -> partition == null
+                ? kafkaTemplate.send(topic, response)
+                : kafkaTemplate.send(topic, partition, null, response));
     }
 }
@@ -8,17 +8,27 @@ import com.shop.authservice.model.entity.OutboxEvent;
 import com.shop.authservice.model.entity.User;
 import com.shop.authservice.repository.OutboxEventRepository;
 import com.shop.authservice.repository.UserRepository;
+import com.shop.common.contract.CartInfoRequest;
+import com.shop.common.contract.CartInfoResponse;
+import com.shop.common.contract.UserCustomerInfoRequest;
+import com.shop.common.contract.UserDataOperationEvent;
+import com.shop.common.contract.UserEmailRequest;
+import com.shop.common.contract.UserEmailResponse;
+import com.shop.common.contract.UserInfoRequest;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.*;
@@ -42,6 +52,13 @@ class KafkaEventServiceTest {
     @Mock
     private OutboxEventRepository outboxEventRepository;
 
+    @Spy
+    private PendingRequestRegistry pendingRequests =
+            new PendingRequestRegistry("test", 100, Duration.ofMillis(10), 64);
+
+    @Spy
+    private ReplyRouting replyRouting = new ReplyRouting(0, 1);
+
     @InjectMocks
     private KafkaEventService kafkaEventService;
 
@@ -64,6 +81,7 @@ class KafkaEventServiceTest {
 
         verify(outboxEventRepository).save(argThat(event ->
                 event.getTopic().equals("user-registration-events") &&
+                        event.getMessageKey().equals(testEmail) &&
                         event.getEventType().equals(UserDataOperationEvent.class.getName())
         ));
     }
@@ -88,6 +106,7 @@ class KafkaEventServiceTest {
     void trySendEvents_ShouldSendPendingEvents() throws Exception {
         OutboxEvent event = new OutboxEvent();
         event.setTopic("test-topic");
+        event.setMessageKey("key");
         event.setPayload("payload");
         event.setEventType(UserDataOperationEvent.class.getName());
         event.setSent(false);
@@ -97,7 +116,7 @@ class KafkaEventServiceTest {
 
         kafkaEventService.trySendEvents();
 
-        verify(kafkaTemplate).send(eq("test-topic"), any());
+        verify(kafkaTemplate).send(eq("test-topic"), eq("key"), any());
         verify(outboxEventRepository).save(argThat(OutboxEvent::isSent));
     }
 
@@ -106,15 +125,13 @@ class KafkaEventServiceTest {
         CompletableFuture<Boolean> future = kafkaEventService.checkCartNotEmptyRequest(testUserId);
 
         assertNotNull(future);
-        verify(kafkaTemplate).send(eq("cart-items-request"), any(CartInfoRequest.class));
+        verify(kafkaTemplate).send(eq("cart-items-request"), eq(String.valueOf(testUserId)), any(CartInfoRequest.class));
     }
 
     @Test
     void checkCartNotEmptyResponse_ShouldCompleteFuture() {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
-
-        getPendingCartChecks().put(correlationId, future);
+        CompletableFuture<Boolean> future = pendingRequests.register(correlationId, Duration.ofSeconds(5), "Timeout");
 
         CartInfoResponse response = new CartInfoResponse();
         response.setCorrelationId(correlationId);
@@ -171,8 +188,7 @@ class KafkaEventServiceTest {
     @Test
     void getCustomerInfoResponse_ShouldCompleteFuture() {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<List<UserCustomerDto>> future = new CompletableFuture<>();
-        getCustomersInfoRequests().put(correlationId, future);
+        CompletableFuture<List<UserCustomerDto>> future = pendingRequests.register(correlationId, Duration.ofSeconds(5), "Timeout");
 
         UserCustomerInfoResponse response = new UserCustomerInfoResponse();
         response.setCorrelationId(correlationId);
@@ -193,24 +209,4 @@ class KafkaEventServiceTest {
         verify(outboxEventRepository).deleteAllBySentTrueAndSentAtBefore(any(LocalDateTime.class));
         verify(outboxEventRepository).deleteAll();
     }
-
-    private Map<String, CompletableFuture<Boolean>> getPendingCartChecks() {
-        try {
-            var field = KafkaEventService.class.getDeclaredField("pendingCartChecks");
-            field.setAccessible(true);
-            return (Map<String, CompletableFuture<Boolean>>) field.get(kafkaEventService);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-
-    private Map<String, CompletableFuture<List<UserCustomerDto>>> getCustomersInfoRequests() {
-        try {
-            var field = KafkaEventService.class.getDeclaredField("customersInfoRequests");
-            field.setAccessible(true);
-            return (Map<String, CompletableFuture<List<UserCustomerDto>>>) field.get(kafkaEventService);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
-        }
-    }
-}
\ No newline at end of file
+}
@@ -1,9 +1,14 @@
 package com.shop.cartservice;
 
+import com.shop.common.config.VirtualThreadConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@Import(VirtualThreadConfig.class)
 public class CartServiceApplication {
 
     public static void main(String[] args) {
@@ -1,13 +0,0 @@
-package com.shop.cartservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class CartInfoRequest {
-    private String correlationId;
-    private String userId;
-}
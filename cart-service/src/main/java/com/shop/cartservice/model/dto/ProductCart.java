@@ -1,5 +1,6 @@
 package com.shop.cartservice.model.dto;
 
+import com.shop.common.contract.ProductBase;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -1,17 +0,0 @@
-package com.shop.cartservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-import java.io.Serial;
-import java.io.Serializable;
-import java.util.List;
-
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class ProductInfoResponse {
-    private String correlationId;
-    private List<ProductBase> products;
-}
@@ -1,17 +0,0 @@
-package com.shop.cartservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-
-import java.util.Map;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-@Getter
-public class ProductsInCartInfoResponse {
-    private String correlationId;
-    private Map<String, Integer> product;
-}
@@ -3,12 +3,22 @@ package com.shop.cartservice.repository;
 import com.shop.cartservice.model.entity.Cart;
 
 public interface CartRepository {
+    long LOCKED = -1;
+    int NO_CEILING = -1;
+
     Cart findById(String userId);
     void save(String userId, Cart cart);
     void deleteById(String userId);
     boolean existsById(String userId);
-    void removeItemFromCart(String userId, String productId);
-    void decreaseItemQuantity(String userId, String productId);
+    long addItem(String userId, String productId, int quantity, int ceiling);
+    long removeItemFromCart(String userId, String productId);
+    long decreaseItemQuantity(String userId, String productId);
 
-    void setItemQuantity(String userId, String productId, int quantity);
+    long clampItemQuantity(String userId, String productId, int ceiling);
+    Cart setOrderProcessing(String userId, boolean orderProcessing);
+    Cart expire(String userId);
+    boolean releaseStaleLock(String userId);
+    long countCarts();
+    long usedMemory();
+    int migrateLegacyCarts();
 }
@@ -1,58 +1,295 @@
 package com.shop.cartservice.repository;
 
 import com.shop.cartservice.model.entity.Cart;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 
+import java.time.Duration;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores every cart as a Redis hash under {@code cart:{userId}}. Each product is a field holding its
+ * quantity and fields starting with {@code _} hold the cart metadata. Item changes run as Lua scripts
+ * ({@code scripts/cart-*.lua}) that check the order processing lock, apply and cap the change and
+ * touch {@code lastModified} in a single atomic call.
+ * <p>
+ * Every write slides two TTLs: the marker {@code cart-expiry:{userId}} lapses after {@code cart.ttl}
+ * of inactivity and triggers the abandonment handling, the cart itself is kept {@link #EXPIRY_GRACE}
+ * longer so it can still be read then, and disappears on its own if that handling never runs. A cart
+ * locked for order processing also gets a {@code cart-lock:{userId}} marker that lapses after
+ * {@code cart.lock-ttl}.
+ * <p>
+ * The braces in these keys are literal. They make the user id the Redis Cluster hash tag, so all keys
+ * of a cart live in one slot and the scripts and transactions spanning them work on a cluster. Carts
+ * stored by earlier versions under {@code cart:userId} are rewritten by {@link #migrateLegacyCarts()}.
+ */
 @Repository
-@RequiredArgsConstructor
-public class CartRepositoryImpl implements CartRepository{
+@Slf4j
+public class CartRepositoryImpl implements CartRepository {
 
     private static final String CART_KEY_PREFIX = "cart:";
-    private final RedisTemplate<String, Cart> redisTemplate;
+    public static final String EXPIRY_KEY_PREFIX = "cart-expiry:";
+    public static final String LOCK_KEY_PREFIX = "cart-lock:";
+    static final Duration EXPIRY_GRACE = Duration.ofHours(1);
+    static final String ORDER_PROCESSING = "_orderProcessing";
+    static final String LAST_MODIFIED = "_lastModified";
+    static final RedisScript<Long> ADD_ITEM = RedisScript.of(new ClassPathResource("scripts/cart-add.lua"), Long.class);
+    static final RedisScript<Long> CLAMP_ITEM = RedisScript.of(new ClassPathResource("scripts/cart-clamp.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> EXPIRE_CART = RedisScript.of(new ClassPathResource("scripts/cart-expire.lua"), List.class);
+    static final RedisScript<Long> UNLOCK_CART = RedisScript.of(new ClassPathResource("scripts/cart-unlock.lua"), Long.class);
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> SET_ORDER_PROCESSING =
+            RedisScript.of(new ClassPathResource("scripts/cart-processing.lua"), List.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisTemplate<String, Cart> legacyCartTemplate;
+    private final Duration idleTtl;
+    private final Duration cartTtl;
+    private final Duration lockTtl;
+
+    public CartRepositoryImpl(StringRedisTemplate redisTemplate,
+                              RedisTemplate<String, Cart> legacyCartTemplate,
+                              @Value("${cart.ttl:7d}") Duration idleTtl,
+                              @Value("${cart.lock-ttl:30m}") Duration lockTtl) {
+        this.redisTemplate = redisTemplate;
+        this.legacyCartTemplate = legacyCartTemplate;
+        this.idleTtl = idleTtl;
+        this.cartTtl = idleTtl.plus(EXPIRY_GRACE);
+        this.lockTtl = lockTtl;
+    }
 
+    @Override
     public void save(String userId, Cart cart) {
-        redisTemplate.opsForValue().set(CART_KEY_PREFIX + userId, cart);
+        String cartKey = cartKey(userId);
+        Map<String, String> fields = new HashMap<>();
+        cart.getProducts().forEach((productId, quantity) -> fields.put(productId, String.valueOf(quantity)));
+        fields.put(ORDER_PROCESSING, cart.isOrderProcessing() ? "1" : "0");
+        fields.put(LAST_MODIFIED, String.valueOf(cart.getLastModified().getTime()));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection commands = (StringRedisConnection) connection;
+            commands.multi();
+            commands.del(cartKey);
+            commands.hMSet(cartKey, fields);
+            slideExpiry(commands, userId);
+            commands.exec();
+            return null;
+        });
     }
 
     @Override
     public Cart findById(String userId) {
-        String cartKey = CART_KEY_PREFIX + userId;
-        return redisTemplate.opsForValue().get(cartKey);
+        Map<Object, Object> fields = redisTemplate.opsForHash().entries(cartKey(userId));
+        if (fields.isEmpty()) {
+            return null;
+        }
+        return toCart(userId, fields);
     }
 
-
     @Override
     public void deleteById(String userId) {
-        String cartKey = CART_KEY_PREFIX + userId;
-        redisTemplate.delete(cartKey);
+        redisTemplate.delete(List.of(cartKey(userId), expiryKey(userId), lockKey(userId)));
     }
 
     @Override
     public boolean existsById(String userId) {
-        String cartKey = CART_KEY_PREFIX + userId;
-        return redisTemplate.hasKey(cartKey);
+        return Boolean.TRUE.equals(redisTemplate.hasKey(cartKey(userId)));
+    }
+
+    @Override
+    public long addItem(String userId, String productId, int quantity, int ceiling) {
+        return redisTemplate.execute(ADD_ITEM, List.of(cartKey(userId), expiryKey(userId)),
+                productId, String.valueOf(quantity), String.valueOf(ceiling), now(),
+                String.valueOf(idleTtl.toMillis()), String.valueOf(cartTtl.toMillis()));
+    }
+
+    @Override
+    public long removeItemFromCart(String userId, String productId) {
+        return clampItemQuantity(userId, productId, 0);
+    }
+
+    @Override
+    public long decreaseItemQuantity(String userId, String productId) {
+        return addItem(userId, productId, -1, NO_CEILING);
+    }
+
+    @Override
+    public long clampItemQuantity(String userId, String productId, int ceiling) {
+        return redisTemplate.execute(CLAMP_ITEM, List.of(cartKey(userId), expiryKey(userId)),
+                productId, String.valueOf(ceiling), now(),
+                String.valueOf(idleTtl.toMillis()), String.valueOf(cartTtl.toMillis()));
+    }
+
+    /**
+     * Sets the order processing flag and returns the cart as it was written in the same script, or
+     * {@code null} when the cart no longer exists.
+     */
+    @Override
+    public Cart setOrderProcessing(String userId, boolean orderProcessing) {
+        List<?> fields = redisTemplate.execute(SET_ORDER_PROCESSING,
+                List.of(cartKey(userId), expiryKey(userId), lockKey(userId)),
+                orderProcessing ? "1" : "0", now(), String.valueOf(idleTtl.toMillis()),
+                String.valueOf(cartTtl.toMillis()), String.valueOf(lockTtl.toMillis()));
+        if (fields == null || fields.isEmpty()) {
+            log.debug("Cart of user {} no longer exists, order processing flag not set", userId);
+            return null;
+        }
+        return toCart(userId, fields);
+    }
+
+    /**
+     * Removes the cart once its expiry marker lapsed and returns it, or {@code null} when it was
+     * modified since or another instance already handled the expiry.
+     */
+    @Override
+    public Cart expire(String userId) {
+        List<?> fields = redisTemplate.execute(EXPIRE_CART,
+                List.of(cartKey(userId), expiryKey(userId)));
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        return toCart(userId, fields);
     }
 
     @Override
-    public void removeItemFromCart(String userId, String productId) {
-        Cart cart = findById(userId);
-        cart.getProducts().remove(productId);
-        save(userId, cart);
+    public boolean releaseStaleLock(String userId) {
+        Long released = redisTemplate.execute(UNLOCK_CART,
+                List.of(cartKey(userId), lockKey(userId)));
+        return released != null && released == 1;
     }
 
     @Override
-    public void decreaseItemQuantity(String userId, String productId) {
-        Cart cart = findById(userId);
-        cart.removeProduct(productId);
-        save(userId, cart);
+    public long countCarts() {
+        long carts = 0;
+        try (Cursor<String> keys = redisTemplate.scan(cartKeys())) {
+            while (keys.hasNext()) {
+                keys.next();
+                carts++;
+            }
+        }
+        return carts;
     }
 
     @Override
-    public void setItemQuantity(String userId, String productId, int quantity) {
-        Cart cart = findById(userId);
-        cart.setQuantity(productId, quantity);
-        save(userId, cart);
+    public long usedMemory() {
+        return redisTemplate.execute((RedisCallback<Long>) connection ->
+                Long.parseLong(connection.serverCommands().info("memory").getProperty("used_memory")));
+    }
+
+    /**
+     * Moves carts stored by earlier versions under untagged {@code cart:userId} keys, either as JSON
+     * strings or as hashes, to their tagged hash key.
+     */
+    @Override
+    public int migrateLegacyCarts() {
+        int migrated = 0;
+        try (Cursor<String> keys = redisTemplate.scan(cartKeys())) {
+            while (keys.hasNext()) {
+                String legacyKey = keys.next();
+                if (userIdOf(legacyKey, CART_KEY_PREFIX) != null) {
+                    continue;
+                }
+                try {
+                    String userId = legacyKey.substring(CART_KEY_PREFIX.length());
+                    Cart cart = readLegacyCart(userId, legacyKey);
+                    if (cart != null) {
+                        save(userId, cart);
+                        redisTemplate.delete(legacyKey);
+                        migrated++;
+                    }
+                } catch (Exception e) {
+                    log.warn("Could not migrate cart {}", legacyKey, e);
+                }
+            }
+        }
+        return migrated;
+    }
+
+    public static String cartKey(String userId) {
+        return CART_KEY_PREFIX + "{" + userId + "}";
+    }
+
+    public static String expiryKey(String userId) {
+        return EXPIRY_KEY_PREFIX + "{" + userId + "}";
+    }
+
+    public static String lockKey(String userId) {
+        return LOCK_KEY_PREFIX + "{" + userId + "}";
+    }
+
+    /**
+     * Returns the user id of a key built from {@code prefix}, or {@code null} when the key has another
+     * prefix or no hash tag.
+     */
+    public static String userIdOf(String key, String prefix) {
+        if (!key.startsWith(prefix + "{") || !key.endsWith("}")) {
+            return null;
+        }
+        return key.substring(prefix.length() + 1, key.length() - 1);
+    }
+
+    private static Cart toCart(String userId, List<?> fields) {
+        Map<Object, Object> cart = new HashMap<>();
+        for (int i = 0; i + 1 < fields.size(); i += 2) {
+            cart.put(fields.get(i), fields.get(i + 1));
+        }
+        return toCart(userId, cart);
+    }
+
+    static Cart toCart(String userId, Map<Object, Object> fields) {
+        Cart cart = new Cart(userId);
+        fields.forEach((field, value) -> {
+            String name = (String) field;
+            if (!name.startsWith("_")) {
+                int quantity = Integer.parseInt((String) value);
+                if (quantity > 0) {
+                    cart.setQuantity(name, quantity);
+                }
+            }
+        });
+        cart.setOrderProcessing("1".equals(fields.get(ORDER_PROCESSING)));
+        Object lastModified = fields.get(LAST_MODIFIED);
+        if (lastModified != null) {
+            cart.setLastModified(new Date(Long.parseLong((String) lastModified)));
+        }
+        return cart;
+    }
+
+    private Cart readLegacyCart(String userId, String legacyKey) {
+        DataType type = redisTemplate.type(legacyKey);
+        if (type == DataType.STRING) {
+            return legacyCartTemplate.opsForValue().get(legacyKey);
+        }
+        if (type == DataType.HASH) {
+            Map<Object, Object> fields = redisTemplate.opsForHash().entries(legacyKey);
+            return fields.isEmpty() ? null : toCart(userId, fields);
+        }
+        return null;
+    }
+
+    private void slideExpiry(StringRedisConnection commands, String userId) {
+        commands.pExpire(cartKey(userId), cartTtl.toMillis());
+        commands.pSetEx(expiryKey(userId), idleTtl.toMillis(), "");
+    }
+
+    private static ScanOptions cartKeys() {
+        return ScanOptions.scanOptions().match(CART_KEY_PREFIX + "*").count(1000).build();
+    }
+
+    private static String now() {
+        return String.valueOf(System.currentTimeMillis());
     }
 }
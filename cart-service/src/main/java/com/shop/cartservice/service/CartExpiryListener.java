@@ -0,0 +1,81 @@
+package com.shop.cartservice.service;
+
+import com.shop.cartservice.model.entity.Cart;
+import com.shop.cartservice.repository.CartRepository;
+import com.shop.cartservice.repository.CartRepositoryImpl;
+import com.shop.common.contract.CartAbandonedEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.listener.KeyExpirationEventMessageListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reacts to expired cart markers announced through Redis keyspace notifications. A lapsed
+ * {@code cart-expiry:{userId}} marker removes the idle cart and publishes {@code cart-abandoned}, a lapsed
+ * {@code cart-lock:{userId}} marker releases an order processing lock left behind by a checkout that never
+ * finished. Every instance receives every notification, the repository scripts make sure only one
+ * of them acts on it.
+ */
+@Component
+@Slf4j
+public class CartExpiryListener extends KeyExpirationEventMessageListener {
+
+    private final CartRepository cartRepository;
+    private final KafkaEventService kafkaEventService;
+    private final Counter abandonedCarts;
+    private final Counter releasedLocks;
+
+    public CartExpiryListener(RedisMessageListenerContainer listenerContainer,
+                              CartRepository cartRepository,
+                              KafkaEventService kafkaEventService,
+                              MeterRegistry meterRegistry,
+                              @Value("${cart.keyspace-notifications:Ex}") String keyspaceNotifications) {
+        super(listenerContainer);
+        setKeyspaceNotificationsConfigParameter(keyspaceNotifications);
+        this.cartRepository = cartRepository;
+        this.kafkaEventService = kafkaEventService;
+        this.abandonedCarts = meterRegistry.counter("cart.abandoned");
+        this.releasedLocks = meterRegistry.counter("cart.locks.released");
+    }
+
+    @Override
+    protected void doHandleMessage(Message message) {
+        handleExpiredKey(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    void handleExpiredKey(String key) {
+        try {
+            String idleUser = CartRepositoryImpl.userIdOf(key, CartRepositoryImpl.EXPIRY_KEY_PREFIX);
+            String lockedUser = CartRepositoryImpl.userIdOf(key, CartRepositoryImpl.LOCK_KEY_PREFIX);
+            if (idleUser != null) {
+                abandon(idleUser);
+            } else if (lockedUser != null) {
+                releaseLock(lockedUser);
+            }
+        } catch (Exception e) {
+            log.error("Error handling expiry of {}", key, e);
+        }
+    }
+
+    private void abandon(String userId) {
+        Cart cart = cartRepository.expire(userId);
+        if (cart == null || cart.getProducts().isEmpty()) {
+            return;
+        }
+        abandonedCarts.increment();
+        kafkaEventService.sendCartAbandoned(new CartAbandonedEvent(userId, cart.getProducts(), cart.getLastModified()));
+    }
+
+    private void releaseLock(String userId) {
+        if (cartRepository.releaseStaleLock(userId)) {
+            releasedLocks.increment();
+            log.warn("Released stale order processing lock of cart of user {}", userId);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.shop.cartservice.service;
+
+import com.shop.cartservice.repository.CartRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the number of live carts and the Redis memory they occupy as {@code cart.live} and
+ * {@code cart.redis.memory}. Both are sampled on a schedule because counting carts scans the
+ * keyspace.
+ */
+@Component
+@Slf4j
+public class CartMetrics {
+
+    private final CartRepository cartRepository;
+    private final AtomicLong liveCarts = new AtomicLong();
+    private final AtomicLong usedMemory = new AtomicLong();
+
+    public CartMetrics(CartRepository cartRepository, MeterRegistry meterRegistry) {
+        this.cartRepository = cartRepository;
+        Gauge.builder("cart.live", liveCarts, AtomicLong::get)
+                .description("Carts stored in Redis")
+                .register(meterRegistry);
+        Gauge.builder("cart.redis.memory", usedMemory, AtomicLong::get)
+                .description("Memory used by the cart Redis")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${cart.metrics.refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            liveCarts.set(cartRepository.countCarts());
+            usedMemory.set(cartRepository.usedMemory());
+        } catch (Exception e) {
+            log.warn("Could not sample cart metrics", e);
+        }
+    }
+}
@@ -1,13 +1,15 @@
 package com.shop.cartservice.service;
 
 import com.shop.cartservice.exception.CartException;
-import com.shop.cartservice.model.dto.ProductBase;
 import com.shop.cartservice.model.dto.ProductCart;
 import com.shop.cartservice.model.entity.Cart;
 import com.shop.cartservice.repository.CartRepository;
+import com.shop.common.contract.ProductBase;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -24,29 +26,32 @@ public class CartService {
 
     private final CartRepository cartRepository;
     private final KafkaEventService kafkaEventService;
+    private final StockCeilingCache stockCeilings;
+    private final ProductInfoCache productInfoCache;
 
     public void addToCart(String userId, String productId) {
         log.info("user: {}, product: {}", userId, productId);
-        Cart cart = cartRepository.findById(userId);
-        if (cart == null) {
-            cart = new Cart(userId);
+        int ceiling = stockCeilings.get(productId);
+        long quantity = requireUnlocked(cartRepository.addItem(userId, productId, 1, ceiling));
+        if (ceiling == CartRepository.NO_CEILING) {
+            kafkaEventService.checkProductQuantity(userId, productId, (int) quantity);
         }
-        kafkaEventService.checkProductQuantity(
-                userId,
-                productId,
-                (cart.getQuantity(productId) + 1)
-        );
-        cart.addProduct(productId, 1);
-        log.info("cart: {}", cart.getProducts().size());
-        cartRepository.save(userId, cart);
     }
 
     public void removeAllAmountOfProductFromCart(String id, @NonNull String userId) {
-        cartRepository.removeItemFromCart(userId, id);
+        requireUnlocked(cartRepository.removeItemFromCart(userId, id));
     }
 
     public void removeFromCart(String id, @NonNull String userId) {
-        cartRepository.decreaseItemQuantity(userId, id);
+        requireUnlocked(cartRepository.decreaseItemQuantity(userId, id));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateCarts() {
+        int migrated = cartRepository.migrateLegacyCarts();
+        if (migrated > 0) {
+            log.info("Migrated {} carts to hash storage", migrated);
+        }
     }
 
     public void deleteCart(@NonNull String userId) {
@@ -75,12 +80,24 @@ public class CartService {
         }
         try {
             List<String> productIds = new ArrayList<>(cart.getProducts().keySet());
-            List<ProductBase> products = kafkaEventService.requestProductInfo(productIds)
-                    .get(5, TimeUnit.SECONDS);
-            List<ProductCart> productCarts = products.stream()
-                    .map(product -> ProductCart.toDto(
-                            product,
-                            cart.getProducts().get(product.getProductId()))
+            Map<String, ProductBase> products = new HashMap<>(productInfoCache.getAll(productIds));
+            List<String> missing = productIds.stream()
+                    .filter(productId -> !products.containsKey(productId))
+                    .toList();
+            if (!missing.isEmpty()) {
+                List<ProductBase> fetched = kafkaEventService.requestProductInfo(missing)
+                        .get(5, TimeUnit.SECONDS);
+                productInfoCache.putAll(fetched);
+                fetched.forEach(product -> {
+                    products.put(product.getProductId(), product);
+                    stockCeilings.put(product.getProductId(), product.getAmountLeft());
+                });
+            }
+            List<ProductCart> productCarts = productIds.stream()
+                    .filter(products::containsKey)
+                    .map(productId -> ProductCart.toDto(
+                            products.get(productId),
+                            cart.getProducts().get(productId))
                     ).toList();
             return Map.of("products", productCarts);
         } catch (Exception e) {
@@ -88,4 +105,11 @@ public class CartService {
             throw new RuntimeException("Failed to retrieve cart information");
         }
     }
+
+    private static long requireUnlocked(long result) {
+        if (result == CartRepository.LOCKED) {
+            throw new CartException("Cart is locked for order processing.");
+        }
+        return result;
+    }
 }
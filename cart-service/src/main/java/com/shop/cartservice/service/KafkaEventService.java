@@ -4,16 +4,33 @@ import com.shop.cartservice.exception.CartException;
 import com.shop.cartservice.model.dto.*;
 import com.shop.cartservice.model.entity.Cart;
 import com.shop.cartservice.repository.CartRepository;
+import com.shop.common.contract.CartAbandonedEvent;
+import com.shop.common.contract.CartInfoRequest;
+import com.shop.common.contract.CartInfoResponse;
+import com.shop.common.contract.CartValidationRequest;
+import com.shop.common.contract.CartValidationResponse;
+import com.shop.common.contract.ProductBase;
+import com.shop.common.contract.ProductInfoRequest;
+import com.shop.common.contract.ProductInfoResponse;
+import com.shop.common.contract.ProductQuantityCheck;
+import com.shop.common.contract.ProductsInCartInfoRequest;
+import com.shop.common.contract.ProductsInCartInfoResponse;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
+import com.shop.common.kafka.RequestDeadline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -21,13 +38,15 @@ import java.util.concurrent.*;
 public class KafkaEventService {
 
     private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final ReplyRouting replyRouting;
     private final CartRepository cartRepository;
-    private final Map<String, CompletableFuture<List<ProductBase>>> pendingRequests = new ConcurrentHashMap<>();
-    private final Map<String, CompletableFuture<Map<String, Integer>>> pendingValidations = new ConcurrentHashMap<>();
+    private final PendingRequestRegistry pendingRequests;
+    private final StockCeilingCache stockCeilings;
+    private static final Duration REPLY_TIMEOUT = Duration.ofSeconds(5);
 
     public void checkProductQuantity(String userId, String productId, int quantity) {
         try {
-            kafkaTemplate.send("product-cart-quantity-check-request",
+            kafkaTemplate.send("product-cart-quantity-check-request", productId,
                     new ProductQuantityCheck(
                             userId,
                             productId,
@@ -38,10 +57,19 @@ public class KafkaEventService {
         }
     }
 
-    @KafkaListener(topics = "product-cart-quantity-check-response", groupId = "cart-service",
+    public void sendCartAbandoned(CartAbandonedEvent event) {
+        try {
+            kafkaTemplate.send("cart-abandoned", event.getUserId(), event);
+        } catch (Exception e) {
+            log.error("Error sending cart abandoned event of user {}", event.getUserId(), e);
+        }
+    }
+
+    @KafkaListener(topics = "product-cart-quantity-check-response",
             containerFactory = "kafkaListenerContainerFactory")
     public void returnNewValueOfCartQuantity(ProductQuantityCheck productQuantityCheck) {
-        cartRepository.setItemQuantity(
+        stockCeilings.put(productQuantityCheck.getProductId(), productQuantityCheck.getQuantity());
+        cartRepository.clampItemQuantity(
                 productQuantityCheck.getUserId(),
                 productQuantityCheck.getProductId(),
                 productQuantityCheck.getQuantity()
@@ -50,39 +78,28 @@ public class KafkaEventService {
 
     public CompletableFuture<List<ProductBase>> requestProductInfo(List<String> productIds) {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<List<ProductBase>> future = new CompletableFuture<>();
-        pendingRequests.put(correlationId, future);
-
+        Instant deadline = RequestDeadline.forRequest(REPLY_TIMEOUT);
+        CompletableFuture<List<ProductBase>> future = pendingRequests.register(
+                correlationId, RequestDeadline.remaining(deadline), "Request timed out");
+        if (future.isDone()) {
+            return future;
+        }
         try {
             ProductInfoRequest request = new ProductInfoRequest(correlationId, productIds);
-            kafkaTemplate.send("product-cart-info-request", request);
-
-            ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-            executor.schedule(() -> {
-                if (!future.isDone()) {
-                    future.completeExceptionally(new TimeoutException("Request timed out"));
-                    pendingRequests.remove(correlationId);
-                }
-            }, 5, TimeUnit.SECONDS);
-
+            RequestDeadline.stamp(deadline, () -> kafkaTemplate.send("product-cart-info-request", request));
         } catch (Exception e) {
-            future.completeExceptionally(e);
-            pendingRequests.remove(correlationId);
+            pendingRequests.completeExceptionally(correlationId, e);
         }
-
         return future;
     }
 
-    @KafkaListener(topics = "product-cart-info-response", groupId = "cart-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "product-cart-info-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void handleProductInfoResponse(ProductInfoResponse response) {
-        CompletableFuture<List<ProductBase>> future = pendingRequests.remove(response.getCorrelationId());
-        if (future != null) {
-            future.complete(response.getProducts());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getProducts());
     }
 
-    @KafkaListener(topics = "cart-items-request", groupId = "cart-service",
+    @KafkaListener(topics = "cart-items-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void checkCartHasItems(CartInfoRequest cartInfoRequest) {
         try {
@@ -91,7 +108,7 @@ public class KafkaEventService {
                     cartInfoRequest.getCorrelationId(),
                     cartHasItems
             );
-            kafkaTemplate.send("cart-items-response", cartInfoResponse);
+            sendReply("cart-items-response", cartInfoResponse);
         } catch (Exception e) {
             log.error("Error processing cart info request", e);
         }
@@ -99,43 +116,35 @@ public class KafkaEventService {
 
     public CompletableFuture<Map<String, Integer>> validProductsInCart(Map<String, Integer> products) {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
-        pendingValidations.put(correlationId, future);
-
+        Instant deadline = RequestDeadline.forRequest(REPLY_TIMEOUT);
+        CompletableFuture<Map<String, Integer>> future = pendingRequests.register(
+                correlationId, RequestDeadline.remaining(deadline), "Request timed out");
+        if (future.isDone()) {
+            return future;
+        }
         try {
             CartValidationRequest request = new CartValidationRequest(correlationId, products);
-            kafkaTemplate.send("cart-validation-request", request);
-            ScheduledExecutorService executor = Executors.newScheduledThreadPool(1);
-            executor.schedule(() -> {
-                if (!future.isDone()) {
-                    future.completeExceptionally(new TimeoutException("Request timed out"));
-                    pendingValidations.remove(correlationId);
-                }
-            }, 5, TimeUnit.SECONDS);
+            RequestDeadline.stamp(deadline, () -> kafkaTemplate.send("cart-validation-request", request));
         } catch (Exception e) {
-            future.completeExceptionally(e);
-            pendingValidations.remove(correlationId);
+            pendingRequests.completeExceptionally(correlationId, e);
         }
         return future;
     }
 
-    @KafkaListener(topics = "cart-validation-response", groupId = "cart-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "cart-validation-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void handleValidationResponse(CartValidationResponse response) {
-        CompletableFuture<Map<String, Integer>> future = pendingValidations.remove(response.getCorrelationId());
-        if (future != null) {
-            if (response.getError() != null) {
-                future.completeExceptionally(new CartException(response.getError()));
-            } else {
-                future.complete(response.getProducts());
-            }
+        if (response.getError() != null) {
+            pendingRequests.completeExceptionally(response.getCorrelationId(), new CartException(response.getError()));
+        } else {
+            pendingRequests.complete(response.getCorrelationId(), response.getProducts());
         }
     }
 
-    @KafkaListener(topics = "cart-product-block-request", groupId = "cart-service",
+    @KafkaListener(topics = "cart-product-block-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void getProductsAndBlockCart(ProductsInCartInfoRequest request) {
-        Cart cart = cartRepository.findById(request.getUserId());
+        Cart cart = cartRepository.setOrderProcessing(request.getUserId(), request.isBlockCart());
         if (cart == null) {
             throw new CartException("Cart is empty.");
         }
@@ -143,12 +152,10 @@ public class KafkaEventService {
                 request.getCorrelationId(),
                 cart.getProducts()
         );
-        cart.setOrderProcessing(request.isBlockCart());
-        cartRepository.save(request.getUserId(), cart);
-        kafkaTemplate.send("cart-product-block-response", response);
+        sendReply("cart-product-block-response", response);
     }
 
-    @KafkaListener(topics = "cart-product-payment-request", groupId = "cart-service",
+    @KafkaListener(topics = "cart-product-payment-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void getProducts(ProductsInCartInfoRequest request) {
         Cart cart = cartRepository.findById(request.getUserId());
@@ -159,14 +166,20 @@ public class KafkaEventService {
                 request.getCorrelationId(),
                 cart.getProducts()
         );
-        kafkaTemplate.send("cart-product-payment-response", response);
+        sendReply("cart-product-payment-response", response);
     }
 
-    @KafkaListener(topics = "cart-delete-request", groupId = "cart-service",
+    @KafkaListener(topics = "cart-delete-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void deleteCart(ProductsInCartInfoRequest request) {
         cartRepository.deleteById(request.getUserId());
-        kafkaTemplate.send("cart-delete-response", request.getCorrelationId());
+        sendReply("cart-delete-response", request.getCorrelationId());
     }
 
+    private void sendReply(String topic, Object response) {
+        Integer partition = replyRouting.currentReplyPartition();
+        RequestDeadline.stamp(RequestDeadline.current(), () -> partition == null
+                ? kafkaTemplate.send(topic, response)
+                : kafkaTemplate.send(topic, partition, null, response));
+    }
 }
@@ -0,0 +1,61 @@
+package com.shop.cartservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shop.common.contract.CatalogInvalidation;
+import com.shop.common.contract.ProductBase;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Near-cache of the product name, price, image and stock shown in carts, filled from
+ * {@code product-cart-info-response}. Entries are evicted when product-service announces a change of
+ * the product on {@code product-catalog-invalidation} and expire after {@code cart.product-cache.ttl}
+ * otherwise.
+ */
+@Component
+public class ProductInfoCache {
+
+    public static final String INVALIDATION_TOPIC = "product-catalog-invalidation";
+
+    private final Cache<String, ProductBase> products;
+    private final StockCeilingCache stockCeilings;
+
+    public ProductInfoCache(@Value("${cart.product-cache.ttl:5m}") Duration ttl,
+                            @Value("${cart.product-cache.max-size:10000}") long maxSize,
+                            StockCeilingCache stockCeilings) {
+        this.products = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+        this.stockCeilings = stockCeilings;
+    }
+
+    public Map<String, ProductBase> getAll(Collection<String> productIds) {
+        return products.getAllPresent(productIds);
+    }
+
+    public void putAll(Collection<ProductBase> productBases) {
+        productBases.forEach(product -> products.put(product.getProductId(), product));
+    }
+
+    @KafkaListener(topicPartitions = @TopicPartition(topic = INVALIDATION_TOPIC,
+            partitionOffsets = @PartitionOffset(partition = "0", initialOffset = "0", seekPosition = "END")),
+            containerFactory = "invalidationListenerContainerFactory")
+    public void handleInvalidation(CatalogInvalidation invalidation) {
+        if (invalidation.isAll()) {
+            products.invalidateAll();
+            stockCeilings.clear();
+            return;
+        }
+        products.invalidateAll(invalidation.getProductIds());
+        invalidation.getProductIds().forEach(stockCeilings::evict);
+    }
+}
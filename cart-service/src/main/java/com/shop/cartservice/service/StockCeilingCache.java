@@ -0,0 +1,45 @@
+package com.shop.cartservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shop.cartservice.repository.CartRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Last stock levels reported by product-service, used to cap cart quantities without asking it on
+ * every click. Entries expire after {@code cart.stock-ceiling.ttl}, after which the next add checks
+ * the stock again.
+ */
+@Component
+public class StockCeilingCache {
+
+    private final Cache<String, Integer> ceilings;
+
+    public StockCeilingCache(@Value("${cart.stock-ceiling.ttl:30s}") Duration ttl,
+                             @Value("${cart.stock-ceiling.max-size:10000}") long maxSize) {
+        this.ceilings = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .build();
+    }
+
+    public int get(String productId) {
+        Integer ceiling = ceilings.getIfPresent(productId);
+        return ceiling == null ? CartRepository.NO_CEILING : ceiling;
+    }
+
+    public void put(String productId, int amountLeft) {
+        ceilings.put(productId, Math.max(amountLeft, 0));
+    }
+
+    public void evict(String productId) {
+        ceilings.invalidate(productId);
+    }
+
+    public void clear() {
+        ceilings.invalidateAll();
+    }
+}
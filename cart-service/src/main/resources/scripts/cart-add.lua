@@ -0,0 +1,31 @@
+-- Adds ARGV[2] (negative to decrease) to the quantity of product ARGV[1] in cart KEYS[1],
+-- capped at the stock ceiling ARGV[3] unless it is negative. ARGV[4] is the modification time,
+-- ARGV[5] the idle time after which the expiry marker KEYS[2] lapses and ARGV[6] the TTL of the
+-- cart itself, both in milliseconds. A cart left with no products is deleted.
+-- Returns the new quantity, or -1 while the cart is locked for order processing.
+if redis.call('HGET', KEYS[1], '_orderProcessing') == '1' then
+    return -1
+end
+local current = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+local quantity = math.max(current + tonumber(ARGV[2]), 0)
+local ceiling = tonumber(ARGV[3])
+if ceiling >= 0 and quantity > ceiling then
+    quantity = ceiling
+end
+if quantity == current then
+    return current
+end
+if quantity == 0 then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+    local metadata = redis.call('HEXISTS', KEYS[1], '_orderProcessing') + redis.call('HEXISTS', KEYS[1], '_lastModified')
+    if redis.call('HLEN', KEYS[1]) == metadata then
+        redis.call('DEL', KEYS[1], KEYS[2])
+        return 0
+    end
+else
+    redis.call('HSET', KEYS[1], ARGV[1], quantity)
+end
+redis.call('HSET', KEYS[1], '_lastModified', ARGV[4])
+redis.call('PEXPIRE', KEYS[1], ARGV[6])
+redis.call('SET', KEYS[2], '', 'PX', ARGV[5])
+return quantity
@@ -0,0 +1,27 @@
+-- Lowers the quantity of product ARGV[1] in cart KEYS[1] to at most ARGV[2], removing it at 0.
+-- ARGV[3] is the modification time, ARGV[4] the idle time after which the expiry marker KEYS[2]
+-- lapses and ARGV[5] the TTL of the cart itself, both in milliseconds. A cart left with no
+-- products is deleted. Returns the resulting quantity, or -1 while the cart is locked for order
+-- processing.
+if redis.call('HGET', KEYS[1], '_orderProcessing') == '1' then
+    return -1
+end
+local current = tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0')
+local ceiling = math.max(tonumber(ARGV[2]), 0)
+if current <= ceiling then
+    return current
+end
+if ceiling == 0 then
+    redis.call('HDEL', KEYS[1], ARGV[1])
+    local metadata = redis.call('HEXISTS', KEYS[1], '_orderProcessing') + redis.call('HEXISTS', KEYS[1], '_lastModified')
+    if redis.call('HLEN', KEYS[1]) == metadata then
+        redis.call('DEL', KEYS[1], KEYS[2])
+        return 0
+    end
+else
+    redis.call('HSET', KEYS[1], ARGV[1], ceiling)
+end
+redis.call('HSET', KEYS[1], '_lastModified', ARGV[3])
+redis.call('PEXPIRE', KEYS[1], ARGV[5])
+redis.call('SET', KEYS[2], '', 'PX', ARGV[4])
+return ceiling
@@ -0,0 +1,9 @@
+-- Claims cart KEYS[1] after its expiry marker KEYS[2] lapsed: returns the cart fields and deletes
+-- the cart. Returns an empty list when the cart was touched again in the meantime or another
+-- instance claimed it first.
+if redis.call('EXISTS', KEYS[2]) == 1 then
+    return {}
+end
+local fields = redis.call('HGETALL', KEYS[1])
+redis.call('DEL', KEYS[1])
+return fields
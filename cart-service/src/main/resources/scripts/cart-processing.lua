@@ -0,0 +1,19 @@
+-- Sets the order processing flag of cart KEYS[1] to ARGV[1] and its modification time to ARGV[2].
+-- ARGV[3] is the idle time after which the expiry marker KEYS[2] lapses, ARGV[4] the TTL of the
+-- cart itself and ARGV[5] the TTL of the order processing lock KEYS[3], all in milliseconds.
+-- Locking sets KEYS[3], unlocking deletes it. Returns the cart fields as written, or an empty list
+-- without writing the cart when it no longer exists, so a cart removed in the meantime is not
+-- brought back as bare metadata.
+if ARGV[1] ~= '1' then
+    redis.call('DEL', KEYS[3])
+end
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    return {}
+end
+redis.call('HSET', KEYS[1], '_orderProcessing', ARGV[1], '_lastModified', ARGV[2])
+redis.call('PEXPIRE', KEYS[1], ARGV[4])
+redis.call('SET', KEYS[2], '', 'PX', ARGV[3])
+if ARGV[1] == '1' then
+    redis.call('SET', KEYS[3], '', 'PX', ARGV[5])
+end
+return redis.call('HGETALL', KEYS[1])
@@ -0,0 +1,7 @@
+-- Resets the order processing flag of cart KEYS[1] after its lock KEYS[2] lapsed without the
+-- checkout finishing. Returns 1 when a stale lock was released.
+if redis.call('EXISTS', KEYS[2]) == 1 or redis.call('HGET', KEYS[1], '_orderProcessing') ~= '1' then
+    return 0
+end
+redis.call('HSET', KEYS[1], '_orderProcessing', '0')
+return 1
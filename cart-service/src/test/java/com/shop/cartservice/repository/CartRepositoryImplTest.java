@@ -4,16 +4,29 @@ import com.shop.cartservice.model.entity.Cart;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ValueOperations;
 
+import java.time.Duration;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -21,117 +34,267 @@ class CartRepositoryImplTest {
 
     private static final String USER_ID = "user123";
     private static final String PRODUCT_ID = "prod456";
-    private static final String CART_KEY = "cart:user123";
+    private static final String CART_KEY = "cart:{user123}";
+    private static final String EXPIRY_KEY = "cart-expiry:{user123}";
+    private static final String LOCK_KEY = "cart-lock:{user123}";
+    private static final String LEGACY_CART_KEY = "cart:user123";
+    private static final long IDLE_TTL = Duration.ofDays(7).toMillis();
+    private static final long CART_TTL = Duration.ofDays(7).plus(CartRepositoryImpl.EXPIRY_GRACE).toMillis();
 
     @Mock
-    private RedisTemplate<String, Cart> redisTemplate;
+    private StringRedisTemplate redisTemplate;
 
     @Mock
-    private ValueOperations<String, Cart> valueOperations;
+    private RedisTemplate<String, Cart> legacyCartTemplate;
 
-    @InjectMocks
-    private CartRepositoryImpl cartRepository;
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
 
-    private Cart testCart;
+    @Mock
+    private StringRedisConnection connection;
+
+    private CartRepositoryImpl cartRepository;
 
     @BeforeEach
     void setUp() {
-        Map<String, Integer> products = new HashMap<>();
-        products.put(PRODUCT_ID, 2);
-        testCart = new Cart(USER_ID, products);
+        cartRepository = new CartRepositoryImpl(redisTemplate, legacyCartTemplate, Duration.ofDays(7), Duration.ofMinutes(30));
     }
 
     @Test
-    void save_shouldStoreCartInRedis() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        cartRepository.save(USER_ID, testCart);
-
-        verify(valueOperations).set(CART_KEY, testCart);
+    void save_shouldReplaceHashInTransaction() {
+        pipelineReturns(List.of());
+        Cart cart = new Cart(USER_ID, new HashMap<>(Map.of(PRODUCT_ID, 2)));
+        cart.setOrderProcessing(true);
+
+        cartRepository.save(USER_ID, cart);
+
+        InOrder inOrder = inOrder(connection);
+        inOrder.verify(connection).multi();
+        inOrder.verify(connection).del(CART_KEY);
+        inOrder.verify(connection).hMSet(CART_KEY, Map.of(
+                PRODUCT_ID, "2",
+                CartRepositoryImpl.ORDER_PROCESSING, "1",
+                CartRepositoryImpl.LAST_MODIFIED, String.valueOf(cart.getLastModified().getTime())));
+        inOrder.verify(connection).pExpire(CART_KEY, CART_TTL);
+        inOrder.verify(connection).pSetEx(EXPIRY_KEY, IDLE_TTL, "");
+        inOrder.verify(connection).exec();
     }
 
     @Test
-    void findById_shouldReturnCartWhenExists() {
-        when(valueOperations.get(CART_KEY)).thenReturn(testCart);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    void findById_shouldMapHashFieldsToCart() {
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(CART_KEY)).thenReturn(Map.of(
+                PRODUCT_ID, "2",
+                "prod789", "0",
+                CartRepositoryImpl.ORDER_PROCESSING, "1",
+                CartRepositoryImpl.LAST_MODIFIED, "1000"));
 
         Cart result = cartRepository.findById(USER_ID);
 
-        assertNotNull(result);
         assertEquals(USER_ID, result.getUserId());
-        assertEquals(1, result.getProducts().size());
-        verify(valueOperations).get(CART_KEY);
+        assertEquals(Map.of(PRODUCT_ID, 2), result.getProducts());
+        assertTrue(result.isOrderProcessing());
+        assertEquals(new Date(1000), result.getLastModified());
     }
 
     @Test
     void findById_shouldReturnNullWhenNotExists() {
-        when(valueOperations.get(CART_KEY)).thenReturn(null);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-
-        Cart result = cartRepository.findById(USER_ID);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(CART_KEY)).thenReturn(Map.of());
 
-        assertNull(result);
-        verify(valueOperations).get(CART_KEY);
+        assertNull(cartRepository.findById(USER_ID));
     }
 
     @Test
-    void deleteById_shouldDeleteCartFromRedis() {
+    void deleteById_shouldDeleteCartAndMarkers() {
         cartRepository.deleteById(USER_ID);
 
-        verify(redisTemplate).delete(CART_KEY);
+        verify(redisTemplate).delete(List.of(CART_KEY, EXPIRY_KEY, LOCK_KEY));
     }
 
     @Test
     void existsById_shouldReturnTrueWhenCartExists() {
         when(redisTemplate.hasKey(CART_KEY)).thenReturn(true);
 
-        boolean exists = cartRepository.existsById(USER_ID);
-
-        assertTrue(exists);
-        verify(redisTemplate).hasKey(CART_KEY);
+        assertTrue(cartRepository.existsById(USER_ID));
     }
 
     @Test
     void existsById_shouldReturnFalseWhenCartNotExists() {
         when(redisTemplate.hasKey(CART_KEY)).thenReturn(false);
 
-        boolean exists = cartRepository.existsById(USER_ID);
+        assertFalse(cartRepository.existsById(USER_ID));
+    }
+
+    @Test
+    void addItem_shouldRunAddScriptWithCeiling() {
+        when(redisTemplate.execute(eq(CartRepositoryImpl.ADD_ITEM), eq(List.of(CART_KEY, EXPIRY_KEY)),
+                eq(PRODUCT_ID), eq("1"), eq("5"), anyString(), eq(String.valueOf(IDLE_TTL)), eq(String.valueOf(CART_TTL))))
+                .thenReturn(3L);
+
+        assertEquals(3, cartRepository.addItem(USER_ID, PRODUCT_ID, 1, 5));
+    }
+
+    @Test
+    void decreaseItemQuantity_shouldRunAddScriptWithoutCeiling() {
+        when(redisTemplate.execute(eq(CartRepositoryImpl.ADD_ITEM), eq(List.of(CART_KEY, EXPIRY_KEY)),
+                eq(PRODUCT_ID), eq("-1"), eq("-1"), anyString(), anyString(), anyString())).thenReturn(1L);
+
+        assertEquals(1, cartRepository.decreaseItemQuantity(USER_ID, PRODUCT_ID));
+    }
+
+    @Test
+    void removeItemFromCart_shouldClampToZero() {
+        when(redisTemplate.execute(eq(CartRepositoryImpl.CLAMP_ITEM), eq(List.of(CART_KEY, EXPIRY_KEY)),
+                eq(PRODUCT_ID), eq("0"), anyString(), anyString(), anyString())).thenReturn(0L);
+
+        assertEquals(0, cartRepository.removeItemFromCart(USER_ID, PRODUCT_ID));
+    }
+
+    @Test
+    void clampItemQuantity_shouldReturnLocked_WhenCartIsProcessing() {
+        when(redisTemplate.execute(eq(CartRepositoryImpl.CLAMP_ITEM), eq(List.of(CART_KEY, EXPIRY_KEY)),
+                eq(PRODUCT_ID), eq("2"), anyString(), anyString(), anyString())).thenReturn(CartRepository.LOCKED);
+
+        assertEquals(CartRepository.LOCKED, cartRepository.clampItemQuantity(USER_ID, PRODUCT_ID, 2));
+    }
+
+    @Test
+    void scripts_shouldCheckOrderProcessingLock() {
+        assertTrue(CartRepositoryImpl.ADD_ITEM.getScriptAsString().contains(CartRepositoryImpl.ORDER_PROCESSING));
+        assertTrue(CartRepositoryImpl.CLAMP_ITEM.getScriptAsString().contains(CartRepositoryImpl.ORDER_PROCESSING));
+    }
+
+    @Test
+    void keys_shouldShareUserIdHashTag() {
+        assertEquals(CART_KEY, CartRepositoryImpl.cartKey(USER_ID));
+        assertEquals(EXPIRY_KEY, CartRepositoryImpl.expiryKey(USER_ID));
+        assertEquals(LOCK_KEY, CartRepositoryImpl.lockKey(USER_ID));
+        assertEquals(USER_ID, CartRepositoryImpl.userIdOf(EXPIRY_KEY, CartRepositoryImpl.EXPIRY_KEY_PREFIX));
+        assertNull(CartRepositoryImpl.userIdOf("cart-expiry:user123", CartRepositoryImpl.EXPIRY_KEY_PREFIX));
+        assertNull(CartRepositoryImpl.userIdOf(LOCK_KEY, CartRepositoryImpl.EXPIRY_KEY_PREFIX));
+    }
+
+    @Test
+    void setOrderProcessing_shouldRunScriptOnCartExpiryAndLockKeys() {
+        when(redisTemplate.execute(eq(CartRepositoryImpl.SET_ORDER_PROCESSING), eq(List.of(CART_KEY, EXPIRY_KEY, LOCK_KEY)),
+                eq("1"), anyString(), eq(String.valueOf(IDLE_TTL)), eq(String.valueOf(CART_TTL)),
+                eq(String.valueOf(Duration.ofMinutes(30).toMillis()))))
+                .thenReturn(List.of(PRODUCT_ID, "2", CartRepositoryImpl.ORDER_PROCESSING, "1"));
+
+        Cart cart = cartRepository.setOrderProcessing(USER_ID, true);
+
+        assertEquals(Map.of(PRODUCT_ID, 2), cart.getProducts());
+        assertTrue(cart.isOrderProcessing());
+        verify(redisTemplate, never()).executePipelined(any(RedisCallback.class));
+    }
+
+    @Test
+    void setOrderProcessing_shouldReturnNull_WhenCartMissing() {
+        when(redisTemplate.execute(eq(CartRepositoryImpl.SET_ORDER_PROCESSING), eq(List.of(CART_KEY, EXPIRY_KEY, LOCK_KEY)),
+                eq("1"), anyString(), anyString(), anyString(), anyString())).thenReturn(List.of());
+
+        assertNull(cartRepository.setOrderProcessing(USER_ID, true));
+    }
+
+    @Test
+    void setOrderProcessing_shouldPassUnlockFlag() {
+        cartRepository.setOrderProcessing(USER_ID, false);
 
-        assertFalse(exists);
-        verify(redisTemplate).hasKey(CART_KEY);
+        verify(redisTemplate).execute(eq(CartRepositoryImpl.SET_ORDER_PROCESSING), eq(List.of(CART_KEY, EXPIRY_KEY, LOCK_KEY)),
+                eq("0"), anyString(), anyString(), anyString(), anyString());
     }
 
     @Test
-    void removeItemFromCart_shouldRemoveProductAndSaveCart() {
-        when(valueOperations.get(CART_KEY)).thenReturn(testCart);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    void setOrderProcessingScript_shouldSkipMissingCart() {
+        String script = CartRepositoryImpl.SET_ORDER_PROCESSING.getScriptAsString();
+
+        assertTrue(script.indexOf("'EXISTS', KEYS[1]") < script.indexOf("'HSET'"));
+        assertTrue(script.indexOf("'HSET'") < script.indexOf("'HGETALL'"));
+    }
+
+    @Test
+    void expire_shouldReturnClaimedCart() {
+        when(redisTemplate.execute(CartRepositoryImpl.EXPIRE_CART, List.of(CART_KEY, EXPIRY_KEY)))
+                .thenReturn(List.of(PRODUCT_ID, "2", CartRepositoryImpl.LAST_MODIFIED, "1000"));
+
+        Cart cart = cartRepository.expire(USER_ID);
+
+        assertEquals(Map.of(PRODUCT_ID, 2), cart.getProducts());
+        assertEquals(new Date(1000), cart.getLastModified());
+    }
 
-        cartRepository.removeItemFromCart(USER_ID, PRODUCT_ID);
+    @Test
+    void expire_shouldReturnNull_WhenCartTouchedOrClaimed() {
+        when(redisTemplate.execute(CartRepositoryImpl.EXPIRE_CART, List.of(CART_KEY, EXPIRY_KEY))).thenReturn(List.of());
 
-        assertFalse(testCart.getProducts().containsKey(PRODUCT_ID));
-        verify(valueOperations).set(CART_KEY, testCart);
+        assertNull(cartRepository.expire(USER_ID));
     }
 
     @Test
-    void decreaseItemQuantity_shouldDecreaseQuantityAndSaveCart() {
-        when(valueOperations.get(CART_KEY)).thenReturn(testCart);
-        int initialQuantity = testCart.getProducts().get(PRODUCT_ID);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    void releaseStaleLock_shouldReportRelease() {
+        when(redisTemplate.execute(CartRepositoryImpl.UNLOCK_CART, List.of(CART_KEY, LOCK_KEY))).thenReturn(1L);
 
-        cartRepository.decreaseItemQuantity(USER_ID, PRODUCT_ID);
+        assertTrue(cartRepository.releaseStaleLock(USER_ID));
+    }
 
-        assertEquals(initialQuantity - 1, testCart.getProducts().get(PRODUCT_ID));
-        verify(valueOperations).set(CART_KEY, testCart);
+    @Test
+    @SuppressWarnings("unchecked")
+    void countCarts_shouldCountCartKeys() {
+        Cursor<String> keys = mock(Cursor.class);
+        when(keys.hasNext()).thenReturn(true, true, false);
+        when(keys.next()).thenReturn(CART_KEY, "cart:{user999}");
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(keys);
+
+        assertEquals(2, cartRepository.countCarts());
     }
 
     @Test
-    void setItemQuantity_shouldUpdateQuantityAndSaveCart() {
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        int newQuantity = 5;
-        when(valueOperations.get(CART_KEY)).thenReturn(testCart);
+    @SuppressWarnings("unchecked")
+    void migrateLegacyCarts_shouldMoveJsonCartsToTaggedHashes() {
+        Cursor<String> keys = mock(Cursor.class);
+        when(keys.hasNext()).thenReturn(true, true, false);
+        when(keys.next()).thenReturn(LEGACY_CART_KEY, "cart:{user999}");
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(keys);
+        when(redisTemplate.type(LEGACY_CART_KEY)).thenReturn(DataType.STRING);
+        ValueOperations<String, Cart> valueOperations = mock(ValueOperations.class);
+        when(legacyCartTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(LEGACY_CART_KEY)).thenReturn(new Cart(USER_ID, new HashMap<>(Map.of(PRODUCT_ID, 2))));
+        pipelineReturns(List.of());
+
+        assertEquals(1, cartRepository.migrateLegacyCarts());
+
+        verify(connection).hMSet(eq(CART_KEY), any());
+        verify(redisTemplate).delete(LEGACY_CART_KEY);
+        verify(redisTemplate, never()).type("cart:{user999}");
+    }
 
-        cartRepository.setItemQuantity(USER_ID, PRODUCT_ID, newQuantity);
+    @Test
+    @SuppressWarnings("unchecked")
+    void migrateLegacyCarts_shouldMoveUntaggedHashes() {
+        Cursor<String> keys = mock(Cursor.class);
+        when(keys.hasNext()).thenReturn(true, false);
+        when(keys.next()).thenReturn(LEGACY_CART_KEY);
+        when(redisTemplate.scan(any(ScanOptions.class))).thenReturn(keys);
+        when(redisTemplate.type(LEGACY_CART_KEY)).thenReturn(DataType.HASH);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries(LEGACY_CART_KEY)).thenReturn(Map.of(PRODUCT_ID, "3", CartRepositoryImpl.LAST_MODIFIED, "1000"));
+        pipelineReturns(List.of());
+
+        assertEquals(1, cartRepository.migrateLegacyCarts());
+
+        verify(connection).hMSet(CART_KEY, Map.of(
+                PRODUCT_ID, "3",
+                CartRepositoryImpl.ORDER_PROCESSING, "0",
+                CartRepositoryImpl.LAST_MODIFIED, "1000"));
+        verify(redisTemplate).delete(LEGACY_CART_KEY);
+    }
 
-        assertEquals(newQuantity, testCart.getProducts().get(PRODUCT_ID));
-        verify(valueOperations).set(CART_KEY, testCart);
+    @SuppressWarnings("unchecked")
+    private void pipelineReturns(List<Object> results) {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return results;
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+package com.shop.cartservice.service;
+
+import com.shop.cartservice.model.entity.Cart;
+import com.shop.cartservice.repository.CartRepository;
+import com.shop.common.contract.CartAbandonedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CartExpiryListenerTest {
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private KafkaEventService kafkaEventService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private CartExpiryListener listener;
+
+    @BeforeEach
+    void setUp() {
+        listener = new CartExpiryListener(listenerContainer, cartRepository, kafkaEventService, meterRegistry, "Ex");
+    }
+
+    @Test
+    void handleExpiredKey_ShouldPublishAbandonedCart() {
+        Cart cart = new Cart("user1", new HashMap<>(Map.of("1", 2)));
+        cart.setLastModified(new Date(1000));
+        when(cartRepository.expire("user1")).thenReturn(cart);
+
+        listener.handleExpiredKey("cart-expiry:{user1}");
+
+        ArgumentCaptor<CartAbandonedEvent> event = ArgumentCaptor.forClass(CartAbandonedEvent.class);
+        verify(kafkaEventService).sendCartAbandoned(event.capture());
+        assertEquals(new CartAbandonedEvent("user1", Map.of("1", 2), new Date(1000)), event.getValue());
+        assertEquals(1, meterRegistry.counter("cart.abandoned").count());
+    }
+
+    @Test
+    void handleExpiredKey_ShouldSkipCart_WhenClaimedElsewhere() {
+        listener.handleExpiredKey("cart-expiry:{user1}");
+
+        verifyNoInteractions(kafkaEventService);
+    }
+
+    @Test
+    void handleExpiredKey_ShouldReleaseStaleLock() {
+        when(cartRepository.releaseStaleLock("user1")).thenReturn(true);
+
+        listener.handleExpiredKey("cart-lock:{user1}");
+
+        assertEquals(1, meterRegistry.counter("cart.locks.released").count());
+    }
+
+    @Test
+    void handleExpiredKey_ShouldIgnoreOtherKeys() {
+        listener.handleExpiredKey("session:abc");
+        listener.handleExpiredKey("cart-expiry:user1");
+
+        verifyNoInteractions(cartRepository, kafkaEventService);
+    }
+}
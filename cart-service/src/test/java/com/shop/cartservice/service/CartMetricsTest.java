@@ -0,0 +1,25 @@
+package com.shop.cartservice.service;
+
+import com.shop.cartservice.repository.CartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+class CartMetricsTest {
+
+    @Test
+    void refresh_ShouldSampleCartCountAndMemory() {
+        CartRepository cartRepository = mock(CartRepository.class);
+        when(cartRepository.countCarts()).thenReturn(42L);
+        when(cartRepository.usedMemory()).thenReturn(2048L);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CartMetrics metrics = new CartMetrics(cartRepository, meterRegistry);
+
+        metrics.refresh();
+
+        assertEquals(42, meterRegistry.get("cart.live").gauge().value());
+        assertEquals(2048, meterRegistry.get("cart.redis.memory").gauge().value());
+    }
+}
@@ -1,17 +1,19 @@
 package com.shop.cartservice.service;
 
 import com.shop.cartservice.exception.CartException;
-import com.shop.cartservice.model.dto.ProductBase;
 import com.shop.cartservice.model.dto.ProductCart;
 import com.shop.cartservice.model.entity.Cart;
 import com.shop.cartservice.repository.CartRepository;
+import com.shop.common.contract.ProductBase;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -30,6 +32,12 @@ class CartServiceTest {
     @Mock
     private KafkaEventService kafkaEventService;
 
+    @Spy
+    private StockCeilingCache stockCeilings = new StockCeilingCache(Duration.ofMinutes(1), 100);
+
+    @Spy
+    private ProductInfoCache productInfoCache = new ProductInfoCache(Duration.ofMinutes(1), 100, stockCeilings);
+
     @InjectMocks
     private CartService cartService;
 
@@ -37,28 +45,44 @@ class CartServiceTest {
     private final String productId = "product123";
 
     @Test
-    void addToCart_WhenCartDoesNotExist_ShouldCreateNewCart() {
-        when(cartRepository.findById(userId)).thenReturn(null);
-        doNothing().when(kafkaEventService).checkProductQuantity(eq(userId), eq(productId), eq(1));
+    void addToCart_ShouldIncrementItemAndCheckNewQuantity_WhenStockUnknown() {
+        when(cartRepository.addItem(userId, productId, 1, CartRepository.NO_CEILING)).thenReturn(3L);
 
         cartService.addToCart(userId, productId);
 
-        verify(cartRepository).findById(userId);
-        verify(kafkaEventService).checkProductQuantity(eq(userId), eq(productId), eq(1));
-        verify(cartRepository).save(eq(userId), any(Cart.class));
+        verify(cartRepository).addItem(userId, productId, 1, CartRepository.NO_CEILING);
+        verify(kafkaEventService).checkProductQuantity(userId, productId, 3);
+        verifyNoMoreInteractions(cartRepository);
     }
 
     @Test
-    void addToCart_WhenCartExists_ShouldAddProduct() {
-        Cart existingCart = new Cart(userId);
-        when(cartRepository.findById(userId)).thenReturn(existingCart);
-        doNothing().when(kafkaEventService).checkProductQuantity(eq(userId), eq(productId), eq(1));
+    void addToCart_ShouldCapAtCachedStockWithoutCheck() {
+        stockCeilings.put(productId, 2);
+        when(cartRepository.addItem(userId, productId, 1, 2)).thenReturn(2L);
 
         cartService.addToCart(userId, productId);
 
-        verify(cartRepository).findById(userId);
-        verify(kafkaEventService).checkProductQuantity(eq(userId), eq(productId), eq(1));
-        verify(cartRepository).save(eq(userId), any(Cart.class));
+        verify(cartRepository).addItem(userId, productId, 1, 2);
+        verifyNoInteractions(kafkaEventService);
+    }
+
+    @Test
+    void addToCart_ShouldThrow_WhenCartLocked() {
+        when(cartRepository.addItem(userId, productId, 1, CartRepository.NO_CEILING)).thenReturn(CartRepository.LOCKED);
+
+        CartException exception = assertThrows(CartException.class, () -> cartService.addToCart(userId, productId));
+
+        assertEquals("Cart is locked for order processing.", exception.getMessage());
+        verifyNoInteractions(kafkaEventService);
+    }
+
+    @Test
+    void migrateCarts_ShouldConvertLegacyCarts() {
+        when(cartRepository.migrateLegacyCarts()).thenReturn(2);
+
+        cartService.migrateCarts();
+
+        verify(cartRepository).migrateLegacyCarts();
     }
 
     @Test
@@ -75,6 +99,13 @@ class CartServiceTest {
         verify(cartRepository).decreaseItemQuantity(userId, productId);
     }
 
+    @Test
+    void removeFromCart_ShouldThrow_WhenCartLocked() {
+        when(cartRepository.decreaseItemQuantity(userId, productId)).thenReturn(CartRepository.LOCKED);
+
+        assertThrows(CartException.class, () -> cartService.removeFromCart(productId, userId));
+    }
+
     @Test
     void deleteCart_ShouldCallRepository() {
         cartService.deleteCart(userId);
@@ -129,6 +160,7 @@ class CartServiceTest {
         productBase.setProductId(productId);
         productBase.setName("Test Product");
         productBase.setPrice(new BigDecimal("19.99"));
+        productBase.setAmountLeft(7);
 
         CompletableFuture<List<ProductBase>> future = CompletableFuture.completedFuture(List.of(productBase));
         when(kafkaEventService.requestProductInfo(anyList())).thenReturn(future);
@@ -140,10 +172,42 @@ class CartServiceTest {
         assertEquals(1, products.size());
         assertEquals(productId, products.get(0).getProductId());
         assertEquals(2, products.get(0).getQuantity());
+        assertEquals(7, stockCeilings.get(productId));
         verify(cartRepository).findById(userId);
         verify(kafkaEventService).requestProductInfo(anyList());
     }
 
+    @Test
+    void getCart_ShouldServeCachedProductsWithoutRequest() {
+        Cart cart = new Cart(userId);
+        cart.addProduct(productId, 2);
+        when(cartRepository.findById(userId)).thenReturn(cart);
+        productInfoCache.putAll(List.of(new ProductBase(productId, 5, new BigDecimal("19.99"), "Cached", null)));
+
+        List<ProductCart> products = (List<ProductCart>) cartService.getCart(userId).get("products");
+
+        assertEquals("Cached", products.get(0).getName());
+        verifyNoInteractions(kafkaEventService);
+    }
+
+    @Test
+    void getCart_ShouldRequestOnlyMissingProducts() {
+        Cart cart = new Cart(userId);
+        cart.addProduct(productId, 2);
+        cart.addProduct("product456", 1);
+        when(cartRepository.findById(userId)).thenReturn(cart);
+        productInfoCache.putAll(List.of(new ProductBase(productId, 5, new BigDecimal("19.99"), "Cached", null)));
+        ProductBase fetched = new ProductBase("product456", 3, new BigDecimal("5.00"), "Fetched", null);
+        when(kafkaEventService.requestProductInfo(List.of("product456")))
+                .thenReturn(CompletableFuture.completedFuture(List.of(fetched)));
+
+        List<ProductCart> products = (List<ProductCart>) cartService.getCart(userId).get("products");
+
+        assertEquals(2, products.size());
+        assertEquals(Map.of("product456", fetched), productInfoCache.getAll(List.of("product456")));
+        assertEquals(3, stockCeilings.get("product456"));
+    }
+
     @Test
     void getCart_WhenKafkaServiceFails_ShouldThrowException() {
         Cart cart = new Cart(userId);
@@ -4,14 +4,29 @@ import com.shop.cartservice.exception.CartException;
 import com.shop.cartservice.model.dto.*;
 import com.shop.cartservice.model.entity.Cart;
 import com.shop.cartservice.repository.CartRepository;
+import com.shop.common.contract.CartAbandonedEvent;
+import com.shop.common.contract.CartInfoRequest;
+import com.shop.common.contract.CartInfoResponse;
+import com.shop.common.contract.CartValidationRequest;
+import com.shop.common.contract.CartValidationResponse;
+import com.shop.common.contract.ProductBase;
+import com.shop.common.contract.ProductInfoRequest;
+import com.shop.common.contract.ProductInfoResponse;
+import com.shop.common.contract.ProductQuantityCheck;
+import com.shop.common.contract.ProductsInCartInfoRequest;
+import com.shop.common.contract.ProductsInCartInfoResponse;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -30,6 +45,16 @@ class KafkaEventServiceTest {
     @Mock
     private CartRepository cartRepository;
 
+    @Spy
+    private PendingRequestRegistry pendingRequests =
+            new PendingRequestRegistry("test", 100, Duration.ofMillis(10), 64);
+
+    @Spy
+    private ReplyRouting replyRouting = new ReplyRouting(0, 1);
+
+    @Spy
+    private StockCeilingCache stockCeilings = new StockCeilingCache(Duration.ofMinutes(1), 100);
+
     @InjectMocks
     private KafkaEventService kafkaEventService;
 
@@ -45,11 +70,11 @@ class KafkaEventServiceTest {
 
     @Test
     void checkProductQuantity_ShouldSendKafkaMessage() {
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(null);
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(null);
 
         kafkaEventService.checkProductQuantity(userId, productId, 2);
 
-        verify(kafkaTemplate).send(topicCaptor.capture(), messageCaptor.capture());
+        verify(kafkaTemplate).send(topicCaptor.capture(), eq(productId), messageCaptor.capture());
         assertEquals("product-cart-quantity-check-request", topicCaptor.getValue());
         ProductQuantityCheck sentMessage = (ProductQuantityCheck) messageCaptor.getValue();
         assertEquals(userId, sentMessage.getUserId());
@@ -58,12 +83,22 @@ class KafkaEventServiceTest {
     }
 
     @Test
-    void returnNewValueOfCartQuantity_ShouldUpdateCart() {
+    void sendCartAbandoned_ShouldSendEventKeyedByUser() {
+        CartAbandonedEvent event = new CartAbandonedEvent(userId, Map.of(productId, 1), null);
+
+        kafkaEventService.sendCartAbandoned(event);
+
+        verify(kafkaTemplate).send("cart-abandoned", userId, event);
+    }
+
+    @Test
+    void returnNewValueOfCartQuantity_ShouldCacheStockAndClampCart() {
         ProductQuantityCheck checkResponse = new ProductQuantityCheck(userId, productId, 3);
 
         kafkaEventService.returnNewValueOfCartQuantity(checkResponse);
 
-        verify(cartRepository).setItemQuantity(userId, productId, 3);
+        assertEquals(3, stockCeilings.get(productId));
+        verify(cartRepository).clampItemQuantity(userId, productId, 3);
     }
 
     @Test
@@ -187,7 +222,7 @@ class KafkaEventServiceTest {
     void getProductsAndBlockCart_WhenCartExists_ShouldSendResponse() {
         Cart cart = new Cart(userId);
         cart.addProduct(productId, 2);
-        when(cartRepository.findById(userId)).thenReturn(cart);
+        when(cartRepository.setOrderProcessing(userId, true)).thenReturn(cart);
         when(kafkaTemplate.send(anyString(), any())).thenReturn(null);
 
         ProductsInCartInfoRequest request = new ProductsInCartInfoRequest();
@@ -197,8 +232,8 @@ class KafkaEventServiceTest {
 
         kafkaEventService.getProductsAndBlockCart(request);
 
-        verify(cartRepository).findById(userId);
-        verify(cartRepository).save(eq(userId), any(Cart.class));
+        verify(cartRepository).setOrderProcessing(userId, true);
+        verifyNoMoreInteractions(cartRepository);
         verify(kafkaTemplate).send(topicCaptor.capture(), messageCaptor.capture());
         assertEquals("cart-product-block-response", topicCaptor.getValue());
         ProductsInCartInfoResponse sentResponse = (ProductsInCartInfoResponse) messageCaptor.getValue();
@@ -209,7 +244,7 @@ class KafkaEventServiceTest {
 
     @Test
     void getProductsAndBlockCart_WhenCartIsNull_ShouldThrowException() {
-        when(cartRepository.findById(userId)).thenReturn(null);
+        when(cartRepository.setOrderProcessing(userId, false)).thenReturn(null);
 
         ProductsInCartInfoRequest request = new ProductsInCartInfoRequest();
         request.setUserId(userId);
@@ -218,7 +253,7 @@ class KafkaEventServiceTest {
         CartException exception = assertThrows(CartException.class,
                 () -> kafkaEventService.getProductsAndBlockCart(request));
         assertEquals("Cart is empty.", exception.getMessage());
-        verify(cartRepository).findById(userId);
+        verify(cartRepository).setOrderProcessing(userId, false);
         verifyNoMoreInteractions(cartRepository);
         verifyNoInteractions(kafkaTemplate);
     }
@@ -0,0 +1,54 @@
+package com.shop.cartservice.service;
+
+import com.shop.cartservice.repository.CartRepository;
+import com.shop.common.contract.CatalogInvalidation;
+import com.shop.common.contract.ProductBase;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProductInfoCacheTest {
+
+    private StockCeilingCache stockCeilings;
+    private ProductInfoCache productInfoCache;
+
+    @BeforeEach
+    void setUp() {
+        stockCeilings = new StockCeilingCache(Duration.ofMinutes(1), 100);
+        productInfoCache = new ProductInfoCache(Duration.ofMinutes(1), 100, stockCeilings);
+        productInfoCache.putAll(List.of(product("1"), product("2")));
+        stockCeilings.put("1", 4);
+        stockCeilings.put("2", 4);
+    }
+
+    @Test
+    void getAll_ShouldReturnOnlyCachedProducts() {
+        assertEquals(List.of("1"), List.copyOf(productInfoCache.getAll(List.of("1", "3")).keySet()));
+    }
+
+    @Test
+    void handleInvalidation_ShouldEvictChangedProducts() {
+        productInfoCache.handleInvalidation(new CatalogInvalidation(List.of("1"), false));
+
+        assertEquals(List.of("2"), List.copyOf(productInfoCache.getAll(List.of("1", "2")).keySet()));
+        assertEquals(CartRepository.NO_CEILING, stockCeilings.get("1"));
+        assertEquals(4, stockCeilings.get("2"));
+    }
+
+    @Test
+    void handleInvalidation_ShouldClearEverything_WhenWholeCatalogChanged() {
+        productInfoCache.handleInvalidation(new CatalogInvalidation(List.of(), true));
+
+        assertTrue(productInfoCache.getAll(List.of("1", "2")).isEmpty());
+        assertEquals(CartRepository.NO_CEILING, stockCeilings.get("2"));
+    }
+
+    private static ProductBase product(String id) {
+        return new ProductBase(id, 4, BigDecimal.TEN, "Product " + id, null);
+    }
+}
@@ -0,0 +1,27 @@
+package com.shop.common.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Active with {@code spring.threads.virtual.enabled=true} on Java 21+. Boot then runs Tomcat
+ * requests and {@code @Scheduled} jobs on virtual threads; Kafka listener containers are
+ * switched in each service's {@code KafkaConfig}. Services opt in with {@code @Import}.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class VirtualThreadConfig {
+
+    @Value("${virtual-threads.pinning-threshold-ms:20}")
+    private long pinningThresholdMs;
+
+    @Bean
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor() {
+        return new VirtualThreadPinningMonitor(Duration.ofMillis(pinningThresholdMs));
+    }
+}
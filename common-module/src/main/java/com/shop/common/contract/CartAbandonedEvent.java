@@ -1,15 +1,17 @@
-package com.shop.orderservice.model.dto;
+package com.shop.common.contract;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Date;
 import java.util.Map;
 
-@AllArgsConstructor
-@NoArgsConstructor
 @Data
-public class TotalPriceOfProductsRequest {
-    private String correlationId;
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartAbandonedEvent {
+    private String userId;
     private Map<String, Integer> products;
+    private Date lastModified;
 }
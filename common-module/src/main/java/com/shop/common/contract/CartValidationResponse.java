@@ -1,4 +1,4 @@
-package com.shop.cartservice.model.dto;
+package com.shop.common.contract;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -11,6 +11,6 @@ import java.util.Map;
 @NoArgsConstructor
 public class CartValidationResponse {
     private String correlationId;
-    private String error;
     private Map<String, Integer> products;
+    private String error;
 }
@@ -1,18 +1,15 @@
-package com.shop.cartservice.model.dto;
+package com.shop.common.contract;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.io.Serial;
-import java.io.Serializable;
 import java.util.List;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class ProductInfoRequest {
-    private String correlationId;
+public class CatalogInvalidation {
     private List<String> productIds;
+    private boolean all;
 }
-
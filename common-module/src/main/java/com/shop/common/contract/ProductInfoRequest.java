@@ -1,4 +1,4 @@
-package com.shop.productservice.model.dto;
+package com.shop.common.contract;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
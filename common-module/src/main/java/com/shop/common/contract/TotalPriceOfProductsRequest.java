@@ -0,0 +1,23 @@
+package com.shop.common.contract;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@Data
+public class TotalPriceOfProductsRequest {
+    private String correlationId;
+    private Map<String, Integer> products;
+    /**
+     * Owner of the stock hold, requests without it reserve or release plain quantities.
+     */
+    private String userId;
+
+    public TotalPriceOfProductsRequest(String correlationId, Map<String, Integer> products) {
+        this(correlationId, products, null);
+    }
+}
@@ -1,4 +1,4 @@
-package com.shop.authservice.model.dto;
+package com.shop.common.contract;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
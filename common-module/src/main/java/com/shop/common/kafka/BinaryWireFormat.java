@@ -0,0 +1,87 @@
+package com.shop.common.kafka;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact binary encoding for Kafka payloads: a marker byte, a two byte type id taken from
+ * the registry below and the Smile encoded body. Type ids are shared contract identifiers
+ * (see {@link MessageTypes}), so no class names are sent or remapped. Properties are accessed
+ * through Blackbird generated accessors instead of reflection.
+ */
+public class BinaryWireFormat {
+
+    static final byte MARKER = 0;
+    private static final int HEADER_LENGTH = 3;
+
+    private final Map<Integer, Class<?>> typesById = new HashMap<>();
+    private final Map<Class<?>, Integer> idsByType = new HashMap<>();
+    private final ObjectMapper mapper = SmileMapper.builder(SmileFactory.builder()
+                    .disable(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT)
+                    .build())
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .findAndAddModules()
+            .addModule(new BlackbirdModule())
+            .build();
+
+    public BinaryWireFormat() {
+        register(MessageTypes.STRING, String.class);
+    }
+
+    public BinaryWireFormat register(int typeId, Class<?> type) {
+        if (typeId <= 0 || typeId > 0xFFFF) {
+            throw new IllegalArgumentException("Type id must be between 1 and 65535 but was " + typeId);
+        }
+        Class<?> existing = typesById.putIfAbsent(typeId, type);
+        if (existing != null && existing != type) {
+            throw new IllegalArgumentException("Type id " + typeId + " is already used by " + existing.getName());
+        }
+        idsByType.put(type, typeId);
+        return this;
+    }
+
+    public boolean supports(Object data) {
+        return data != null && idsByType.containsKey(data.getClass());
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length >= HEADER_LENGTH && data[0] == MARKER;
+    }
+
+    public byte[] serialize(Object data) {
+        int typeId = idsByType.get(data.getClass());
+        try {
+            byte[] body = mapper.writeValueAsBytes(data);
+            byte[] result = new byte[HEADER_LENGTH + body.length];
+            result[0] = MARKER;
+            result[1] = (byte) (typeId >>> 8);
+            result[2] = (byte) typeId;
+            System.arraycopy(body, 0, result, HEADER_LENGTH, body.length);
+            return result;
+        } catch (IOException e) {
+            throw new SerializationException("Can't serialize " + data.getClass().getName(), e);
+        }
+    }
+
+    public Object deserialize(byte[] data) {
+        int typeId = ((data[1] & 0xFF) << 8) | (data[2] & 0xFF);
+        Class<?> type = typesById.get(typeId);
+        if (type == null) {
+            throw new SerializationException("Unknown message type id " + typeId);
+        }
+        try {
+            return mapper.readValue(data, HEADER_LENGTH, data.length - HEADER_LENGTH, type);
+        } catch (IOException e) {
+            throw new SerializationException("Can't deserialize message type id " + typeId, e);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.shop.common.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fails startup when the configured consumer group already has members that belong to
+ * another service, before any listener container joins the group and triggers a rebalance.
+ */
+@Slf4j
+public class ConsumerGroupValidator implements SmartInitializingSingleton {
+
+    private final KafkaAdmin kafkaAdmin;
+    private final String applicationName;
+    private final String groupId;
+    private final Duration timeout;
+
+    public ConsumerGroupValidator(KafkaAdmin kafkaAdmin, String applicationName, String groupId, Duration timeout) {
+        this.kafkaAdmin = kafkaAdmin;
+        this.applicationName = applicationName;
+        this.groupId = groupId;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        List<String> foreignClients;
+        try (AdminClient adminClient = AdminClient.create(kafkaAdmin.getConfigurationProperties())) {
+            ConsumerGroupDescription group = adminClient.describeConsumerGroups(List.of(groupId))
+                    .describedGroups()
+                    .get(groupId)
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            foreignClients = group.members().stream()
+                    .map(MemberDescription::clientId)
+                    .filter(clientId -> !clientId.startsWith(applicationName))
+                    .toList();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Could not validate consumer group {}: {}", groupId, e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (!foreignClients.isEmpty()) {
+            throw new IllegalStateException("Consumer group '" + groupId + "' is already used by " + foreignClients
+                    + ". Set kafka.consumer.group-id to a group owned by " + applicationName + ".");
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.shop.common.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.listener.RecordInterceptor;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carries {@link RequestDeadline} across Kafka hops: stamps it on outgoing requests and replies,
+ * skips incoming records whose caller has already given up, and exposes the deadline of the
+ * record being processed to the listener.
+ */
+@Slf4j
+public class DeadlineInterceptor implements ProducerInterceptor<String, Object>, RecordInterceptor<String, Object> {
+
+    private final AtomicLong expiredRecords = new AtomicLong();
+
+    public long getExpiredRecords() {
+        return expiredRecords.get();
+    }
+
+    @Override
+    public ProducerRecord<String, Object> onSend(ProducerRecord<String, Object> record) {
+        Instant deadline = RequestDeadline.outgoing();
+        if (deadline != null && record.headers().lastHeader(RequestDeadline.HEADER) == null) {
+            record.headers().add(RequestDeadline.HEADER, RequestDeadline.encode(deadline));
+        }
+        return record;
+    }
+
+    @Override
+    public ConsumerRecord<String, Object> intercept(ConsumerRecord<String, Object> record,
+                                                    Consumer<String, Object> consumer) {
+        Header header = record.headers().lastHeader(RequestDeadline.HEADER);
+        Instant deadline = header != null ? RequestDeadline.decode(header.value()) : null;
+        if (deadline == null) {
+            RequestDeadline.clear();
+            return record;
+        }
+        if (RequestDeadline.isExpired(deadline)) {
+            RequestDeadline.clear();
+            expiredRecords.incrementAndGet();
+            log.debug("Dropping expired record from {}-{}@{}, deadline was {}",
+                    record.topic(), record.partition(), record.offset(), deadline);
+            return null;
+        }
+        RequestDeadline.set(deadline);
+        return record;
+    }
+
+    @Override
+    public void afterRecord(ConsumerRecord<String, Object> record, Consumer<String, Object> consumer) {
+        RequestDeadline.clear();
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
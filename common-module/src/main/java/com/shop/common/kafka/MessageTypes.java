@@ -0,0 +1,89 @@
+package com.shop.common.kafka;
+
+import com.shop.common.contract.*;
+
+/**
+ * Type ids of all messages exchanged between services. Contracts defined in this module are
+ * pre-registered by {@link #binaryWireFormat()}, services register their own classes for the
+ * remaining ids.
+ */
+public final class MessageTypes {
+
+    public static final int STRING = 1;
+
+    public static final int PRODUCTS_IN_CART_INFO_REQUEST = 10;
+    public static final int PRODUCTS_IN_CART_INFO_RESPONSE = 11;
+    public static final int CART_INFO_REQUEST = 12;
+    public static final int CART_INFO_RESPONSE = 13;
+    public static final int CART_VALIDATION_REQUEST = 14;
+    public static final int CART_VALIDATION_RESPONSE = 15;
+    public static final int CART_ABANDONED_EVENT = 16;
+
+    public static final int PRODUCT_QUANTITY_CHECK = 20;
+    public static final int PRODUCT_INFO_REQUEST = 21;
+    public static final int PRODUCT_INFO_RESPONSE = 22;
+    public static final int TOTAL_PRICE_OF_PRODUCTS_REQUEST = 23;
+    public static final int TOTAL_PRICE_OF_PRODUCTS_RESPONSE = 24;
+    public static final int PRODUCT_PRICE_BY_ID_REQUEST = 25;
+    public static final int PRODUCT_PRICE_BY_ID_RESPONSE = 26;
+    public static final int PRODUCTS_BY_ID_REQUEST = 27;
+    public static final int PRODUCTS_BY_ID_RESPONSE = 28;
+    public static final int FILE_UPLOAD_MESSAGE = 29;
+
+    public static final int CREATE_ORDER_REQUEST = 30;
+    public static final int CREATE_ORDER_RESPONSE = 31;
+    public static final int ORDER_SESSION_REQUEST = 32;
+    public static final int ORDER_REPAYMENT_REQUEST = 33;
+    public static final int ORDER_REPAYMENT_RESPONSE = 34;
+    public static final int ORDER_SENT_EMAIL = 35;
+    public static final int ORDER_PRODUCT_RATED_REQUEST = 36;
+
+    public static final int CUSTOMER_INFO_REQUEST = 40;
+    public static final int CUSTOMER_INFO_RESPONSE = 41;
+    public static final int CUSTOMER_CREATE_REQUEST = 42;
+    public static final int USER_INFO_REQUEST = 43;
+    public static final int USER_INFO_RESPONSE = 44;
+    public static final int USER_CUSTOMER_INFO_REQUEST = 45;
+    public static final int USER_CUSTOMER_INFO_RESPONSE = 46;
+    public static final int USER_EMAIL_REQUEST = 47;
+    public static final int USER_EMAIL_RESPONSE = 48;
+    public static final int USER_DATA_OPERATION_EVENT = 49;
+
+    public static final int CATALOG_INVALIDATION = 50;
+
+    private MessageTypes() {
+    }
+
+    public static BinaryWireFormat binaryWireFormat() {
+        return new BinaryWireFormat()
+                .register(PRODUCTS_IN_CART_INFO_REQUEST, ProductsInCartInfoRequest.class)
+                .register(PRODUCTS_IN_CART_INFO_RESPONSE, ProductsInCartInfoResponse.class)
+                .register(CART_INFO_REQUEST, CartInfoRequest.class)
+                .register(CART_INFO_RESPONSE, CartInfoResponse.class)
+                .register(CART_VALIDATION_REQUEST, CartValidationRequest.class)
+                .register(CART_VALIDATION_RESPONSE, CartValidationResponse.class)
+                .register(CART_ABANDONED_EVENT, CartAbandonedEvent.class)
+                .register(PRODUCT_QUANTITY_CHECK, ProductQuantityCheck.class)
+                .register(PRODUCT_INFO_REQUEST, ProductInfoRequest.class)
+                .register(PRODUCT_INFO_RESPONSE, ProductInfoResponse.class)
+                .register(TOTAL_PRICE_OF_PRODUCTS_REQUEST, TotalPriceOfProductsRequest.class)
+                .register(TOTAL_PRICE_OF_PRODUCTS_RESPONSE, TotalPriceOfProductsResponse.class)
+                .register(PRODUCT_PRICE_BY_ID_REQUEST, ProductPriceByIdRequest.class)
+                .register(PRODUCT_PRICE_BY_ID_RESPONSE, ProductPriceByIdResponse.class)
+                .register(PRODUCTS_BY_ID_REQUEST, ProductsByIdRequest.class)
+                .register(PRODUCTS_BY_ID_RESPONSE, ProductsByIdResponse.class)
+                .register(FILE_UPLOAD_MESSAGE, FileUploadMessage.class)
+                .register(CREATE_ORDER_RESPONSE, CreateOrderResponse.class)
+                .register(ORDER_SESSION_REQUEST, OrderSessionRequest.class)
+                .register(ORDER_REPAYMENT_REQUEST, OrderRepaymentRequest.class)
+                .register(ORDER_SENT_EMAIL, OrderSentEmailDto.class)
+                .register(ORDER_PRODUCT_RATED_REQUEST, OrderProductRatedRequest.class)
+                .register(CUSTOMER_INFO_REQUEST, CustomerInfoRequest.class)
+                .register(USER_INFO_REQUEST, UserInfoRequest.class)
+                .register(USER_CUSTOMER_INFO_REQUEST, UserCustomerInfoRequest.class)
+                .register(USER_EMAIL_REQUEST, UserEmailRequest.class)
+                .register(USER_EMAIL_RESPONSE, UserEmailResponse.class)
+                .register(USER_DATA_OPERATION_EVENT, UserDataOperationEvent.class)
+                .register(CATALOG_INVALIDATION, CatalogInvalidation.class);
+    }
+}
@@ -0,0 +1,184 @@
+package com.shop.common.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Correlation-id keyed futures for Kafka request/reply calls.
+ * Timeouts are kept on a hashed timer wheel driven by a single daemon thread,
+ * so registering a request never creates a thread or a scheduler.
+ */
+@Slf4j
+public class PendingRequestRegistry implements AutoCloseable {
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final Queue<Pending> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int maxPending;
+    private final long tickNanos;
+    private final List<Pending>[] wheel;
+    private final int mask;
+    private final long startTime;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public PendingRequestRegistry(String name, int maxPending, Duration tick, int wheelSize) {
+        if (maxPending <= 0 || tick.isNegative() || tick.isZero() || wheelSize <= 0) {
+            throw new IllegalArgumentException("Invalid pending request registry settings.");
+        }
+        this.maxPending = maxPending;
+        this.tickNanos = tick.toNanos();
+        int buckets = Integer.highestOneBit(wheelSize);
+        if (buckets < wheelSize) {
+            buckets <<= 1;
+        }
+        this.wheel = new List[buckets];
+        for (int i = 0; i < buckets; i++) {
+            wheel[i] = new ArrayList<>();
+        }
+        this.mask = buckets - 1;
+        this.startTime = System.nanoTime();
+        this.worker = new Thread(this::run, name + "-timer");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public <T> CompletableFuture<T> register(String correlationId, Duration timeout, String timeoutMessage) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!running) {
+            future.completeExceptionally(new RejectedExecutionException("Pending request registry is closed."));
+            return future;
+        }
+        if (timeout.isNegative() || timeout.isZero()) {
+            future.completeExceptionally(new TimeoutException(timeoutMessage));
+            return future;
+        }
+        if (size.incrementAndGet() > maxPending) {
+            size.decrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("Too many pending requests."));
+            return future;
+        }
+        Pending entry = new Pending(correlationId, future, System.nanoTime() + timeout.toNanos(), timeoutMessage);
+        if (pending.putIfAbsent(correlationId, entry) != null) {
+            size.decrementAndGet();
+            future.completeExceptionally(new IllegalStateException("Duplicate correlation id: " + correlationId));
+            return future;
+        }
+        future.whenComplete((value, ex) -> release(entry));
+        newTimeouts.add(entry);
+        return future;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> boolean complete(String correlationId, T value) {
+        Pending entry = get(correlationId);
+        return entry != null && ((CompletableFuture<T>) entry.future).complete(value);
+    }
+
+    public boolean completeExceptionally(String correlationId, Throwable ex) {
+        Pending entry = get(correlationId);
+        return entry != null && entry.future.completeExceptionally(ex);
+    }
+
+    public boolean contains(String correlationId) {
+        return pending.containsKey(correlationId);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        worker.interrupt();
+        pending.values().forEach(entry ->
+                entry.future.completeExceptionally(new CancellationException("Pending request registry closed.")));
+    }
+
+    private Pending get(String correlationId) {
+        return correlationId == null ? null : pending.get(correlationId);
+    }
+
+    /**
+     * Runs whenever a registered future completes, including through {@code cancel()} or
+     * {@code orTimeout()} on the caller's side, so its slot is always given back.
+     */
+    private void release(Pending entry) {
+        if (pending.remove(entry.correlationId, entry)) {
+            size.decrementAndGet();
+        }
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long sleep = startTime + tick * tickNanos - System.nanoTime();
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                if (Thread.interrupted() && !running) {
+                    return;
+                }
+                continue;
+            }
+            try {
+                transferNewTimeouts(tick);
+                expire(tick);
+            } catch (Exception e) {
+                log.error("Error while expiring pending requests", e);
+            }
+            tick++;
+        }
+    }
+
+    private void transferNewTimeouts(long currentTick) {
+        Pending entry;
+        while ((entry = newTimeouts.poll()) != null) {
+            if (entry.future.isDone()) {
+                continue;
+            }
+            entry.deadlineTick = Math.max((entry.deadline - startTime + tickNanos - 1) / tickNanos, currentTick);
+            wheel[(int) (entry.deadlineTick & mask)].add(entry);
+        }
+    }
+
+    private void expire(long currentTick) {
+        List<Pending> bucket = wheel[(int) (currentTick & mask)];
+        int i = 0;
+        while (i < bucket.size()) {
+            Pending entry = bucket.get(i);
+            if (entry.future.isDone() || entry.deadlineTick <= currentTick) {
+                int last = bucket.size() - 1;
+                bucket.set(i, bucket.get(last));
+                bucket.remove(last);
+                entry.future.completeExceptionally(new TimeoutException(entry.timeoutMessage));
+            } else {
+                i++;
+            }
+        }
+    }
+
+    private static final class Pending {
+        private final String correlationId;
+        private final CompletableFuture<?> future;
+        private final long deadline;
+        private final String timeoutMessage;
+        private long deadlineTick;
+
+        private Pending(String correlationId, CompletableFuture<?> future, long deadline, String timeoutMessage) {
+            this.correlationId = correlationId;
+            this.future = future;
+            this.deadline = deadline;
+            this.timeoutMessage = timeoutMessage;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.shop.common.kafka;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Producer presets. {@link #LOW_LATENCY} sends request/reply traffic right away, {@link #HIGH_THROUGHPUT}
+ * waits a little to build large compressed batches for fire-and-forget events. Both are idempotent,
+ * so retries can't duplicate or reorder records within a partition.
+ */
+public enum ProducerProfile {
+
+    LOW_LATENCY(0, 16 * 1024, "lz4"),
+    HIGH_THROUGHPUT(20, 256 * 1024, "zstd");
+
+    private static final int MAX_IN_FLIGHT_REQUESTS = 5;
+
+    private final int lingerMs;
+    private final int batchSize;
+    private final String compressionType;
+
+    ProducerProfile(int lingerMs, int batchSize, String compressionType) {
+        this.lingerMs = lingerMs;
+        this.batchSize = batchSize;
+        this.compressionType = compressionType;
+    }
+
+    public static ProducerProfile fromName(String name) {
+        return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    public Map<String, Object> configs() {
+        return Map.of(
+                ProducerConfig.LINGER_MS_CONFIG, lingerMs,
+                ProducerConfig.BATCH_SIZE_CONFIG, batchSize,
+                ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType,
+                ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true,
+                ProducerConfig.ACKS_CONFIG, "all",
+                ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, MAX_IN_FLIGHT_REQUESTS
+        );
+    }
+}
@@ -0,0 +1,80 @@
+package com.shop.common.kafka;
+
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerInterceptor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+
+/**
+ * Routes Kafka replies back to the instance that sent the request.
+ * Outgoing records are stamped with this instance's reply partition, reply listeners
+ * are assigned only that partition, and responders send to the partition found
+ * on the request being processed.
+ */
+public class ReplyRouting implements ProducerInterceptor<String, Object>, RecordInterceptor<String, Object> {
+
+    private final ThreadLocal<Integer> currentReplyPartition = new ThreadLocal<>();
+    private final int replyPartition;
+    private final byte[] replyPartitionHeader;
+
+    public ReplyRouting(int replyPartition, int replyPartitions) {
+        if (replyPartition < 0 || replyPartition >= replyPartitions) {
+            throw new IllegalArgumentException("kafka.reply.partition must be between 0 and "
+                    + (replyPartitions - 1) + " but was " + replyPartition);
+        }
+        this.replyPartition = replyPartition;
+        this.replyPartitionHeader = ByteBuffer.allocate(Integer.BYTES).putInt(replyPartition).array();
+    }
+
+    public int getReplyPartition() {
+        return replyPartition;
+    }
+
+    public Integer currentReplyPartition() {
+        return currentReplyPartition.get();
+    }
+
+    @Override
+    public ProducerRecord<String, Object> onSend(ProducerRecord<String, Object> record) {
+        if (record.headers().lastHeader(KafkaHeaders.REPLY_PARTITION) == null) {
+            record.headers().add(KafkaHeaders.REPLY_PARTITION, replyPartitionHeader);
+        }
+        return record;
+    }
+
+    @Override
+    public ConsumerRecord<String, Object> intercept(ConsumerRecord<String, Object> record,
+                                                    Consumer<String, Object> consumer) {
+        Header header = record.headers().lastHeader(KafkaHeaders.REPLY_PARTITION);
+        if (header != null && header.value() != null && header.value().length == Integer.BYTES) {
+            currentReplyPartition.set(ByteBuffer.wrap(header.value()).getInt());
+        } else {
+            currentReplyPartition.remove();
+        }
+        return record;
+    }
+
+    @Override
+    public void afterRecord(ConsumerRecord<String, Object> record, Consumer<String, Object> consumer) {
+        currentReplyPartition.remove();
+    }
+
+    @Override
+    public void onAcknowledgement(RecordMetadata metadata, Exception exception) {
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
@@ -0,0 +1,100 @@
+package com.shop.common.kafka;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Supplier;
+
+/**
+ * End-to-end deadline of the Kafka request/reply exchange the current thread is working for.
+ * Request and reply listeners inherit it from the incoming record, callers open one with
+ * {@link #open}, and requesters budget their replies from it instead of a per-hop timeout.
+ */
+public final class RequestDeadline {
+
+    public static final String HEADER = "x-request-deadline";
+
+    private static final ThreadLocal<Instant> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Instant> OUTGOING = new ThreadLocal<>();
+
+    private RequestDeadline() {
+    }
+
+    public static Instant current() {
+        return CURRENT.get();
+    }
+
+    public static Instant forRequest(Duration timeout) {
+        Instant current = CURRENT.get();
+        return current != null ? current : Instant.now().plus(timeout);
+    }
+
+    public static Duration remaining(Instant deadline) {
+        return Duration.between(Instant.now(), deadline);
+    }
+
+    public static boolean isExpired(Instant deadline) {
+        return !deadline.isAfter(Instant.now());
+    }
+
+    public static Scope open(Instant deadline) {
+        Instant previous = CURRENT.get();
+        CURRENT.set(deadline);
+        return () -> restore(CURRENT, previous);
+    }
+
+    /**
+     * Runs a send so that the records it produces carry {@code deadline} in the {@link #HEADER} header.
+     * Sends outside of this method are not stamped, so fire-and-forget events are never dropped as expired.
+     */
+    public static <T> T stamp(Instant deadline, Supplier<T> send) {
+        return withValue(OUTGOING, deadline, send);
+    }
+
+    static Instant outgoing() {
+        return OUTGOING.get();
+    }
+
+    static void set(Instant deadline) {
+        CURRENT.set(deadline);
+    }
+
+    static void clear() {
+        CURRENT.remove();
+    }
+
+    static byte[] encode(Instant deadline) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(deadline.toEpochMilli()).array();
+    }
+
+    static Instant decode(byte[] value) {
+        if (value == null || value.length != Long.BYTES) {
+            return null;
+        }
+        return Instant.ofEpochMilli(ByteBuffer.wrap(value).getLong());
+    }
+
+    private static <T> T withValue(ThreadLocal<Instant> holder, Instant deadline, Supplier<T> action) {
+        Instant previous = holder.get();
+        holder.set(deadline);
+        try {
+            return action.get();
+        } finally {
+            restore(holder, previous);
+        }
+    }
+
+    private static void restore(ThreadLocal<Instant> holder, Instant previous) {
+        if (previous == null) {
+            holder.remove();
+        } else {
+            holder.set(previous);
+        }
+    }
+
+    public interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,44 @@
+package com.shop.common.kafka;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.util.Map;
+
+/**
+ * Reads both wire formats, so producers can switch a topic to binary without
+ * coordinating with its consumers.
+ */
+public class WireFormatDeserializer implements Deserializer<Object> {
+
+    private final JsonDeserializer<Object> json = new JsonDeserializer<>();
+    private final BinaryWireFormat binary;
+
+    public WireFormatDeserializer(BinaryWireFormat binary) {
+        this.binary = binary;
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public Object deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public Object deserialize(String topic, Headers headers, byte[] data) {
+        if (BinaryWireFormat.isBinary(data)) {
+            return binary.deserialize(data);
+        }
+        return headers == null ? json.deserialize(topic, data) : json.deserialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
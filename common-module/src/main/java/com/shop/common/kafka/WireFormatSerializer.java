@@ -0,0 +1,47 @@
+package com.shop.common.kafka;
+
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes registered payloads sent to the configured topics in the {@link BinaryWireFormat},
+ * everything else stays on the JSON path with type headers.
+ */
+public class WireFormatSerializer implements Serializer<Object> {
+
+    private final JsonSerializer<Object> json = new JsonSerializer<>();
+    private final BinaryWireFormat binary;
+    private final Set<String> binaryTopics;
+
+    public WireFormatSerializer(BinaryWireFormat binary, Set<String> binaryTopics) {
+        this.binary = binary;
+        this.binaryTopics = Set.copyOf(binaryTopics);
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        json.configure(configs, isKey);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Object data) {
+        return serialize(topic, null, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, Object data) {
+        if (binaryTopics.contains(topic) && binary.supports(data)) {
+            return binary.serialize(data);
+        }
+        return headers == null ? json.serialize(topic, data) : json.serialize(topic, headers, data);
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
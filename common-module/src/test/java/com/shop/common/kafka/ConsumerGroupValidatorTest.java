@@ -0,0 +1,90 @@
+package com.shop.common.kafka;
+
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.ConsumerGroupDescription;
+import org.apache.kafka.clients.admin.DescribeConsumerGroupsResult;
+import org.apache.kafka.clients.admin.MemberAssignment;
+import org.apache.kafka.clients.admin.MemberDescription;
+import org.apache.kafka.common.ConsumerGroupState;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.internals.KafkaFutureImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ConsumerGroupValidatorTest {
+
+    private MockedStatic<AdminClient> adminClientFactory;
+    private AdminClient adminClient;
+    private ConsumerGroupValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        KafkaAdmin kafkaAdmin = mock(KafkaAdmin.class);
+        when(kafkaAdmin.getConfigurationProperties()).thenReturn(Map.of());
+        adminClient = mock(AdminClient.class);
+        adminClientFactory = mockStatic(AdminClient.class);
+        adminClientFactory.when(() -> AdminClient.create(any(Map.class))).thenReturn(adminClient);
+        validator = new ConsumerGroupValidator(kafkaAdmin, "payment-service", "payment-service", Duration.ofSeconds(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        adminClientFactory.close();
+    }
+
+    @Test
+    void afterSingletonsInstantiated_shouldPass_whenGroupHasOnlyOwnMembers() {
+        givenGroupMembers("payment-service-0", "payment-service-1");
+
+        assertDoesNotThrow(() -> validator.afterSingletonsInstantiated());
+    }
+
+    @Test
+    void afterSingletonsInstantiated_shouldFail_whenGroupHasForeignMembers() {
+        givenGroupMembers("payment-service-0", "order-service-0");
+
+        IllegalStateException ex = assertThrows(IllegalStateException.class,
+                () -> validator.afterSingletonsInstantiated());
+
+        assertTrue(ex.getMessage().contains("order-service-0"));
+    }
+
+    @Test
+    void afterSingletonsInstantiated_shouldNotFail_whenBrokerIsUnavailable() {
+        KafkaFutureImpl<ConsumerGroupDescription> future = new KafkaFutureImpl<>();
+        future.completeExceptionally(new TimeoutException("Broker unavailable"));
+        givenGroup(future);
+
+        assertDoesNotThrow(() -> validator.afterSingletonsInstantiated());
+    }
+
+    private void givenGroupMembers(String... clientIds) {
+        List<MemberDescription> members = Arrays.stream(clientIds)
+                .map(clientId -> new MemberDescription(clientId, clientId, "host", new MemberAssignment(Set.of())))
+                .toList();
+        ConsumerGroupDescription description = new ConsumerGroupDescription(
+                "payment-service", false, members, "range", ConsumerGroupState.STABLE, null);
+        givenGroup(KafkaFuture.completedFuture(description));
+    }
+
+    private void givenGroup(KafkaFuture<ConsumerGroupDescription> future) {
+        DescribeConsumerGroupsResult result = mock(DescribeConsumerGroupsResult.class);
+        when(result.describedGroups()).thenReturn(Map.of("payment-service", future));
+        when(adminClient.describeConsumerGroups(anyCollection())).thenReturn(result);
+    }
+}
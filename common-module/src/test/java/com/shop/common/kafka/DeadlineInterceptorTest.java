@@ -0,0 +1,87 @@
+package com.shop.common.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeadlineInterceptorTest {
+
+    private final DeadlineInterceptor interceptor = new DeadlineInterceptor();
+
+    @AfterEach
+    void tearDown() {
+        RequestDeadline.clear();
+    }
+
+    @Test
+    void onSend_shouldStampDeadline_onlyForStampedSends() {
+        Instant deadline = Instant.now().plusSeconds(5).truncatedTo(ChronoUnit.MILLIS);
+        ProducerRecord<String, Object> request = new ProducerRecord<>("total-price-request", "payload");
+        ProducerRecord<String, Object> event = new ProducerRecord<>("order-delivered", "payload");
+
+        RequestDeadline.stamp(deadline, () -> interceptor.onSend(request));
+        interceptor.onSend(event);
+
+        Header header = request.headers().lastHeader(RequestDeadline.HEADER);
+        assertEquals(deadline, RequestDeadline.decode(header.value()));
+        assertNull(event.headers().lastHeader(RequestDeadline.HEADER));
+    }
+
+    @Test
+    void intercept_shouldExposeDeadlineUntilRecordIsProcessed() {
+        Instant deadline = Instant.now().plusSeconds(5).truncatedTo(ChronoUnit.MILLIS);
+        ConsumerRecord<String, Object> record = recordWithDeadline(deadline);
+
+        assertSame(record, interceptor.intercept(record, null));
+        assertEquals(deadline, RequestDeadline.current());
+        assertEquals(deadline, RequestDeadline.forRequest(Duration.ofSeconds(30)));
+
+        interceptor.afterRecord(record, null);
+        assertNull(RequestDeadline.current());
+    }
+
+    @Test
+    void intercept_shouldDropExpiredRecord() {
+        ConsumerRecord<String, Object> record = recordWithDeadline(Instant.now().minusSeconds(1));
+
+        assertNull(interceptor.intercept(record, null));
+        assertNull(RequestDeadline.current());
+        assertEquals(1, interceptor.getExpiredRecords());
+    }
+
+    @Test
+    void intercept_shouldPassRecordWithoutDeadline() {
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>("order-create-request", 0, 0L, null, "payload");
+
+        assertSame(record, interceptor.intercept(record, null));
+        assertNull(RequestDeadline.current());
+    }
+
+    @Test
+    void open_shouldRestorePreviousDeadline() {
+        Instant outer = Instant.now().plusSeconds(10);
+        Instant inner = Instant.now().plusSeconds(5);
+
+        try (RequestDeadline.Scope ignored = RequestDeadline.open(outer)) {
+            try (RequestDeadline.Scope nested = RequestDeadline.open(inner)) {
+                assertEquals(inner, RequestDeadline.current());
+            }
+            assertEquals(outer, RequestDeadline.current());
+        }
+        assertNull(RequestDeadline.current());
+    }
+
+    private ConsumerRecord<String, Object> recordWithDeadline(Instant deadline) {
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>("order-create-request", 0, 0L, null, "payload");
+        record.headers().add(RequestDeadline.HEADER, RequestDeadline.encode(deadline));
+        return record;
+    }
+}
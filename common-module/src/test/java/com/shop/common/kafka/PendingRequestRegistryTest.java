@@ -0,0 +1,129 @@
+package com.shop.common.kafka;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingRequestRegistryTest {
+
+    private PendingRequestRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new PendingRequestRegistry("test", 2, Duration.ofMillis(10), 8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    void complete_shouldCompleteRegisteredFuture() throws Exception {
+        CompletableFuture<String> future = registry.register("corr-1", Duration.ofSeconds(5), "Timeout");
+
+        assertTrue(registry.complete("corr-1", "value"));
+
+        assertEquals("value", future.get());
+        assertEquals(0, registry.size());
+        assertFalse(registry.contains("corr-1"));
+    }
+
+    @Test
+    void complete_shouldReturnFalse_whenCorrelationIdIsUnknown() {
+        assertFalse(registry.complete("unknown", "value"));
+        assertFalse(registry.completeExceptionally("unknown", new RuntimeException()));
+        assertFalse(registry.complete(null, "value"));
+    }
+
+    @Test
+    void register_shouldTimeOutFuture() {
+        CompletableFuture<String> future = registry.register("corr-1", Duration.ofMillis(50), "Timeout waiting");
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+
+        assertInstanceOf(TimeoutException.class, ex.getCause());
+        assertEquals("Timeout waiting", ex.getCause().getMessage());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void register_shouldTimeOutAfterMoreThanOneWheelRotation() throws Exception {
+        CompletableFuture<String> future = registry.register("corr-1", Duration.ofMillis(200), "Timeout");
+
+        Thread.sleep(100);
+        assertFalse(future.isDone());
+
+        assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void register_shouldFailImmediately_whenDeadlineHasPassed() {
+        CompletableFuture<String> future = registry.register("corr-1", Duration.ofMillis(-5), "Timeout");
+
+        ExecutionException ex = assertThrows(ExecutionException.class, future::get);
+
+        assertInstanceOf(TimeoutException.class, ex.getCause());
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    void register_shouldRejectRequests_whenCapacityIsReached() {
+        registry.register("corr-1", Duration.ofSeconds(5), "Timeout");
+        registry.register("corr-2", Duration.ofSeconds(5), "Timeout");
+
+        CompletableFuture<String> rejected = registry.register("corr-3", Duration.ofSeconds(5), "Timeout");
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertEquals(2, registry.size());
+    }
+
+    @Test
+    void register_shouldReleaseCapacity_whenCallerCancelsFuture() {
+        CompletableFuture<String> cancelled = registry.register("corr-1", Duration.ofSeconds(5), "Timeout");
+        CompletableFuture<String> completed = registry.register("corr-2", Duration.ofSeconds(5), "Timeout");
+
+        cancelled.cancel(false);
+        completed.complete("value");
+
+        assertEquals(0, registry.size());
+        assertFalse(registry.contains("corr-1"));
+        assertFalse(registry.register("corr-3", Duration.ofSeconds(5), "Timeout").isDone());
+        assertFalse(registry.register("corr-4", Duration.ofSeconds(5), "Timeout").isDone());
+    }
+
+    @Test
+    void register_shouldNotTimeOutBeforeDeadline() {
+        long start = System.nanoTime();
+        CompletableFuture<String> future = registry.register("corr-1", Duration.ofMillis(35), "Timeout");
+
+        assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(35).toNanos());
+    }
+
+    @Test
+    void register_shouldRejectDuplicateCorrelationId() {
+        registry.register("corr-1", Duration.ofSeconds(5), "Timeout");
+
+        CompletableFuture<String> duplicate = registry.register("corr-1", Duration.ofSeconds(5), "Timeout");
+
+        assertTrue(duplicate.isCompletedExceptionally());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void close_shouldFailPendingFutures() {
+        CompletableFuture<String> future = registry.register("corr-1", Duration.ofSeconds(5), "Timeout");
+
+        registry.close();
+
+        assertTrue(future.isCompletedExceptionally());
+        assertTrue(registry.register("corr-2", Duration.ofSeconds(5), "Timeout").isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,66 @@
+package com.shop.common.kafka;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplyRoutingTest {
+
+    private final ReplyRouting replyRouting = new ReplyRouting(2, 4);
+
+    @Test
+    void constructor_shouldRejectPartitionOutsideOfReplyTopic() {
+        assertThrows(IllegalArgumentException.class, () -> new ReplyRouting(4, 4));
+        assertThrows(IllegalArgumentException.class, () -> new ReplyRouting(-1, 4));
+    }
+
+    @Test
+    void onSend_shouldStampOwnReplyPartition() {
+        ProducerRecord<String, Object> record = new ProducerRecord<>("total-price-request", "payload");
+
+        replyRouting.onSend(record);
+
+        Header header = record.headers().lastHeader(KafkaHeaders.REPLY_PARTITION);
+        assertNotNull(header);
+        assertEquals(2, ByteBuffer.wrap(header.value()).getInt());
+    }
+
+    @Test
+    void onSend_shouldKeepExistingReplyPartition() {
+        ProducerRecord<String, Object> record = new ProducerRecord<>("total-price-request", "payload");
+        record.headers().add(KafkaHeaders.REPLY_PARTITION, ByteBuffer.allocate(4).putInt(1).array());
+
+        replyRouting.onSend(record);
+
+        assertEquals(1, record.headers().toArray().length);
+    }
+
+    @Test
+    void intercept_shouldExposeRequestReplyPartitionUntilRecordIsProcessed() {
+        ConsumerRecord<String, Object> record = new ConsumerRecord<>("order-create-request", 0, 0L, null, "payload");
+        record.headers().add(KafkaHeaders.REPLY_PARTITION, ByteBuffer.allocate(4).putInt(3).array());
+
+        replyRouting.intercept(record, null);
+        assertEquals(3, replyRouting.currentReplyPartition());
+
+        replyRouting.afterRecord(record, null);
+        assertNull(replyRouting.currentReplyPartition());
+    }
+
+    @Test
+    void intercept_shouldClearReplyPartition_whenRequestHasNoHeader() {
+        ConsumerRecord<String, Object> withHeader = new ConsumerRecord<>("order-create-request", 0, 0L, null, "payload");
+        withHeader.headers().add(KafkaHeaders.REPLY_PARTITION, ByteBuffer.allocate(4).putInt(3).array());
+        replyRouting.intercept(withHeader, null);
+
+        replyRouting.intercept(new ConsumerRecord<>("order-create-request", 0, 1L, null, "payload"), null);
+
+        assertNull(replyRouting.currentReplyPartition());
+    }
+}
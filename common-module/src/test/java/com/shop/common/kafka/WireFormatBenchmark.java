@@ -0,0 +1,90 @@
+package com.shop.common.kafka;
+
+import com.shop.common.contract.ProductOrderDto;
+import com.shop.common.contract.ProductsByIdResponse;
+import com.shop.common.contract.ProductsInCartInfoResponse;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the JSON and binary wire formats. Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class WireFormatBenchmark {
+
+    private static final int WARMUP = 50_000;
+    private static final int ITERATIONS = 200_000;
+
+    @Test
+    void compareWireFormats() {
+        BinaryWireFormat binary = new BinaryWireFormat()
+                .register(11, ProductsInCartInfoResponse.class)
+                .register(28, ProductsByIdResponse.class);
+        WireFormatSerializer serializer = new WireFormatSerializer(binary, Set.of("binary"));
+        WireFormatDeserializer deserializer = new WireFormatDeserializer(binary);
+        serializer.configure(Map.of(JsonSerializer.ADD_TYPE_INFO_HEADERS, true), false);
+        deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "*",
+                JsonDeserializer.REMOVE_TYPE_INFO_HEADERS, false,
+                JsonDeserializer.TYPE_MAPPINGS,
+                "com.shop.cartservice.model.dto.ProductsInCartInfoResponse:" + ProductsInCartInfoResponse.class.getName()
+                        + ",com.shop.productservice.model.dto.ProductsByIdResponse:" + ProductsByIdResponse.class.getName()), false);
+
+        Map<String, Integer> cart = new LinkedHashMap<>();
+        IntStream.range(0, 10).forEach(i -> cart.put("65f1c2a9e4b0a1b2c3d4e5f" + i, i + 1));
+        List<ProductOrderDto> products = IntStream.range(0, 20)
+                .mapToObj(i -> new ProductOrderDto("65f1c2a9e4b0a1b2c3d4e5" + i, "Football size " + i,
+                        "/api/files/product-" + i + ".png"))
+                .toList();
+
+        run(serializer, deserializer, new ProductsInCartInfoResponse("7d3c1e1a-5a4f-4f0e-9f6b-2c8e5d7a9b10", cart));
+        run(serializer, deserializer, new ProductsByIdResponse("7d3c1e1a-5a4f-4f0e-9f6b-2c8e5d7a9b10", null, products));
+    }
+
+    private void run(WireFormatSerializer serializer, WireFormatDeserializer deserializer, Object message) {
+        RecordHeaders jsonHeaders = new RecordHeaders();
+        byte[] json = serializer.serialize("json", jsonHeaders, message);
+        RecordHeaders binaryHeaders = new RecordHeaders();
+        byte[] binary = serializer.serialize("binary", binaryHeaders, message);
+        assertEquals(message, deserializer.deserialize("json", jsonHeaders, json));
+        assertEquals(message, deserializer.deserialize("binary", binaryHeaders, binary));
+
+        long jsonNanos = measure(deserializer, "json", jsonHeaders, json);
+        long binaryNanos = measure(deserializer, "binary", binaryHeaders, binary);
+
+        System.out.printf("%-28s json: %5d bytes %6d ns/op | binary: %5d bytes %6d ns/op%n",
+                message.getClass().getSimpleName(),
+                json.length + headerBytes(jsonHeaders), jsonNanos,
+                binary.length + headerBytes(binaryHeaders), binaryNanos);
+    }
+
+    private long measure(WireFormatDeserializer deserializer, String topic, RecordHeaders headers, byte[] data) {
+        for (int i = 0; i < WARMUP; i++) {
+            deserializer.deserialize(topic, headers, data);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            deserializer.deserialize(topic, headers, data);
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    private int headerBytes(RecordHeaders headers) {
+        int size = 0;
+        for (Header header : headers) {
+            size += header.key().length() + header.value().length;
+        }
+        return size;
+    }
+}
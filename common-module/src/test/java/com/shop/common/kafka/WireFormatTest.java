@@ -0,0 +1,90 @@
+package com.shop.common.kafka;
+
+import com.shop.common.contract.ProductOrderDto;
+import com.shop.common.contract.ProductsByIdResponse;
+import com.shop.common.contract.ProductsInCartInfoResponse;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireFormatTest {
+
+    private final BinaryWireFormat binary = new BinaryWireFormat()
+            .register(11, ProductsInCartInfoResponse.class)
+            .register(28, ProductsByIdResponse.class);
+    private final WireFormatSerializer serializer = new WireFormatSerializer(binary, Set.of("binary-topic"));
+    private final WireFormatDeserializer deserializer = new WireFormatDeserializer(binary);
+
+    @BeforeEach
+    void setUp() {
+        serializer.configure(Map.of(JsonSerializer.ADD_TYPE_INFO_HEADERS, true), false);
+        deserializer.configure(Map.of(JsonDeserializer.TRUSTED_PACKAGES, "*"), false);
+    }
+
+    @Test
+    void serialize_shouldWriteRegisteredTypeInBinary_whenTopicIsBinary() {
+        ProductsByIdResponse response = new ProductsByIdResponse("corr-1", null,
+                List.of(new ProductOrderDto("p1", "Ball", "ball.png")));
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] data = serializer.serialize("binary-topic", headers, response);
+
+        assertTrue(BinaryWireFormat.isBinary(data));
+        assertEquals(0, headers.toArray().length);
+        assertEquals(response, deserializer.deserialize("binary-topic", headers, data));
+    }
+
+    @Test
+    void serialize_shouldUseJsonWithTypeHeaders_whenTopicIsNotBinary() {
+        ProductsInCartInfoResponse response = new ProductsInCartInfoResponse("corr-1", Map.of("p1", 2));
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] data = serializer.serialize("json-topic", headers, response);
+
+        assertFalse(BinaryWireFormat.isBinary(data));
+        assertNotNull(headers.lastHeader("__TypeId__"));
+        assertEquals(response, deserializer.deserialize("json-topic", headers, data));
+    }
+
+    @Test
+    void serialize_shouldFallBackToJson_whenTypeIsNotRegistered() {
+        RecordHeaders headers = new RecordHeaders();
+
+        byte[] data = serializer.serialize("binary-topic", headers, Map.of("p1", 2));
+
+        assertFalse(BinaryWireFormat.isBinary(data));
+        assertEquals(Map.of("p1", 2), deserializer.deserialize("binary-topic", headers, data));
+    }
+
+    @Test
+    void serialize_shouldWriteStringsInBinary() {
+        byte[] data = serializer.serialize("binary-topic", new RecordHeaders(), "corr-1");
+
+        assertTrue(BinaryWireFormat.isBinary(data));
+        assertEquals("corr-1", deserializer.deserialize("binary-topic", new RecordHeaders(), data));
+    }
+
+    @Test
+    void deserialize_shouldFail_whenTypeIdIsUnknown() {
+        byte[] data = new BinaryWireFormat().register(99, ProductsInCartInfoResponse.class)
+                .serialize(new ProductsInCartInfoResponse("corr-1", Map.of()));
+
+        assertThrows(SerializationException.class,
+                () -> deserializer.deserialize("binary-topic", new RecordHeaders(), data));
+    }
+
+    @Test
+    void register_shouldRejectTypeIdUsedByAnotherClass() {
+        assertThrows(IllegalArgumentException.class, () -> binary.register(11, ProductsByIdResponse.class));
+        assertThrows(IllegalArgumentException.class, () -> binary.register(0, ProductsByIdResponse.class));
+    }
+}
@@ -1,11 +1,14 @@
 package com.shop.customer;
 
+import com.shop.common.config.VirtualThreadConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.Import;
 
 @SpringBootApplication
 @EnableDiscoveryClient
+@Import(VirtualThreadConfig.class)
 public class CustomerServiceApplication {
 
     public static void main(String[] args) {
@@ -1,19 +1,27 @@
 package com.shop.customer.service;
 
+import com.shop.common.contract.CustomerInfoRequest;
+import com.shop.common.contract.UserCustomerInfoRequest;
+import com.shop.common.contract.UserInfoRequest;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
+import com.shop.common.kafka.RequestDeadline;
 import com.shop.customer.model.dto.*;
 import com.shop.customer.model.entity.Customer;
 import com.shop.customer.repository.CustomerRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.*;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @RequiredArgsConstructor
@@ -22,60 +30,54 @@ public class KafkaEventService {
 
     private final CustomerRepository customerRepository;
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final Map<String, CompletableFuture<UserInfoDto>> userInfoChecks = new ConcurrentHashMap<>();
+    private final ReplyRouting replyRouting;
+    private final PendingRequestRegistry pendingRequests;
 
     public CompletableFuture<UserInfoDto> getUserInfoRequest(String userId) {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<UserInfoDto> future = new CompletableFuture<>();
-        userInfoChecks.put(correlationId, future);
-
+        Instant deadline = RequestDeadline.forRequest(Duration.ofSeconds(5));
+        CompletableFuture<UserInfoDto> future = pendingRequests.register(
+                correlationId, RequestDeadline.remaining(deadline), "Timeout waiting for user info response");
+        if (future.isDone()) {
+            return future;
+        }
         try {
             UserInfoRequest request = new UserInfoRequest(userId, correlationId);
-            kafkaTemplate.send("user-info-request", request);
-            ScheduledExecutorService executorService = Executors.newScheduledThreadPool(1);
-            executorService.schedule(() -> {
-                if (!future.isDone()) {
-                    future.completeExceptionally(new RuntimeException("Timeout waiting for user info response"));
-                }
-            }, 5, TimeUnit.SECONDS);
+            RequestDeadline.stamp(deadline, () -> kafkaTemplate.send("user-info-request", userId, request));
         } catch (Exception e) {
-            future.completeExceptionally(e);
-            userInfoChecks.remove(correlationId);
+            pendingRequests.completeExceptionally(correlationId, e);
         }
         return future;
     }
 
-    @KafkaListener(topics = "user-info-response", groupId = "customer-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "user-info-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void userInfoResponseListener(UserInfoResponse userInfoResponse) {
         log.info("Received user info response: {}", userInfoResponse.getCorrelationId());
-        CompletableFuture<UserInfoDto> future = userInfoChecks.remove(userInfoResponse.getCorrelationId());
-        if (future != null) {
-            future.complete(userInfoResponse.getUserInfoDto());
-        }
+        pendingRequests.complete(userInfoResponse.getCorrelationId(), userInfoResponse.getUserInfoDto());
     }
 
-    @KafkaListener(topics = "customer-info-request", groupId = "customer-service",
+    @KafkaListener(topics = "customer-info-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void customerInfoRequestListener(CustomerInfoRequest customerInfoRequest) {
         log.info("Received customer info request: {}", customerInfoRequest.getUserId());
         Customer customer = customerRepository.findByUserId(Long.valueOf(customerInfoRequest.getUserId())).orElse(null);
         CustomerInfoResponse response = new CustomerInfoResponse(customerInfoRequest.getCorrelationId(), CustomerDto.toDto(customer));
-        kafkaTemplate.send("customer-info-response", response);
+        sendReply("customer-info-response", response);
     }
 
-    @KafkaListener(topics = "user-customer-info-request", groupId = "customer-service",
+    @KafkaListener(topics = "user-customer-info-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void customerInfoResponseListener(UserCustomerInfoRequest request) {
         log.info("Received customer info response: {}", request.getCorrelationId());
         List<Customer> customer = customerRepository.findAllById(request.getUserIds());
         List<UserCustomerDto> customerDto = customer.stream().map(UserCustomerDto::toDto).toList();
         UserCustomerInfoResponse response = new UserCustomerInfoResponse(request.getCorrelationId(), customerDto);
-        kafkaTemplate.send("user-customer-info-response", response);
+        sendReply("user-customer-info-response", response);
     }
 
     @Transactional
-    @KafkaListener(topics = "customer-order-request", groupId = "customer-service",
+    @KafkaListener(topics = "customer-order-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void customerOrderRequestListener(CustomerCreateRequest request) {
         log.info("Received customer order request: {}", request.getCorrelationId());
@@ -87,6 +89,13 @@ public class KafkaEventService {
         customer.setLastName(customerDto.getLastName());
         customer.setShippingAddress(customerDto.getAddress());
         customerRepository.saveAndFlush(customer);
-        kafkaTemplate.send("customer-order-response", request.getCorrelationId());
+        sendReply("customer-order-response", request.getCorrelationId());
+    }
+
+    private void sendReply(String topic, Object response) {
+        Integer partition = replyRouting.currentReplyPartition();
+        RequestDeadline.stamp(RequestDeadline.current(), () -> partition == null
+                ? kafkaTemplate.send(topic, response)
+                : kafkaTemplate.send(topic, partition, null, response));
     }
 }
@@ -1,5 +1,10 @@
 package com.shop.customer.service;
 
+import com.shop.common.contract.CustomerInfoRequest;
+import com.shop.common.contract.UserCustomerInfoRequest;
+import com.shop.common.contract.UserInfoRequest;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
 import com.shop.customer.model.ShippingAddress;
 import com.shop.customer.model.dto.*;
 import com.shop.customer.model.entity.Customer;
@@ -10,8 +15,10 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -30,6 +37,13 @@ class KafkaEventServiceTest {
     @Mock
     private KafkaTemplate<String, Object> kafkaTemplate;
 
+    @Spy
+    private PendingRequestRegistry pendingRequests =
+            new PendingRequestRegistry("test", 100, Duration.ofMillis(10), 64);
+
+    @Spy
+    private ReplyRouting replyRouting = new ReplyRouting(0, 1);
+
     @InjectMocks
     private KafkaEventService kafkaEventService;
 
@@ -53,7 +67,7 @@ class KafkaEventServiceTest {
         assertFalse(future.isDone());
 
         ArgumentCaptor<UserInfoRequest> captor = ArgumentCaptor.forClass(UserInfoRequest.class);
-        verify(kafkaTemplate).send(eq("user-info-request"), captor.capture());
+        verify(kafkaTemplate).send(eq("user-info-request"), eq(userId), captor.capture());
 
         UserInfoRequest request = captor.getValue();
         assertEquals(userId, request.getUserId());
@@ -62,7 +76,7 @@ class KafkaEventServiceTest {
 
     @Test
     void getUserInfoRequest_shouldHandleSendFailure() {
-        when(kafkaTemplate.send(anyString(), any())).thenThrow(new RuntimeException("Kafka error"));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenThrow(new RuntimeException("Kafka error"));
 
         CompletableFuture<UserInfoDto> future = kafkaEventService.getUserInfoRequest(userId);
 
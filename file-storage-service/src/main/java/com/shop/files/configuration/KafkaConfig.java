@@ -1,6 +1,9 @@
 package com.shop.files.configuration;
 
 import com.fasterxml.jackson.databind.ser.std.StringSerializer;
+import com.shop.common.kafka.BinaryWireFormat;
+import com.shop.common.kafka.MessageTypes;
+import com.shop.common.kafka.WireFormatDeserializer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
@@ -45,16 +48,11 @@ public class KafkaConfig {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "file-storage-service");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
         props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
-        props.put(JsonDeserializer.TYPE_MAPPINGS,
-                    "com.shop.productservice.model.dto.FileUploadMessage:com.shop.files.model.dto.FileUploadMessage");
-
-        return new DefaultKafkaConsumerFactory<>(props);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(new WireFormatDeserializer(binaryWireFormat())));
     }
 
     @Bean
@@ -63,5 +61,9 @@ public class KafkaConfig {
         factory.setConsumerFactory(consumerFactory());
         return factory;
     }
-}
 
+    @Bean
+    public BinaryWireFormat binaryWireFormat() {
+        return MessageTypes.binaryWireFormat();
+    }
+}
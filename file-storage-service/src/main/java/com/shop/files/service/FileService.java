@@ -1,6 +1,6 @@
 package com.shop.files.service;
 
-import com.shop.files.model.dto.FileUploadMessage;
+import com.shop.common.contract.FileUploadMessage;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
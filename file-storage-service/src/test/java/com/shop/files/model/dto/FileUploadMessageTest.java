@@ -1,5 +1,6 @@
 package com.shop.files.model.dto;
 
+import com.shop.common.contract.FileUploadMessage;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -1,13 +1,18 @@
 package com.shop.notificationservice.configuration;
 
+import com.shop.common.kafka.BinaryWireFormat;
+import com.shop.common.kafka.MessageTypes;
+import com.shop.common.kafka.WireFormatDeserializer;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 
@@ -20,27 +25,43 @@ public class KafkaConfig {
     @Value("${spring.kafka.bootstrap-servers}")
     private String bootstrapServers;
 
+    @Value("${kafka.topic.partitions:3}")
+    private int topicPartitions;
+
+    @Value("${kafka.consumer.concurrency:${kafka.topic.partitions:3}}")
+    private int concurrency;
+
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         props.put(ConsumerConfig.GROUP_ID_CONFIG, "notification-group");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
         props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
 
-        props.put(JsonDeserializer.TYPE_MAPPINGS,
-                "com.shop.authservice.model.dto.UserDataOperationEvent:com.shop.notificationservice.model.dto.UserDataOperationEvent," +
-                "com.shop.orderservice.model.dto.OrderSentEmailDto:com.shop.notificationservice.model.dto.OrderSentEmailDto");
-
-        return new DefaultKafkaConsumerFactory<>(props);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(new WireFormatDeserializer(binaryWireFormat())));
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency);
         return factory;
     }
+
+    @Bean
+    public BinaryWireFormat binaryWireFormat() {
+        return MessageTypes.binaryWireFormat();
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics listenerTopics() {
+        return new KafkaAdmin.NewTopics(
+                TopicBuilder.name("order-sent-request").partitions(topicPartitions).build(),
+                TopicBuilder.name("order-delivered-request").partitions(topicPartitions).build(),
+                TopicBuilder.name("user-registration-events").partitions(topicPartitions).build(),
+                TopicBuilder.name("user-password-reset-events").partitions(topicPartitions).build()
+        );
+    }
 }
@@ -1,8 +1,8 @@
 package com.shop.notificationservice.service;
 
-import com.shop.notificationservice.model.dto.OrderSentEmailDto;
-import com.shop.notificationservice.model.dto.ProductInfoEmail;
-import com.shop.notificationservice.model.dto.UserDataOperationEvent;
+import com.shop.common.contract.OrderSentEmailDto;
+import com.shop.common.contract.ProductInfoEmail;
+import com.shop.common.contract.UserDataOperationEvent;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
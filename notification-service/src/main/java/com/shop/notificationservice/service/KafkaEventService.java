@@ -1,7 +1,7 @@
 package com.shop.notificationservice.service;
 
-import com.shop.notificationservice.model.dto.OrderSentEmailDto;
-import com.shop.notificationservice.model.dto.UserDataOperationEvent;
+import com.shop.common.contract.OrderSentEmailDto;
+import com.shop.common.contract.UserDataOperationEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
@@ -1,5 +1,7 @@
 package com.shop.notificationservice.model.dto;
 
+import com.shop.common.contract.OrderSentEmailDto;
+import com.shop.common.contract.ProductInfoEmail;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -1,7 +1,7 @@
 package com.shop.notificationservice.service;
 
-import com.shop.notificationservice.model.dto.OrderSentEmailDto;
-import com.shop.notificationservice.model.dto.UserDataOperationEvent;
+import com.shop.common.contract.OrderSentEmailDto;
+import com.shop.common.contract.UserDataOperationEvent;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
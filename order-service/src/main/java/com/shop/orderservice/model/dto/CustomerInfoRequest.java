@@ -1,13 +0,0 @@
-package com.shop.orderservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class CustomerInfoRequest {
-    private String correlationId;
-    private String userId;
-}
@@ -1,5 +1,6 @@
 package com.shop.orderservice.model.dto;
 
+import com.shop.common.contract.ProductOrderDto;
 import com.shop.orderservice.exception.OrderException;
 import com.shop.orderservice.model.ProductInOrder;
 import lombok.Builder;
@@ -1,13 +0,0 @@
-package com.shop.orderservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class UserEmailRequest {
-    private String correlationId;
-    private Long userId;
-}
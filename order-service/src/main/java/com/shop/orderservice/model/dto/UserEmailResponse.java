@@ -1,14 +0,0 @@
-package com.shop.orderservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@AllArgsConstructor
-@NoArgsConstructor
-@Data
-public class UserEmailResponse {
-    private String correlationId;
-    private String email;
-    private String errorMessage;
-}
@@ -1,5 +1,26 @@
 package com.shop.orderservice.service;
 
+import com.shop.common.contract.CreateOrderResponse;
+import com.shop.common.contract.CustomerInfoRequest;
+import com.shop.common.contract.OrderProductRatedRequest;
+import com.shop.common.contract.OrderRepaymentRequest;
+import com.shop.common.contract.OrderSentEmailDto;
+import com.shop.common.contract.OrderSessionRequest;
+import com.shop.common.contract.ProductInfoEmail;
+import com.shop.common.contract.ProductOrderDto;
+import com.shop.common.contract.ProductPriceByIdRequest;
+import com.shop.common.contract.ProductPriceByIdResponse;
+import com.shop.common.contract.ProductsByIdRequest;
+import com.shop.common.contract.ProductsByIdResponse;
+import com.shop.common.contract.ProductsInCartInfoRequest;
+import com.shop.common.contract.ProductsInCartInfoResponse;
+import com.shop.common.contract.TotalPriceOfProductsRequest;
+import com.shop.common.contract.TotalPriceOfProductsResponse;
+import com.shop.common.contract.UserEmailRequest;
+import com.shop.common.contract.UserEmailResponse;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
+import com.shop.common.kafka.RequestDeadline;
 import com.shop.orderservice.exception.OrderException;
 import com.shop.orderservice.model.OrderStatus;
 import com.shop.orderservice.model.ProductInOrder;
@@ -11,14 +32,18 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Hibernate;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,144 +54,90 @@ public class KafkaEventService {
     private final OrderRepository orderRepository;
 
     protected final KafkaTemplate<String, Object> kafkaTemplate;
-    protected final Map<String, CompletableFuture<CustomerDto>> requestsForCustomer = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<Map<String, Integer>>> requestsForCart = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<BigDecimal>> requestsForTotalPrice = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<Map<String, BigDecimal>>> requestsForTotalPriceItem = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<Void>> requestsForUnlockProducts = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<List<ProductOrderDto>>> requestsForProducts = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<String>> requestsForEmails = new ConcurrentHashMap<>();
+    private final KafkaTemplate<String, Object> bulkKafkaTemplate;
+    private final ReplyRouting replyRouting;
+    private final PendingRequestRegistry pendingRequests;
+    private static final Duration REPLY_TIMEOUT = Duration.ofSeconds(5);
 
     public CompletableFuture<CustomerDto> optCustomer(String userId) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<CustomerDto> future = new CompletableFuture<>();
-        requestsForCustomer.put(correlationId, future);
-        try {
-            CustomerInfoRequest request = new CustomerInfoRequest(correlationId, userId);
-            kafkaTemplate.send("customer-info-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForCustomer.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for customer info"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForCustomer.remove(correlationId);
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("customer-info-request", userId,
+                correlationId -> new CustomerInfoRequest(correlationId, userId),
+                "Timeout waiting for customer info");
     }
 
-    @KafkaListener(topics = "customer-info-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "customer-info-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void customerInfoResponse(CustomerInfoResponse customerInfo) {
-        CompletableFuture<CustomerDto> future = requestsForCustomer.remove(customerInfo.getCorrelationId());
-        if (future != null) {
-            future.complete(customerInfo.getCustomer());
-        }
+        pendingRequests.complete(customerInfo.getCorrelationId(), customerInfo.getCustomer());
     }
 
     public CompletableFuture<Map<String, Integer>> getCartAndSetAsOrderProcessing(String userId, boolean isOrderProcessing) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
-        requestsForCart.put(correlationId, future);
-        try {
-            kafkaTemplate.send(
-                    "cart-product-block-request",
-                    new ProductsInCartInfoRequest(correlationId, isOrderProcessing, userId));
-
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForCart.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for cart"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForCart.remove(correlationId);
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("cart-product-block-request", userId,
+                correlationId -> new ProductsInCartInfoRequest(correlationId, isOrderProcessing, userId),
+                "Timeout waiting for cart");
     }
 
-    @KafkaListener(topics = "cart-product-block-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "cart-product-block-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void cartResponse(ProductsInCartInfoResponse response) {
-        CompletableFuture<Map<String, Integer>> future = requestsForCart.remove(response.getCorrelationId());
-        if (future != null) {
-            future.complete(response.getProduct());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getProduct());
     }
 
-    public CompletableFuture<BigDecimal> getTotalPriceOfCart(Map<String, Integer> products) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<BigDecimal> future = new CompletableFuture<>();
-        requestsForTotalPrice.put(correlationId, future);
-        try {
-            TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest(correlationId, products);
-            kafkaTemplate.send("total-price-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForTotalPrice.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for total price"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForTotalPrice.remove(correlationId);
-            future.completeExceptionally(e);
-        }
-        return future;
+    public CompletableFuture<BigDecimal> getTotalPriceOfCart(String userId, Map<String, Integer> products) {
+        return sendRequest("total-price-request", userId,
+                correlationId -> new TotalPriceOfProductsRequest(correlationId, products, userId),
+                "Timeout waiting for total price");
     }
 
-    @KafkaListener(topics = "total-price-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "total-price-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void totalPriceResponse(TotalPriceOfProductsResponse response) {
-        CompletableFuture<BigDecimal> future = requestsForTotalPrice.remove(response.getCorrelationId());
         if (response.getErrorMessage() != null) {
-            future.completeExceptionally(new OrderException(response.getErrorMessage()));
+            pendingRequests.completeExceptionally(response.getCorrelationId(),
+                    new OrderException(response.getErrorMessage()));
             return;
         }
-        if (future != null) {
-            future.complete(response.getTotalPrice());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getTotalPrice());
     }
 
-    public CompletableFuture<Void> unlockProducts(Map<String, Integer> products) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        requestsForUnlockProducts.put(correlationId, future);
-        try {
-            TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest(correlationId, products);
-            kafkaTemplate.send("order-product-unlock-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForUnlockProducts.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for total price"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForUnlockProducts.remove(correlationId);
-            future.completeExceptionally(e);
-        }
-        return future;
+    /**
+     * Releases the user's stock hold.
+     */
+    public CompletableFuture<Void> unlockProducts(String userId, Map<String, Integer> products) {
+        return sendRequest("order-product-unlock-request", userId,
+                correlationId -> new TotalPriceOfProductsRequest(correlationId, products, userId),
+                "Timeout waiting for total price");
     }
 
-    @KafkaListener(topics = "order-product-unlock-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    /**
+     * Returns the stock confirmed for an order of the user. The request is keyed by the user, so it
+     * stays in order with the user's holds, but carries no user id, which would release the hold instead.
+     */
+    public CompletableFuture<Void> unlockOrderProducts(String userId, Map<String, Integer> products) {
+        return sendRequest("order-product-unlock-request", userId,
+                correlationId -> new TotalPriceOfProductsRequest(correlationId, products, null),
+                "Timeout waiting for total price");
+    }
+
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "order-product-unlock-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void unlockProductsResponse(TotalPriceOfProductsResponse response) {
-        CompletableFuture<Void> future = requestsForUnlockProducts.remove(response.getCorrelationId());
         if (response.getErrorMessage() != null) {
-            future.completeExceptionally(new OrderException(response.getErrorMessage()));
+            pendingRequests.completeExceptionally(response.getCorrelationId(),
+                    new OrderException(response.getErrorMessage()));
             return;
         }
-        if (future != null) {
-            future.complete(null);
-        }
+        pendingRequests.complete(response.getCorrelationId(), null);
     }
 
-    @KafkaListener(topics = "order-create-request", groupId = "order-service",
+    @KafkaListener(topics = "order-create-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void orderCreateResponse(CreateOrderRequest request) {
         try {
             String orderId = createOrder(request.getOrderBaseInfo());
-            kafkaTemplate.send("order-create-response", new CreateOrderResponse(request.getCorrelationId(), orderId));
+            sendReply("order-create-response", new CreateOrderResponse(request.getCorrelationId(), orderId));
         } catch (Exception e) {
-            kafkaTemplate.send("order-create-response", new CreateOrderResponse(request.getCorrelationId(), null));
+            sendReply("order-create-response", new CreateOrderResponse(request.getCorrelationId(), null));
         }
     }
 
@@ -184,69 +155,77 @@ public class KafkaEventService {
                         );
                     }).collect(Collectors.toList());
 
-            Order order = orderRepository.save(new Order(
-                    productInOrder,
-                    orderBaseInfo.getUserId(),
-                    orderBaseInfo.getShippingAddress(),
-                    orderBaseInfo.getTotalPrice().divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP),
-                    orderBaseInfo.getPaymentMethod().name()
-                    )
-            );
-            return String.valueOf(order.getId());
+            confirmStock(orderBaseInfo.getUserId(), orderBaseInfo.getProducts()).get(5, TimeUnit.SECONDS);
+            try {
+                Order order = orderRepository.save(new Order(
+                        productInOrder,
+                        orderBaseInfo.getUserId(),
+                        orderBaseInfo.getShippingAddress(),
+                        orderBaseInfo.getTotalPrice().divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP),
+                        orderBaseInfo.getPaymentMethod().name()
+                        )
+                );
+                return String.valueOf(order.getId());
+            } catch (Exception e) {
+                unlockOrderProducts(orderBaseInfo.getUserId(), orderBaseInfo.getProducts());
+                throw e;
+            }
         } catch (Exception e) {
             throw new OrderException(e.getMessage());
         }
     }
 
-    CompletableFuture<Map<String, BigDecimal>> getPriceOfProducts(Set<String> productIds) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Map<String, BigDecimal>> future = new CompletableFuture<>();
-        requestsForTotalPriceItem.put(correlationId, future);
-        try {
-            ProductPriceByIdRequest request = new ProductPriceByIdRequest(correlationId, productIds);
-            kafkaTemplate.send("products-total-price-by-id-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForTotalPriceItem.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for total price"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForTotalPriceItem.remove(correlationId);
-            future.completeExceptionally(e);
+    CompletableFuture<Void> confirmStock(String userId, Map<String, Integer> products) {
+        return sendRequest("order-stock-confirm-request", userId,
+                correlationId -> new TotalPriceOfProductsRequest(correlationId, products, userId),
+                "Timeout waiting for stock confirmation");
+    }
+
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "order-stock-confirm-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
+    public void confirmStockResponse(TotalPriceOfProductsResponse response) {
+        if (response.getErrorMessage() != null) {
+            pendingRequests.completeExceptionally(response.getCorrelationId(),
+                    new OrderException(response.getErrorMessage()));
+            return;
         }
-        return future;
+        pendingRequests.complete(response.getCorrelationId(), null);
     }
 
-    @KafkaListener(topics = "products-total-price-by-id-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    CompletableFuture<Map<String, BigDecimal>> getPriceOfProducts(Set<String> productIds) {
+        return sendRequest("products-total-price-by-id-request", null,
+                correlationId -> new ProductPriceByIdRequest(correlationId, productIds),
+                "Timeout waiting for total price");
+    }
+
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "products-total-price-by-id-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void totalPriceResponse(ProductPriceByIdResponse response) {
-        CompletableFuture<Map<String, BigDecimal>> future = requestsForTotalPriceItem.remove(response.getCorrelationId());
         if (response.getErrorMessage() != null) {
-            future.completeExceptionally(new OrderException(response.getErrorMessage()));
+            pendingRequests.completeExceptionally(response.getCorrelationId(),
+                    new OrderException(response.getErrorMessage()));
             return;
         }
-        if (future != null) {
-            future.complete(response.getProductPriceDto());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getProductPriceDto());
     }
 
-    @KafkaListener(topics = "order-session-request", groupId = "order-service",
+    @KafkaListener(topics = "order-session-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void setSessionIdForOrder(OrderSessionRequest request) {
         log.info("recived session id.");
         Order order = orderRepository.findById(Long.valueOf(request.getOrderId())).orElse(null);
         if (order == null) {
-            kafkaTemplate.send("order-session-response", request.getOrderId());
+            sendReply("order-session-response", request.getOrderId());
             return;
         }
         log.info("recived session id.");
         order.setSessionId(request.getSessionId());
         orderRepository.save(order);
-        kafkaTemplate.send("order-session-response", request.getCorrelationId());
+        sendReply("order-session-response", request.getCorrelationId());
     }
 
     @Transactional
-    @KafkaListener(topics = "order-paid", groupId = "order-service",
+    @KafkaListener(topics = "order-paid",
             containerFactory = "kafkaListenerContainerFactory")
     public void orderSessionIdAndSetAsProcessing(String sessionId) {
         try {
@@ -255,7 +234,7 @@ public class KafkaEventService {
                 order.setNewStatus(OrderStatus.PROCESSING);
                 incrementItemsSold(order.getProducts());
                 orderRepository.save(order);
-                kafkaTemplate.send("order-sent-request", orderSentEmailDto);
+                bulkKafkaTemplate.send("order-sent-request", orderSentEmailDto.getOrderId(), orderSentEmailDto);
             });
         } catch (Exception e) {
             throw new OrderException("Something went wrong during setting order status.", e);
@@ -265,7 +244,7 @@ public class KafkaEventService {
     private void incrementItemsSold(List<ProductInOrder> order) {
         Map<String, Integer> products = order.stream()
                 .collect(Collectors.toMap(ProductInOrder::getProductId, ProductInOrder::getAmount));
-        kafkaTemplate.send("product-sold-request", products);
+        bulkKafkaTemplate.send("product-sold-request", products);
     }
 
     public void sendOrderDeliveredEmail(Order order) {
@@ -290,7 +269,7 @@ public class KafkaEventService {
                 return productInfoEmail;
             }).toList();
             orderSentEmailDto.setProducts(productInfoEmails);
-            kafkaTemplate.send("order-delivered-request", orderSentEmailDto);
+            bulkKafkaTemplate.send("order-delivered-request", orderSentEmailDto.getOrderId(), orderSentEmailDto);
         } catch (Exception e) {
             throw new OrderException("Something went wrong during send email.", e);
         }
@@ -319,46 +298,30 @@ public class KafkaEventService {
     }
 
     CompletableFuture<String> getUserEmail(String id) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<String> future = new CompletableFuture<>();
-        requestsForEmails.put(correlationId, future);
         Long userId = Long.valueOf(id);
-
-        try {
-            UserEmailRequest request = new UserEmailRequest(correlationId, userId);
-            kafkaTemplate.send("user-email-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForEmails.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for email"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForEmails.remove(correlationId);
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("user-email-request", id,
+                correlationId -> new UserEmailRequest(correlationId, userId),
+                "Timeout waiting for email");
     }
 
-    @KafkaListener(topics = "user-email-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "user-email-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void userEmailResponse(UserEmailResponse response) {
-        CompletableFuture<String> future = requestsForEmails.remove(response.getCorrelationId());
         if (response.getErrorMessage() != null) {
-            future.completeExceptionally(new OrderException(response.getErrorMessage()));
+            pendingRequests.completeExceptionally(response.getCorrelationId(),
+                    new OrderException(response.getErrorMessage()));
             return;
         }
-        if (future != null) {
-            future.complete(response.getEmail());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getEmail());
     }
 
-    @KafkaListener(topics = "order-info-request", groupId = "order-service",
+    @KafkaListener(topics = "order-info-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void orderInfoResponse(OrderRepaymentRequest request) {
         Order order = orderRepository.findById(Long.valueOf(request.getOrderId())).orElse(null);
         if (order == null) {
             OrderRepaymentResponse response = new OrderRepaymentResponse(request.getCorrelationId(), "Order not found.", null);
-            kafkaTemplate.send("order-info-response", response);
+            sendReply("order-info-response", response);
             return;
         }
         OrderInfoRepayment orderDto = new OrderInfoRepayment();
@@ -369,44 +332,29 @@ public class KafkaEventService {
                 null,
                 orderDto
                 );
-        kafkaTemplate.send("order-info-response", response);
+        sendReply("order-info-response", response);
     }
 
 
     public CompletableFuture<List<ProductOrderDto>> getProductsByIds(List<String> productIds) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<List<ProductOrderDto>> future = new CompletableFuture<>();
-        requestsForProducts.put(correlationId, future);
-        try {
-            ProductsByIdRequest request = new ProductsByIdRequest(correlationId, productIds);
-            kafkaTemplate.send("products-by-id-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForProducts.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for products"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForProducts.remove(correlationId);
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("products-by-id-request", null,
+                correlationId -> new ProductsByIdRequest(correlationId, productIds),
+                "Timeout waiting for products");
     }
 
-    @KafkaListener(topics = "products-by-id-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "products-by-id-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void productsByIdResponse(ProductsByIdResponse response) {
-        CompletableFuture<List<ProductOrderDto>> future = requestsForProducts.remove(response.getCorrelationId());
         if (response.getErrorMessage() != null) {
-            future.completeExceptionally(new OrderException(response.getErrorMessage()));
+            pendingRequests.completeExceptionally(response.getCorrelationId(),
+                    new OrderException(response.getErrorMessage()));
             return;
         }
-        if (future != null) {
-            future.complete(response.getProductDto());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getProductDto());
     }
 
     @Transactional
-    @KafkaListener(topics = "order-product-rated-request", groupId = "order-service",
+    @KafkaListener(topics = "order-product-rated-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void orderProductRatedEvent(OrderProductRatedRequest request) {
         try {
@@ -421,6 +369,30 @@ public class KafkaEventService {
         } catch (Exception e) {
             throw new OrderException("Something went wrong during setting order status.", e);
         }
-        kafkaTemplate.send("order-product-rated-response", request.getCorrelationId());
+        sendReply("order-product-rated-response", request.getCorrelationId());
+    }
+
+    private <T> CompletableFuture<T> sendRequest(String topic, String key, Function<String, Object> request,
+                                                 String timeoutMessage) {
+        String correlationId = UUID.randomUUID().toString();
+        Instant deadline = RequestDeadline.forRequest(REPLY_TIMEOUT);
+        CompletableFuture<T> future = pendingRequests.register(
+                correlationId, RequestDeadline.remaining(deadline), timeoutMessage);
+        if (future.isDone()) {
+            return future;
+        }
+        try {
+            RequestDeadline.stamp(deadline, () -> kafkaTemplate.send(topic, key, request.apply(correlationId)));
+        } catch (Exception e) {
+            pendingRequests.completeExceptionally(correlationId, e);
+        }
+        return future;
+    }
+
+    private void sendReply(String topic, Object response) {
+        Integer partition = replyRouting.currentReplyPartition();
+        RequestDeadline.stamp(RequestDeadline.current(), () -> partition == null
+                ? kafkaTemplate.send(topic, response)
+                : kafkaTemplate.send(topic, partition, null, response));
     }
 }
@@ -1,5 +1,7 @@
 package com.shop.orderservice.service;
 
+import com.shop.common.contract.ProductOrderDto;
+import com.shop.common.kafka.RequestDeadline;
 import com.shop.orderservice.exception.OrderException;
 import com.shop.orderservice.model.DeliveryTime;
 import com.shop.orderservice.model.OrderStatus;
@@ -23,6 +25,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -36,48 +39,50 @@ public class OrderService {
     private final OrderRepository orderRepository;
     public static final Duration ORDER_CHANGE = Duration.ofDays(2);
     public static final Duration ORDER_DELETE = Duration.ofDays(1);
+    private static final Duration SUMMARY_DEADLINE = Duration.ofSeconds(5);
     private final OrderMapper orderMapper;
 
     @Transactional(rollbackFor = OrderException.class)
     public OrderDto getSummary(String userId) {
-        try {
+        Instant deadline = Instant.now().plus(SUMMARY_DEADLINE);
+        try (RequestDeadline.Scope ignored = RequestDeadline.open(deadline)) {
             log.info("Getting order summary for user: {}", userId);
-            CustomerDto customerDto = kafkaEventService.optCustomer(userId).get(2, TimeUnit.SECONDS);
-            String name = null;
-            String lastName = null;
-            ShippingAddress address = null;
-            if (customerDto != null) {
-                name = customerDto.getFirstName();
-                lastName = customerDto.getLastName();
-                address = customerDto.getShippingAddress();
-            }
-
-            Map<String, Integer> products = kafkaEventService
+            CompletableFuture<CustomerDto> customer = kafkaEventService.optCustomer(userId);
+            CompletableFuture<BigDecimal> totalPrice = kafkaEventService
                     .getCartAndSetAsOrderProcessing(userId, true)
-                    .get(5, TimeUnit.SECONDS);
+                    .thenCompose(products -> kafkaEventService.getTotalPriceOfCart(userId, products));
 
-            BigDecimal totalPrice = kafkaEventService
-                    .getTotalPriceOfCart(products)
-                    .get(5, TimeUnit.SECONDS);
-
-            return OrderDto.builder()
-                    .firstName(name)
-                    .lastName(lastName)
-                    .shippingAddress(address)
-                    .totalPrice(totalPrice)
-                    .deliveryTime(DeliveryTime.STANDARD)
-                    .build();
+            return customer.thenCombine(totalPrice, this::mapToSummary)
+                    .get(RequestDeadline.remaining(deadline).toMillis(), TimeUnit.MILLISECONDS);
         } catch (InterruptedException | ExecutionException | TimeoutException e) {
             throw new OrderException("Something went wrong during process order details.", e);
         }
     }
 
+    private OrderDto mapToSummary(CustomerDto customerDto, BigDecimal totalPrice) {
+        String name = null;
+        String lastName = null;
+        ShippingAddress address = null;
+        if (customerDto != null) {
+            name = customerDto.getFirstName();
+            lastName = customerDto.getLastName();
+            address = customerDto.getShippingAddress();
+        }
+        return OrderDto.builder()
+                .firstName(name)
+                .lastName(lastName)
+                .shippingAddress(address)
+                .totalPrice(totalPrice)
+                .deliveryTime(DeliveryTime.STANDARD)
+                .build();
+    }
+
     public void cancelPayment(String userId) {
         try {
             Map<String, Integer> products = kafkaEventService
                     .getCartAndSetAsOrderProcessing(userId, false)
                     .get(5, TimeUnit.SECONDS);
-            kafkaEventService.unlockProducts(products).get(5, TimeUnit.SECONDS);
+            kafkaEventService.unlockProducts(userId, products).get(5, TimeUnit.SECONDS);
         } catch (InterruptedException | ExecutionException | TimeoutException e) {
             throw new OrderException("Something went wrong during cancel order.", e);
         }
@@ -91,10 +96,11 @@ public class OrderService {
         try {
             Order order = orderRepository.findByIdAndUserId(Long.valueOf(orderId), userId)
                     .orElseThrow(() -> new OrderException("Order not found."));
-            CustomerDto customerDto = kafkaEventService.optCustomer(userId).join();
             List<String> productIds = order.getProducts().stream().map(ProductInOrder::getProductId).toList();
+            CompletableFuture<CustomerDto> customer = kafkaEventService.optCustomer(userId);
             List<ProductOrderDto> products = kafkaEventService.getProductsByIds(productIds)
                     .join();
+            CustomerDto customerDto = customer.join();
             List<ProductInOrder> productsInOrder = order.getProducts();
 
             return orderMapper.mapToOrderDto(order, customerDto, email, products, productsInOrder);
@@ -120,7 +126,7 @@ public class OrderService {
                             ProductInOrder::getProductId,
                             ProductInOrder::getAmount
                             ));
-            kafkaEventService.unlockProducts(products).get(5, TimeUnit.SECONDS);
+            kafkaEventService.unlockOrderProducts(order.getUserId(), products).get(5, TimeUnit.SECONDS);
             order.setStatus(OrderStatus.ANNULLED);
             orderRepository.save(order);
         } catch (Exception e) {
@@ -177,7 +183,7 @@ public class OrderService {
                             ProductInOrder::getProductId,
                             ProductInOrder::getAmount
                     ));
-            kafkaEventService.unlockProducts(products).get(5, TimeUnit.SECONDS);
+            kafkaEventService.unlockOrderProducts(order.getUserId(), products).get(5, TimeUnit.SECONDS);
             orderRepository.delete(order);
             } catch (Exception e) {
                 throw new OrderException("Something went wrong during delete order.", e);
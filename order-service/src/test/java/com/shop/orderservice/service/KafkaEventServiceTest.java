@@ -1,5 +1,18 @@
 package com.shop.orderservice.service;
 
+import com.shop.common.contract.CreateOrderResponse;
+import com.shop.common.contract.CustomerInfoRequest;
+import com.shop.common.contract.OrderProductRatedRequest;
+import com.shop.common.contract.OrderRepaymentRequest;
+import com.shop.common.contract.OrderSentEmailDto;
+import com.shop.common.contract.OrderSessionRequest;
+import com.shop.common.contract.ProductOrderDto;
+import com.shop.common.contract.ProductsInCartInfoRequest;
+import com.shop.common.contract.ProductsInCartInfoResponse;
+import com.shop.common.contract.TotalPriceOfProductsRequest;
+import com.shop.common.contract.TotalPriceOfProductsResponse;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
 import com.shop.orderservice.exception.OrderException;
 import com.shop.orderservice.model.OrderStatus;
 import com.shop.orderservice.model.ProductInOrder;
@@ -14,9 +27,9 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 
@@ -33,8 +46,16 @@ class KafkaEventServiceTest {
     @Mock
     private KafkaTemplate<String, Object> kafkaTemplate;
 
+    @Mock
+    private KafkaTemplate<String, Object> bulkKafkaTemplate;
+
     @Spy
-    @InjectMocks
+    private PendingRequestRegistry pendingRequests =
+            new PendingRequestRegistry("test", 100, Duration.ofMillis(10), 64);
+
+    @Spy
+    private ReplyRouting replyRouting = new ReplyRouting(0, 1);
+
     private KafkaEventService kafkaEventService;
 
     private Order testOrder;
@@ -45,6 +66,8 @@ class KafkaEventServiceTest {
 
     @BeforeEach
     void setUp() {
+        kafkaEventService = spy(new KafkaEventService(
+                orderRepository, kafkaTemplate, bulkKafkaTemplate, replyRouting, pendingRequests));
         correlationId = UUID.randomUUID().toString();
 
         testOrder = new Order();
@@ -73,20 +96,18 @@ class KafkaEventServiceTest {
     @Test
     void optCustomer_shouldReturnCustomerDto() {
         String userId = "123";
-        doReturn(null).when(kafkaTemplate).send(anyString(), any(Object.class));
+        doReturn(null).when(kafkaTemplate).send(anyString(), any(), any(Object.class));
 
         CompletableFuture<CustomerDto> future = kafkaEventService.optCustomer(userId);
 
-        Map<String, CompletableFuture<CustomerDto>> requests = new HashMap<>();
-        requests.put(correlationId, future);
-        ReflectionTestUtils.setField(kafkaEventService, "requestsForCustomer", requests);
+        ArgumentCaptor<CustomerInfoRequest> captor = ArgumentCaptor.forClass(CustomerInfoRequest.class);
+        verify(kafkaTemplate).send(eq("customer-info-request"), eq(userId), captor.capture());
 
         CustomerInfoResponse response = new CustomerInfoResponse();
-        response.setCorrelationId(correlationId);
+        response.setCorrelationId(captor.getValue().getCorrelationId());
         response.setCustomer(testCustomer);
         kafkaEventService.customerInfoResponse(response);
 
-        verify(kafkaTemplate).send(eq("customer-info-request"), any(CustomerInfoRequest.class));
         assertTrue(future.isDone());
         assertFalse(future.isCompletedExceptionally());
 
@@ -102,19 +123,18 @@ class KafkaEventServiceTest {
     @Test
     void getCartAndSetAsOrderProcessing_shouldReturnProductMap() {
         String userId = "123";
-        doReturn(null).when(kafkaTemplate).send(anyString(), any(Object.class));
+        doReturn(null).when(kafkaTemplate).send(anyString(), any(), any(Object.class));
 
         CompletableFuture<Map<String, Integer>> future = kafkaEventService.getCartAndSetAsOrderProcessing(userId, true);
 
-        Map<String, CompletableFuture<Map<String, Integer>>> requests = new HashMap<>();
-        requests.put(correlationId, future);
-        ReflectionTestUtils.setField(kafkaEventService, "requestsForCart", requests);
+        ArgumentCaptor<ProductsInCartInfoRequest> captor = ArgumentCaptor.forClass(ProductsInCartInfoRequest.class);
+        verify(kafkaTemplate).send(eq("cart-product-block-request"), eq(userId), captor.capture());
+
         ProductsInCartInfoResponse response = new ProductsInCartInfoResponse();
-        response.setCorrelationId(correlationId);
+        response.setCorrelationId(captor.getValue().getCorrelationId());
         response.setProduct(testProducts);
         kafkaEventService.cartResponse(response);
 
-        verify(kafkaTemplate).send(eq("cart-product-block-request"), any(ProductsInCartInfoRequest.class));
         assertTrue(future.isDone());
         assertFalse(future.isCompletedExceptionally());
 
@@ -130,20 +150,19 @@ class KafkaEventServiceTest {
 
     @Test
     void getTotalPriceOfCart_shouldReturnTotalPrice() {
-        doReturn(null).when(kafkaTemplate).send(anyString(), any(Object.class));
+        doReturn(null).when(kafkaTemplate).send(anyString(), any(), any(Object.class));
 
-        CompletableFuture<BigDecimal> future = kafkaEventService.getTotalPriceOfCart(testProducts);
+        CompletableFuture<BigDecimal> future = kafkaEventService.getTotalPriceOfCart("123", testProducts);
 
-        Map<String, CompletableFuture<BigDecimal>> requests = new HashMap<>();
-        requests.put(correlationId, future);
-        ReflectionTestUtils.setField(kafkaEventService, "requestsForTotalPrice", requests);
+        ArgumentCaptor<TotalPriceOfProductsRequest> captor = ArgumentCaptor.forClass(TotalPriceOfProductsRequest.class);
+        verify(kafkaTemplate).send(eq("total-price-request"), eq("123"), captor.capture());
+        assertEquals("123", captor.getValue().getUserId());
 
         TotalPriceOfProductsResponse response = new TotalPriceOfProductsResponse();
-        response.setCorrelationId(correlationId);
+        response.setCorrelationId(captor.getValue().getCorrelationId());
         response.setTotalPrice(new BigDecimal("99.99"));
         kafkaEventService.totalPriceResponse(response);
 
-        verify(kafkaTemplate).send(eq("total-price-request"), any(TotalPriceOfProductsRequest.class));
         assertTrue(future.isDone());
         assertFalse(future.isCompletedExceptionally());
 
@@ -157,10 +176,7 @@ class KafkaEventServiceTest {
 
     @Test
     void totalPriceResponse_shouldCompleteExceptionally_whenErrorMessageIsProvided() {
-        CompletableFuture<BigDecimal> future = new CompletableFuture<>();
-        Map<String, CompletableFuture<BigDecimal>> requests = new HashMap<>();
-        requests.put(correlationId, future);
-        ReflectionTestUtils.setField(kafkaEventService, "requestsForTotalPrice", requests);
+        CompletableFuture<BigDecimal> future = pendingRequests.register(correlationId, Duration.ofSeconds(5), "Timeout");
 
         TotalPriceOfProductsResponse response = new TotalPriceOfProductsResponse();
         response.setCorrelationId(correlationId);
@@ -179,20 +195,30 @@ class KafkaEventServiceTest {
     }
 
     @Test
-    void unlockProducts_shouldCompleteSuccessfully() {
-        doReturn(null).when(kafkaTemplate).send(anyString(), any(Object.class));
+    void unlockProducts_shouldReleaseHoldKeyedByUser() {
+        doReturn(null).when(kafkaTemplate).send(anyString(), any(), any(Object.class));
 
-        CompletableFuture<Void> future = kafkaEventService.unlockProducts(testProducts);
+        kafkaEventService.unlockProducts("123", testProducts);
 
-        Map<String, CompletableFuture<Void>> requests = new HashMap<>();
-        requests.put(correlationId, future);
-        ReflectionTestUtils.setField(kafkaEventService, "requestsForUnlockProducts", requests);
+        ArgumentCaptor<TotalPriceOfProductsRequest> captor = ArgumentCaptor.forClass(TotalPriceOfProductsRequest.class);
+        verify(kafkaTemplate).send(eq("order-product-unlock-request"), eq("123"), captor.capture());
+        assertEquals("123", captor.getValue().getUserId());
+    }
+
+    @Test
+    void unlockOrderProducts_shouldCompleteSuccessfully() {
+        doReturn(null).when(kafkaTemplate).send(anyString(), any(), any(Object.class));
+
+        CompletableFuture<Void> future = kafkaEventService.unlockOrderProducts("123", testProducts);
+
+        ArgumentCaptor<TotalPriceOfProductsRequest> captor = ArgumentCaptor.forClass(TotalPriceOfProductsRequest.class);
+        verify(kafkaTemplate).send(eq("order-product-unlock-request"), eq("123"), captor.capture());
+        assertNull(captor.getValue().getUserId());
 
         TotalPriceOfProductsResponse response = new TotalPriceOfProductsResponse();
-        response.setCorrelationId(correlationId);
+        response.setCorrelationId(captor.getValue().getCorrelationId());
         kafkaEventService.unlockProductsResponse(response);
 
-        verify(kafkaTemplate).send(eq("order-product-unlock-request"), any(TotalPriceOfProductsRequest.class));
         assertTrue(future.isDone());
         assertFalse(future.isCompletedExceptionally());
     }
@@ -218,13 +244,51 @@ class KafkaEventServiceTest {
 
         CompletableFuture<Map<String, BigDecimal>> future = CompletableFuture.completedFuture(productPrices);
         doReturn(future).when(kafkaEventService).getPriceOfProducts(anySet());
+        doReturn(CompletableFuture.completedFuture(null)).when(kafkaEventService).confirmStock("123", testProducts);
 
         when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
 
         kafkaEventService.orderCreateResponse(request);
 
+        verify(kafkaEventService).confirmStock("123", testProducts);
         verify(orderRepository).save(any(Order.class));
-        verify(kafkaTemplate).send(eq("order-create-response"), any(CreateOrderResponse.class));
+        verify(kafkaTemplate).send(eq("order-create-response"), argThat(response ->
+                "1".equals(((CreateOrderResponse) response).getOrderId())));
+    }
+
+    @Test
+    void orderCreateResponse_shouldRejectOrder_whenStockCannotBeConfirmed() {
+        OrderBaseInfo orderBaseInfo = new OrderBaseInfo();
+        orderBaseInfo.setUserId("123");
+        orderBaseInfo.setProducts(testProducts);
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setCorrelationId("test-correlation-id");
+        request.setOrderBaseInfo(orderBaseInfo);
+        doReturn(CompletableFuture.completedFuture(Map.of())).when(kafkaEventService).getPriceOfProducts(anySet());
+        doReturn(CompletableFuture.failedFuture(new OrderException("Not enough products in stock.")))
+                .when(kafkaEventService).confirmStock("123", testProducts);
+
+        kafkaEventService.orderCreateResponse(request);
+
+        verify(orderRepository, never()).save(any(Order.class));
+        verify(kafkaTemplate).send(eq("order-create-response"), argThat(response ->
+                ((CreateOrderResponse) response).getOrderId() == null));
+    }
+
+    @Test
+    void confirmStock_shouldFail_whenProductServiceReportsShortage() {
+        doReturn(null).when(kafkaTemplate).send(anyString(), any(), any(Object.class));
+
+        CompletableFuture<Void> future = kafkaEventService.confirmStock("123", testProducts);
+
+        ArgumentCaptor<TotalPriceOfProductsRequest> captor = ArgumentCaptor.forClass(TotalPriceOfProductsRequest.class);
+        verify(kafkaTemplate).send(eq("order-stock-confirm-request"), eq("123"), captor.capture());
+        assertEquals("123", captor.getValue().getUserId());
+
+        kafkaEventService.confirmStockResponse(new TotalPriceOfProductsResponse(
+                captor.getValue().getCorrelationId(), null, "Not enough products in stock."));
+
+        assertTrue(future.isCompletedExceptionally());
     }
 
     @Test
@@ -267,8 +331,8 @@ class KafkaEventServiceTest {
         verify(orderRepository).findBySessionId(sessionId);
         verify(orderRepository).save(testOrder);
         assertEquals(OrderStatus.PROCESSING, testOrder.getStatus());
-        verify(kafkaTemplate).send(eq("order-sent-request"), any(OrderSentEmailDto.class));
-        verify(kafkaTemplate).send(eq("product-sold-request"), any(Map.class));
+        verify(bulkKafkaTemplate).send(eq("order-sent-request"), eq("1"), any(OrderSentEmailDto.class));
+        verify(bulkKafkaTemplate).send(eq("product-sold-request"), any(Map.class));
     }
 
     @Test
@@ -304,7 +368,7 @@ class KafkaEventServiceTest {
 
         kafkaEventService.sendOrderDeliveredEmail(testOrder);
 
-        verify(kafkaTemplate).send(eq("order-delivered-request"), any(OrderSentEmailDto.class));
+        verify(bulkKafkaTemplate).send(eq("order-delivered-request"), eq("1"), any(OrderSentEmailDto.class));
     }
 
     @Test
@@ -1,5 +1,7 @@
 package com.shop.orderservice.service;
 
+import com.shop.common.contract.ProductOrderDto;
+import com.shop.orderservice.exception.OrderException;
 import com.shop.orderservice.model.OrderStatus;
 import com.shop.orderservice.model.ProductInOrder;
 import com.shop.orderservice.model.ShippingAddress;
@@ -19,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -63,7 +66,7 @@ class OrderServiceTest {
                 .thenReturn(CompletableFuture.completedFuture(mockCustomer));
         when(kafkaEventService.getCartAndSetAsOrderProcessing(userId, true))
                 .thenReturn(CompletableFuture.completedFuture(mockProducts));
-        when(kafkaEventService.getTotalPriceOfCart(mockProducts))
+        when(kafkaEventService.getTotalPriceOfCart(userId, mockProducts))
                 .thenReturn(CompletableFuture.completedFuture(mockTotalPrice));
 
         OrderDto result = orderService.getSummary(userId);
@@ -74,7 +77,40 @@ class OrderServiceTest {
         assertEquals(mockTotalPrice, result.getTotalPrice());
         verify(kafkaEventService, times(1)).optCustomer(userId);
         verify(kafkaEventService, times(1)).getCartAndSetAsOrderProcessing(userId, true);
-        verify(kafkaEventService, times(1)).getTotalPriceOfCart(mockProducts);
+        verify(kafkaEventService, times(1)).getTotalPriceOfCart(userId, mockProducts);
+    }
+
+    @Test
+    void getSummary_ShouldRequestCustomerAndCartConcurrently() {
+        String userId = "123";
+        CompletableFuture<CustomerDto> customer = new CompletableFuture<>();
+        Map<String, Integer> mockProducts = Map.of("prod1", 2);
+        BigDecimal mockTotalPrice = BigDecimal.valueOf(100.00);
+
+        when(kafkaEventService.optCustomer(userId)).thenReturn(customer);
+        when(kafkaEventService.getCartAndSetAsOrderProcessing(userId, true))
+                .thenReturn(CompletableFuture.completedFuture(mockProducts));
+        when(kafkaEventService.getTotalPriceOfCart(userId, mockProducts))
+                .thenAnswer(invocation -> {
+                    customer.complete(new CustomerDto());
+                    return CompletableFuture.completedFuture(mockTotalPrice);
+                });
+
+        OrderDto result = orderService.getSummary(userId);
+
+        assertEquals(mockTotalPrice, result.getTotalPrice());
+    }
+
+    @Test
+    void getSummary_ShouldThrowOrderException_WhenAnyLookupFails() {
+        String userId = "123";
+        when(kafkaEventService.optCustomer(userId))
+                .thenReturn(CompletableFuture.completedFuture(new CustomerDto()));
+        when(kafkaEventService.getCartAndSetAsOrderProcessing(userId, true))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("Timeout")));
+
+        assertThrows(OrderException.class, () -> orderService.getSummary(userId));
+        verify(kafkaEventService, never()).getTotalPriceOfCart(any(), any());
     }
 
     @Test
@@ -84,11 +120,11 @@ class OrderServiceTest {
         when(kafkaEventService.getCartAndSetAsOrderProcessing(userId, false))
                 .thenReturn(CompletableFuture.completedFuture(mockProducts));
         doReturn(CompletableFuture.completedFuture(null))
-                .when(kafkaEventService).unlockProducts(mockProducts);
+                .when(kafkaEventService).unlockProducts(userId, mockProducts);
         assertDoesNotThrow(() -> orderService.cancelPayment(userId));
 
         verify(kafkaEventService, times(1)).getCartAndSetAsOrderProcessing(userId, false);
-        verify(kafkaEventService, times(1)).unlockProducts(mockProducts);
+        verify(kafkaEventService, times(1)).unlockProducts(userId, mockProducts);
     }
 
     @Test
@@ -128,7 +164,7 @@ class OrderServiceTest {
     void cancelOrder_asAdmin_Success() {
         testOrder.setStatus(OrderStatus.CREATED);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(testOrder));
-        when(kafkaEventService.unlockProducts(anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaEventService.unlockOrderProducts(any(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
 
         assertDoesNotThrow(() -> orderService.cancelOrder("1", "ROLE_ADMIN", "any"));
 
@@ -167,7 +203,7 @@ class OrderServiceTest {
         testOrder.setOrderDate(new Date(System.currentTimeMillis() - OrderService.ORDER_DELETE.toMillis() - 10000));
 
         when(orderRepository.findAllByStatusAndOrderDateBefore(eq(OrderStatus.CREATED), any())).thenReturn(List.of(testOrder));
-        when(kafkaEventService.unlockProducts(anyMap())).thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaEventService.unlockOrderProducts(any(), anyMap())).thenReturn(CompletableFuture.completedFuture(null));
 
         assertDoesNotThrow(() -> orderService.deleteNotPaidOrders());
 
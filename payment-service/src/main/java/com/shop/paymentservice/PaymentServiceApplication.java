@@ -1,11 +1,14 @@
 package com.shop.paymentservice;
 
+import com.shop.common.config.VirtualThreadConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableScheduling
+@Import(VirtualThreadConfig.class)
 public class PaymentServiceApplication {
 
     public static void main(String[] args) {
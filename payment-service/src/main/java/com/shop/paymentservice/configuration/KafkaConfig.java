@@ -1,69 +1,186 @@
 package com.shop.paymentservice.configuration;
 
+import com.shop.common.kafka.BinaryWireFormat;
+import com.shop.common.kafka.ConsumerGroupValidator;
+import com.shop.common.kafka.DeadlineInterceptor;
+import com.shop.common.kafka.MessageTypes;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ProducerProfile;
+import com.shop.common.kafka.ReplyRouting;
+import com.shop.common.kafka.WireFormatDeserializer;
+import com.shop.common.kafka.WireFormatSerializer;
+import com.shop.paymentservice.model.dto.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.autoconfigure.thread.Threading;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.CompositeRecordInterceptor;
+import org.springframework.kafka.support.CompositeProducerInterceptor;
 import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 @Configuration
+@RequiredArgsConstructor
 public class KafkaConfig {
 
+    private final Environment environment;
+    private final KafkaProperties kafkaProperties;
+    private final MeterRegistry meterRegistry;
+
     @Value("${spring.kafka.bootstrap-servers:kafka:9092}")
     private String bootstrapServers;
 
+    @Value("${spring.application.name}")
+    private String applicationName;
+
+    @Value("${kafka.consumer.group-id:payment-service}")
+    private String groupId;
+
+    @Value("${kafka.consumer.concurrency:1}")
+    private int concurrency;
+
+    @Value("${kafka.reply.max-pending:10000}")
+    private int maxPendingRequests;
+
+    @Value("${kafka.reply.tick-ms:50}")
+    private long replyTickMs;
+
+    @Value("${kafka.reply.wheel-size:512}")
+    private int replyWheelSize;
+
+    @Value("${kafka.reply.partition:0}")
+    private int replyPartition;
+
+    @Value("${kafka.reply.partitions:1}")
+    private int replyPartitions;
+
+    @Value("${kafka.wire-format.binary-topics:}")
+    private Set<String> binaryTopics;
+
+    @Value("${kafka.producer.profile:low-latency}")
+    private String producerProfile;
+
     @Bean
     public ProducerFactory<String, Object> producerFactory() {
-        Map<String, Object> configProps = new HashMap<>();
+        Map<String, Object> configProps = new HashMap<>(ProducerProfile.fromName(producerProfile).configs());
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        configProps.put(ProducerConfig.CLIENT_ID_CONFIG, applicationName);
         configProps.put(JsonSerializer.ADD_TYPE_INFO_HEADERS, true);
-        configProps.put(ProducerConfig.ACKS_CONFIG, "all");
-        configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
+        configProps.putAll(kafkaProperties.getProducer().getProperties());
 
-        return new DefaultKafkaProducerFactory<>(configProps);
+        DefaultKafkaProducerFactory<String, Object> factory = new DefaultKafkaProducerFactory<>(configProps,
+                new StringSerializer(), new WireFormatSerializer(binaryWireFormat(), binaryTopics));
+        factory.addListener(new MicrometerProducerListener<>(meterRegistry));
+        return factory;
     }
 
     @Bean
     public KafkaTemplate<String, Object> kafkaTemplate() {
-        return new KafkaTemplate<>(producerFactory());
+        KafkaTemplate<String, Object> template = new KafkaTemplate<>(producerFactory());
+        template.setProducerInterceptor(new CompositeProducerInterceptor<>(deadlineInterceptor(), replyRouting()));
+        return template;
     }
 
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
         Map<String, Object> props = new HashMap<>();
         props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "customer-service");
-        props.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
-        props.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, JsonDeserializer.class);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.CLIENT_ID_CONFIG, applicationName);
         props.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
 
         props.put(JsonDeserializer.TYPE_MAPPINGS,
-                "com.shop.cartservice.model.dto.ProductsInCartInfoResponse:com.shop.paymentservice.model.dto.ProductsInCartInfoResponse," +
-                "com.shop.productservice.model.dto.TotalPriceOfProductsResponse:com.shop.paymentservice.model.dto.TotalPriceOfProductsResponse," +
-                "com.shop.orderservice.model.dto.CreateOrderResponse:com.shop.paymentservice.model.dto.CreateOrderResponse," +
                 "com.shop.orderservice.model.dto.OrderRepaymentResponse:com.shop.paymentservice.model.dto.OrderRepaymentResponse");
 
-        return new DefaultKafkaConsumerFactory<>(props);
+        return new DefaultKafkaConsumerFactory<>(props, new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(new WireFormatDeserializer(binaryWireFormat())));
     }
 
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency);
+        factory.setRecordInterceptor(new CompositeRecordInterceptor<>(deadlineInterceptor(), replyRouting()));
+        useVirtualThreadsIfEnabled(factory);
         return factory;
     }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> replyListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setRecordInterceptor(new CompositeRecordInterceptor<>(deadlineInterceptor(), replyRouting()));
+        useVirtualThreadsIfEnabled(factory);
+        return factory;
+    }
+
+    @Bean
+    public ConsumerGroupValidator consumerGroupValidator(KafkaAdmin kafkaAdmin) {
+        return new ConsumerGroupValidator(kafkaAdmin, applicationName, groupId, Duration.ofSeconds(5));
+    }
+
+    @Bean(destroyMethod = "close")
+    public PendingRequestRegistry pendingRequestRegistry() {
+        return new PendingRequestRegistry("payment-service-replies", maxPendingRequests,
+                Duration.ofMillis(replyTickMs), replyWheelSize);
+    }
+
+    @Bean
+    public ReplyRouting replyRouting() {
+        return new ReplyRouting(replyPartition, replyPartitions);
+    }
+
+    @Bean
+    public DeadlineInterceptor deadlineInterceptor() {
+        return new DeadlineInterceptor();
+    }
+
+    @Bean
+    public BinaryWireFormat binaryWireFormat() {
+        return MessageTypes.binaryWireFormat()
+                .register(MessageTypes.CREATE_ORDER_REQUEST, CreateOrderRequest.class)
+                .register(MessageTypes.ORDER_REPAYMENT_RESPONSE, OrderRepaymentResponse.class)
+                .register(MessageTypes.CUSTOMER_CREATE_REQUEST, CustomerCreateRequest.class);
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics replyTopics() {
+        return new KafkaAdmin.NewTopics(
+                TopicBuilder.name("total-price-payment-response").partitions(replyPartitions).build(),
+                TopicBuilder.name("cart-product-payment-response").partitions(replyPartitions).build(),
+                TopicBuilder.name("order-create-response").partitions(replyPartitions).build(),
+                TopicBuilder.name("cart-delete-response").partitions(replyPartitions).build(),
+                TopicBuilder.name("order-session-response").partitions(replyPartitions).build(),
+                TopicBuilder.name("order-info-response").partitions(replyPartitions).build(),
+                TopicBuilder.name("customer-order-response").partitions(replyPartitions).build()
+        );
+    }
+
+    private void useVirtualThreadsIfEnabled(ConcurrentKafkaListenerContainerFactory<String, Object> factory) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(applicationName + "-kafka-");
+            executor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(executor);
+        }
+    }
 }
@@ -1,13 +0,0 @@
-package com.shop.paymentservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@AllArgsConstructor
-@NoArgsConstructor
-@Data
-public class CreateOrderResponse {
-    private String correlationId;
-    private String orderId;
-}
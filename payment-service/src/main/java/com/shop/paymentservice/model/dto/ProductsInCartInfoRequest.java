@@ -1,13 +0,0 @@
-package com.shop.paymentservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class ProductsInCartInfoRequest {
-    private String correlationId;
-    private String userId;
-}
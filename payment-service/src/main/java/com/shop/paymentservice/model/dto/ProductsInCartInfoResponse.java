@@ -1,15 +0,0 @@
-package com.shop.paymentservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-import java.util.Map;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class ProductsInCartInfoResponse {
-    private String correlationId;
-    private Map<String, Integer> product;
-}
@@ -1,16 +0,0 @@
-package com.shop.paymentservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-import java.math.BigDecimal;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class TotalPriceOfProductsResponse {
-    private String correlationId;
-    private BigDecimal totalPrice;
-    private String errorMessage;
-}
@@ -1,5 +1,14 @@
 package com.shop.paymentservice.service;
 
+import com.shop.common.contract.CreateOrderResponse;
+import com.shop.common.contract.OrderRepaymentRequest;
+import com.shop.common.contract.OrderSessionRequest;
+import com.shop.common.contract.ProductsInCartInfoRequest;
+import com.shop.common.contract.ProductsInCartInfoResponse;
+import com.shop.common.contract.TotalPriceOfProductsRequest;
+import com.shop.common.contract.TotalPriceOfProductsResponse;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.RequestDeadline;
 import com.shop.paymentservice.exception.PaymentException;
 import com.shop.paymentservice.model.dto.*;
 import com.shop.paymentservice.model.model.OutboxEvent;
@@ -7,71 +16,54 @@ import com.shop.paymentservice.repository.OutboxRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class KafkaEventService {
 
-    protected final Map<String, CompletableFuture<BigDecimal>> requestsForTotalPrice = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<OrderInfoRepayment>> requestsForOrderInfo = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<Map<String, Integer>>> requestsForCart = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<String>> requestsForCreateOrder = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<Void>> requestsForDeleteCart = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<Void>> requestsForOrderSession = new ConcurrentHashMap<>();
-    protected final Map<String, CompletableFuture<Void>> requestsForCustomer = new ConcurrentHashMap<>();
+    private static final Duration SHORT_REPLY_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration LONG_REPLY_TIMEOUT = Duration.ofSeconds(10);
     protected final KafkaTemplate<String, Object> kafkaTemplate;
     protected final OutboxRepository outboxRepository;
+    private final PendingRequestRegistry pendingRequests;
 
     public void sendOrderAsProcessing(String sessionId) {
         log.info("Order with id {} is processing", sessionId);
-        OutboxEvent event = new OutboxEvent("order-paid", sessionId);
+        OutboxEvent event = new OutboxEvent("order-paid", sessionId, sessionId);
         outboxRepository.save(event);
     }
 
     public CompletableFuture<BigDecimal> getTotalPriceOfCart(Map<String, Integer> products) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<BigDecimal> future = new CompletableFuture<>();
-        requestsForTotalPrice.put(correlationId, future);
-        try {
-            TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest(correlationId, products);
-            kafkaTemplate.send("total-price-payment-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForTotalPrice.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for total price"));
-            }, 10, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForTotalPrice.remove(correlationId);
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("total-price-payment-request", null,
+                correlationId -> new TotalPriceOfProductsRequest(correlationId, products),
+                LONG_REPLY_TIMEOUT, "Timeout waiting for total price");
     }
 
-    @KafkaListener(topics = "total-price-payment-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "total-price-payment-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void totalPriceResponse(TotalPriceOfProductsResponse response) {
-        CompletableFuture<BigDecimal> future = requestsForTotalPrice.remove(response.getCorrelationId());
         if (response.getErrorMessage() != null) {
-            future.completeExceptionally(new PaymentException(response.getErrorMessage()));
+            pendingRequests.completeExceptionally(response.getCorrelationId(),
+                    new PaymentException(response.getErrorMessage()));
             return;
         }
-        if (future != null) {
-            future.complete(response.getTotalPrice());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getTotalPrice());
     }
 
     @Scheduled(cron = "0 0 3 * * *")
@@ -88,7 +80,7 @@ public class KafkaEventService {
         List<OutboxEvent> events = outboxRepository.findAllBySentFalse();
         events.forEach(event -> {
             try {
-                kafkaTemplate.send(event.getTopic(), event.getPayload());
+                kafkaTemplate.send(event.getTopic(), event.getMessageKey(), event.getPayload());
                 event.setSent(true);
                 event.setSentAt(LocalDateTime.now());
                 outboxRepository.save(event);
@@ -102,168 +94,99 @@ public class KafkaEventService {
     }
 
     public CompletableFuture<Map<String, Integer>> getCartProducts(String userId) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
-        requestsForCart.put(correlationId, future);
-        try {
-            kafkaTemplate.send(
-                    "cart-product-payment-request",
-                    new ProductsInCartInfoRequest(correlationId, userId));
-
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                requestsForCart.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for cart"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            requestsForCart.remove(correlationId);
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("cart-product-payment-request", userId,
+                correlationId -> new ProductsInCartInfoRequest(correlationId, false, userId),
+                SHORT_REPLY_TIMEOUT, "Timeout waiting for cart");
     }
 
-    @KafkaListener(topics = "cart-product-payment-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "cart-product-payment-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void cartResponse(ProductsInCartInfoResponse response) {
-        CompletableFuture<Map<String, Integer>> future = requestsForCart.remove(response.getCorrelationId());
-        if (future != null) {
-            future.complete(response.getProduct());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getProduct());
     }
 
     public CompletableFuture<String> createOrder(OrderBaseInfo order) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<String> future = new CompletableFuture<>();
-        requestsForCreateOrder.put(correlationId, future);
-        try {
-            kafkaTemplate.send("order-create-request", new CreateOrderRequest(correlationId, order));
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                future.completeExceptionally(new RuntimeException("Timeout waiting for order"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("order-create-request", order.getUserId(),
+                correlationId -> new CreateOrderRequest(correlationId, order),
+                SHORT_REPLY_TIMEOUT, "Timeout waiting for order");
     }
 
-    @KafkaListener(topics = "order-create-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "order-create-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void orderResponse(CreateOrderResponse response) {
-        CompletableFuture<String> future = requestsForCreateOrder.remove(response.getCorrelationId());
-        if (future != null) {
-            future.complete(response.getOrderId());
-        }
+        pendingRequests.complete(response.getCorrelationId(), response.getOrderId());
     }
 
     public CompletableFuture<Void> deleteCart(String userId) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        requestsForDeleteCart.put(correlationId, future);
-        try {
-            kafkaTemplate.send("cart-delete-request", new ProductsInCartInfoRequest(correlationId, userId));
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                future.completeExceptionally(new RuntimeException("Timeout waiting for order"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("cart-delete-request", userId,
+                correlationId -> new ProductsInCartInfoRequest(correlationId, false, userId),
+                SHORT_REPLY_TIMEOUT, "Timeout waiting for order");
     }
 
-    @KafkaListener(topics = "cart-delete-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "cart-delete-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void cartDeleteResponse(String correlationId) {
-        CompletableFuture<Void> future = requestsForDeleteCart.remove(correlationId);
-        if (future != null) {
-            future.complete(null);
-        }
+        pendingRequests.complete(correlationId, null);
     }
 
     public CompletableFuture<Void> setSessionIdForOrder(String orderId, String sessionId) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        requestsForOrderSession.put(correlationId, future);
-        log.info("123");
-        try {
-            OrderSessionRequest request = new OrderSessionRequest(correlationId, sessionId, orderId);
-            kafkaTemplate.send("order-session-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                future.completeExceptionally(new RuntimeException("Timeout waiting for order"));
-            }, 10, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("order-session-request", orderId,
+                correlationId -> new OrderSessionRequest(correlationId, sessionId, orderId),
+                LONG_REPLY_TIMEOUT, "Timeout waiting for order");
     }
 
-    @KafkaListener(topics = "order-session-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "order-session-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void orderSessionResponse(String correlationId) {
         log.info("order saved");
-        CompletableFuture<Void> future = requestsForOrderSession.remove(correlationId);
-        if (future != null) {
-            future.complete(null);
-        }
+        pendingRequests.complete(correlationId, null);
     }
 
     public CompletableFuture<OrderInfoRepayment> getOrderInfo(String orderId, String userId) {
-        String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<OrderInfoRepayment> future = new CompletableFuture<>();
-        requestsForOrderInfo.put(correlationId, future);
-        try {
-            OrderRepaymentRequest request = new OrderRepaymentRequest(orderId, userId, correlationId);
-            kafkaTemplate.send("order-info-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                future.completeExceptionally(new RuntimeException("Timeout waiting for order"));
-            }, 10, java.util.concurrent.TimeUnit.SECONDS);
-        } catch (Exception e) {
-            future.completeExceptionally(e);
-        }
-        return future;
+        return sendRequest("order-info-request", orderId,
+                correlationId -> new OrderRepaymentRequest(orderId, userId, correlationId),
+                LONG_REPLY_TIMEOUT, "Timeout waiting for order");
     }
 
-    @KafkaListener(topics = "order-info-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "order-info-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void orderInfoResponse(OrderRepaymentResponse order) {
-        CompletableFuture<OrderInfoRepayment> future = requestsForOrderInfo.remove(order.getCorrelationId());
         if (order.getErrorMessage() != null) {
-            future.completeExceptionally(new PaymentException(order.getErrorMessage()));
+            pendingRequests.completeExceptionally(order.getCorrelationId(),
+                    new PaymentException(order.getErrorMessage()));
             return;
         }
         log.info(String.valueOf(order.getOrderInfoRepayment().getTotalPrice()));
         log.info(String.valueOf(order.getOrderInfoRepayment().getPaymentMethod()));
-        if (future != null) {
-            future.complete(order.getOrderInfoRepayment());
-        }
+        pendingRequests.complete(order.getCorrelationId(), order.getOrderInfoRepayment());
     }
 
     public CompletableFuture<Void> createOrUpdateCustomerInfo(CustomerFromOrderDto customer) {
+        return sendRequest("customer-order-request", String.valueOf(customer.getUserId()),
+                correlationId -> new CustomerCreateRequest(correlationId, customer),
+                LONG_REPLY_TIMEOUT, "Timeout waiting for order");
+    }
+
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "customer-order-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
+    public void customerResponse(String correlationId) {
+        pendingRequests.complete(correlationId, null);
+    }
+
+    private <T> CompletableFuture<T> sendRequest(String topic, String key, Function<String, Object> request,
+                                                 Duration timeout, String timeoutMessage) {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        requestsForCustomer.put(correlationId, future);
+        Instant deadline = RequestDeadline.forRequest(timeout);
+        CompletableFuture<T> future = pendingRequests.register(
+                correlationId, RequestDeadline.remaining(deadline), timeoutMessage);
+        if (future.isDone()) {
+            return future;
+        }
         try {
-            CustomerCreateRequest request = new CustomerCreateRequest(correlationId, customer);
-            kafkaTemplate.send("customer-order-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                future.completeExceptionally(new RuntimeException("Timeout waiting for order"));
-            }, 10, java.util.concurrent.TimeUnit.SECONDS);
+            RequestDeadline.stamp(deadline, () -> kafkaTemplate.send(topic, key, request.apply(correlationId)));
         } catch (Exception e) {
-            future.completeExceptionally(e);
+            pendingRequests.completeExceptionally(correlationId, e);
         }
         return future;
     }
-
-    @KafkaListener(topics = "customer-order-response", groupId = "order-service",
-            containerFactory = "kafkaListenerContainerFactory")
-    public void customerResponse(String correlationId) {
-        CompletableFuture<Void> future = requestsForCustomer.remove(correlationId);
-        if (future != null) {
-            future.complete(null);
-        }
-    }
 }
@@ -5,6 +5,7 @@ import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import com.shop.common.kafka.RequestDeadline;
 import com.shop.paymentservice.exception.PaymentException;
 import com.shop.paymentservice.model.DeliveryTime;
 import com.shop.paymentservice.model.dto.CustomerFromOrderDto;
@@ -23,7 +24,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Map;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -35,6 +38,8 @@ public class PaymentService {
 
     private final KafkaEventService kafkaEventService;
 
+    private static final Duration CHECKOUT_DEADLINE = Duration.ofSeconds(15);
+
     private final ObjectMapper objectMapper;
     @Value("${spring.stripe.secret}")
     protected String stripeSecretKey;
@@ -63,6 +68,17 @@ public class PaymentService {
     }
 
     private String preparePaymentTemplate(OrderDto orderDto, long totalPrice, String orderId) {
+        try {
+            Session session = createCheckoutSession(orderDto, totalPrice, orderId);
+            kafkaEventService.setSessionIdForOrder(orderId, session.getId())
+                    .get(10, TimeUnit.SECONDS);
+            return session.getUrl();
+        } catch (ExecutionException | InterruptedException | TimeoutException e) {
+            throw new PaymentException("Error with order payment.", e);
+        }
+    }
+
+    private Session createCheckoutSession(OrderDto orderDto, long totalPrice, String orderId) {
         Stripe.apiKey = stripeSecretKey;
         try {
             var productData = com.stripe.param.checkout.SessionCreateParams.LineItem.PriceData.ProductData.builder()
@@ -90,51 +106,49 @@ public class PaymentService {
                             .addLineItem(items)
                             .build();
 
-            Session session = com.stripe.model.checkout.Session.create(sessionCreateParams);
-            kafkaEventService.setSessionIdForOrder(orderId, session.getId())
-                    .get(10, TimeUnit.SECONDS);
-            return session.getUrl();
+            return com.stripe.model.checkout.Session.create(sessionCreateParams);
         } catch (StripeException e) {
             throw new PaymentException("Error during payment.", e);
-        } catch (ExecutionException | InterruptedException | TimeoutException e) {
-            throw new PaymentException("Error with order payment.", e);
         }
     }
 
     public String createPayment(OrderDto orderDto, String userId) {
-        try {
+        Instant deadline = Instant.now().plus(CHECKOUT_DEADLINE);
+        try (RequestDeadline.Scope ignored = RequestDeadline.open(deadline)) {
             log.info("Start payment for {}", userId);
-            Map<String, Integer> products = kafkaEventService.getCartProducts(userId)
-                    .get(5, TimeUnit.SECONDS);
             BigDecimal shippingPrice = orderDto.getDeliveryTime().equals(DeliveryTime.STANDARD)
                     ? BigDecimal.ZERO
                     : new BigDecimal("10.00");
-            log.info("products get: {}", products.size());
-            BigDecimal cartTotal = kafkaEventService.getTotalPriceOfCart(products)
-                    .get(10, TimeUnit.SECONDS);
-            BigDecimal totalPrice = cartTotal.add(shippingPrice)
-                    .multiply(new BigDecimal("100"))
-                    .setScale(0, RoundingMode.HALF_UP);
-            log.info("total price: {}", totalPrice);
-            OrderBaseInfo order = new OrderBaseInfo(
-                    products,
-                    userId,
-                    orderDto.getShippingAddress(),
-                    totalPrice,
-                    orderDto.getPaymentMethod()
-            );
             CustomerFromOrderDto customer = new CustomerFromOrderDto(
                     Long.valueOf(userId),
                     orderDto.getFirstName(),
                     orderDto.getLastName(),
                     orderDto.getShippingAddress()
             );
-            kafkaEventService.createOrUpdateCustomerInfo(customer).get(5, TimeUnit.SECONDS);
-            String orderId = kafkaEventService.createOrder(order).get(5, TimeUnit.SECONDS);
-            log.info("order created: {}", orderId);
-            String url = preparePaymentTemplate(orderDto, totalPrice.longValueExact(), orderId);
-            kafkaEventService.deleteCart(userId).get(5, TimeUnit.SECONDS);
-            return url;
+            CompletableFuture<Void> customerUpdated = kafkaEventService.createOrUpdateCustomerInfo(customer);
+            CompletableFuture<OrderBaseInfo> order = kafkaEventService.getCartProducts(userId)
+                    .thenCompose(products -> kafkaEventService.getTotalPriceOfCart(products)
+                            .thenApply(cartTotal -> new OrderBaseInfo(
+                                    products,
+                                    userId,
+                                    orderDto.getShippingAddress(),
+                                    cartTotal.add(shippingPrice)
+                                            .multiply(new BigDecimal("100"))
+                                            .setScale(0, RoundingMode.HALF_UP),
+                                    orderDto.getPaymentMethod()
+                            )));
+            CompletableFuture<String> orderId = order
+                    .thenCombine(customerUpdated, (info, updated) -> info)
+                    .thenCompose(kafkaEventService::createOrder);
+
+            await(orderId, deadline);
+            long totalPrice = order.join().getTotalPrice().longValueExact();
+            log.info("order created: {}, total price: {}", orderId.join(), totalPrice);
+
+            Session session = createCheckoutSession(orderDto, totalPrice, orderId.join());
+            await(kafkaEventService.setSessionIdForOrder(orderId.join(), session.getId())
+                    .thenCompose(linked -> kafkaEventService.deleteCart(userId)), deadline);
+            return session.getUrl();
         } catch (Exception e) {
             throw new PaymentException("Error during payment.", e);
         }
@@ -157,4 +171,9 @@ public class PaymentService {
             throw new PaymentException("Error during create repayment", ex);
         }
     }
+
+    private static <T> T await(CompletableFuture<T> future, Instant deadline)
+            throws ExecutionException, InterruptedException, TimeoutException {
+        return future.get(Math.max(0, RequestDeadline.remaining(deadline).toMillis()), TimeUnit.MILLISECONDS);
+    }
 }
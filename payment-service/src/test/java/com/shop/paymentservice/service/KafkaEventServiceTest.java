@@ -1,5 +1,12 @@
 package com.shop.paymentservice.service;
 
+import com.shop.common.contract.CreateOrderResponse;
+import com.shop.common.contract.OrderSessionRequest;
+import com.shop.common.contract.ProductsInCartInfoRequest;
+import com.shop.common.contract.ProductsInCartInfoResponse;
+import com.shop.common.contract.TotalPriceOfProductsRequest;
+import com.shop.common.contract.TotalPriceOfProductsResponse;
+import com.shop.common.kafka.PendingRequestRegistry;
 import com.shop.paymentservice.model.ShippingAddress;
 import com.shop.paymentservice.model.dto.*;
 import com.shop.paymentservice.model.model.OutboxEvent;
@@ -10,9 +17,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
@@ -31,6 +40,10 @@ class KafkaEventServiceTest {
     @Mock
     private OutboxRepository outboxRepository;
 
+    @Spy
+    private PendingRequestRegistry pendingRequests =
+            new PendingRequestRegistry("test", 100, Duration.ofMillis(10), 64);
+
     @InjectMocks
     private KafkaEventService kafkaEventService;
 
@@ -44,6 +57,7 @@ class KafkaEventServiceTest {
         verify(outboxRepository).save(captor.capture());
         OutboxEvent savedEvent = captor.getValue();
         assertEquals("order-paid", savedEvent.getTopic());
+        assertEquals(sessionId, savedEvent.getMessageKey());
         assertEquals(sessionId, savedEvent.getPayload());
         assertFalse(savedEvent.isSent());
     }
@@ -51,12 +65,12 @@ class KafkaEventServiceTest {
     @Test
     void getTotalPriceOfCart_ShouldSendRequestAndReturnFuture() {
         Map<String, Integer> products = Map.of("product-1", 2);
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(null);
+        when(kafkaTemplate.send(anyString(), any(), any())).thenReturn(null);
 
         CompletableFuture<BigDecimal> future = kafkaEventService.getTotalPriceOfCart(products);
 
         assertNotNull(future);
-        verify(kafkaTemplate).send(eq("total-price-payment-request"), any(TotalPriceOfProductsRequest.class));
+        verify(kafkaTemplate).send(eq("total-price-payment-request"), isNull(), any(TotalPriceOfProductsRequest.class));
     }
 
     @Test
@@ -65,8 +79,7 @@ class KafkaEventServiceTest {
         BigDecimal expectedPrice = new BigDecimal("100.00");
         TotalPriceOfProductsResponse response = new TotalPriceOfProductsResponse(correlationId, expectedPrice, null);
 
-        CompletableFuture<BigDecimal> future = new CompletableFuture<>();
-        kafkaEventService.requestsForTotalPrice.put(correlationId, future);
+        CompletableFuture<BigDecimal> future = pendingRequests.register(correlationId, Duration.ofSeconds(5), "Timeout");
 
         kafkaEventService.totalPriceResponse(response);
 
@@ -77,12 +90,12 @@ class KafkaEventServiceTest {
     @Test
     void getCartProducts_ShouldSendRequestAndReturnFuture() {
         String userId = "user-123";
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(null);
+        when(kafkaTemplate.send(anyString(), any(), any())).thenReturn(null);
 
         CompletableFuture<Map<String, Integer>> future = kafkaEventService.getCartProducts(userId);
 
         assertNotNull(future);
-        verify(kafkaTemplate).send(eq("cart-product-payment-request"), any(ProductsInCartInfoRequest.class));
+        verify(kafkaTemplate).send(eq("cart-product-payment-request"), eq(userId), any(ProductsInCartInfoRequest.class));
     }
 
     @Test
@@ -91,8 +104,7 @@ class KafkaEventServiceTest {
         Map<String, Integer> expectedProducts = Map.of("product-1", 2);
         ProductsInCartInfoResponse response = new ProductsInCartInfoResponse(correlationId, expectedProducts);
 
-        CompletableFuture<Map<String, Integer>> future = new CompletableFuture<>();
-        kafkaEventService.requestsForCart.put(correlationId, future);
+        CompletableFuture<Map<String, Integer>> future = pendingRequests.register(correlationId, Duration.ofSeconds(5), "Timeout");
 
         kafkaEventService.cartResponse(response);
 
@@ -110,12 +122,12 @@ class KafkaEventServiceTest {
                 new BigDecimal("100.00"),
                 SessionCreateParams.PaymentMethodType.CARD
         );
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(null);
+        when(kafkaTemplate.send(anyString(), any(), any())).thenReturn(null);
 
         CompletableFuture<String> future = kafkaEventService.createOrder(order);
 
         assertNotNull(future);
-        verify(kafkaTemplate).send(eq("order-create-request"), any(CreateOrderRequest.class));
+        verify(kafkaTemplate).send(eq("order-create-request"), eq("user-123"), any(CreateOrderRequest.class));
     }
 
     @Test
@@ -124,8 +136,7 @@ class KafkaEventServiceTest {
         String orderId = "order-123";
         CreateOrderResponse response = new CreateOrderResponse(correlationId, orderId);
 
-        CompletableFuture<String> future = new CompletableFuture<>();
-        kafkaEventService.requestsForCreateOrder.put(correlationId, future);
+        CompletableFuture<String> future = pendingRequests.register(correlationId, Duration.ofSeconds(5), "Timeout");
 
         kafkaEventService.orderResponse(response);
 
@@ -137,20 +148,19 @@ class KafkaEventServiceTest {
     void setSessionIdForOrder_ShouldSendRequestAndReturnFuture() {
         String orderId = "order-123";
         String sessionId = "session-123";
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(null);
+        when(kafkaTemplate.send(anyString(), any(), any())).thenReturn(null);
 
         CompletableFuture<Void> future = kafkaEventService.setSessionIdForOrder(orderId, sessionId);
 
         assertNotNull(future);
-        verify(kafkaTemplate).send(eq("order-session-request"), any(OrderSessionRequest.class));
+        verify(kafkaTemplate).send(eq("order-session-request"), eq(orderId), any(OrderSessionRequest.class));
     }
 
     @Test
     void orderSessionResponse_ShouldCompleteFuture() {
         String correlationId = UUID.randomUUID().toString();
 
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        kafkaEventService.requestsForOrderSession.put(correlationId, future);
+        CompletableFuture<Void> future = pendingRequests.register(correlationId, Duration.ofSeconds(5), "Timeout");
 
         kafkaEventService.orderSessionResponse(correlationId);
 
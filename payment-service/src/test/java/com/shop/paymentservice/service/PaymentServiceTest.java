@@ -89,6 +89,65 @@ class PaymentServiceTest {
         }
     }
 
+    @Test
+    void createPayment_ShouldUpdateCustomerWhileFetchingCart() {
+        OrderDto orderDto = OrderDto.builder()
+                .email("test@example.com")
+                .deliveryTime(DeliveryTime.STANDARD)
+                .paymentMethod(SessionCreateParams.PaymentMethodType.CARD)
+                .build();
+        String userId = "123";
+        Map<String, Integer> products = Map.of("product-1", 2);
+        CompletableFuture<Map<String, Integer>> cart = new CompletableFuture<>();
+
+        when(kafkaEventService.getCartProducts(userId)).thenReturn(cart);
+        when(kafkaEventService.createOrUpdateCustomerInfo(any()))
+                .thenAnswer(invocation -> {
+                    cart.complete(products);
+                    return CompletableFuture.completedFuture(null);
+                });
+        when(kafkaEventService.getTotalPriceOfCart(products))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Timeout")));
+
+        assertThrows(PaymentException.class, () -> paymentService.createPayment(orderDto, userId));
+        verify(kafkaEventService).getTotalPriceOfCart(products);
+        verify(kafkaEventService, never()).createOrder(any());
+        verify(kafkaEventService, never()).deleteCart(any());
+    }
+
+    @Test
+    void createPayment_ShouldKeepCart_WhenLinkingSessionFails() {
+        OrderDto orderDto = OrderDto.builder()
+                .email("test@example.com")
+                .deliveryTime(DeliveryTime.STANDARD)
+                .paymentMethod(SessionCreateParams.PaymentMethodType.CARD)
+                .build();
+        String userId = "123";
+        Map<String, Integer> products = Map.of("product-1", 2);
+
+        when(kafkaEventService.getCartProducts(userId))
+                .thenReturn(CompletableFuture.completedFuture(products));
+        when(kafkaEventService.getTotalPriceOfCart(products))
+                .thenReturn(CompletableFuture.completedFuture(new BigDecimal("100.00")));
+        when(kafkaEventService.createOrder(any()))
+                .thenReturn(CompletableFuture.completedFuture("order-123"));
+        when(kafkaEventService.createOrUpdateCustomerInfo(any()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaEventService.setSessionIdForOrder(anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("Timeout")));
+
+        Session mockSession = mock(Session.class);
+        when(mockSession.getId()).thenReturn("session-id");
+
+        try (MockedStatic<Session> mockedSession = mockStatic(Session.class)) {
+            mockedSession.when(() -> Session.create(any(SessionCreateParams.class)))
+                    .thenReturn(mockSession);
+
+            assertThrows(PaymentException.class, () -> paymentService.createPayment(orderDto, userId));
+        }
+        verify(kafkaEventService, never()).deleteCart(any());
+    }
+
     @Test
     void createPayment_ShouldThrowPaymentExceptionWhenStripeFails() {
         OrderDto orderDto = OrderDto.builder()
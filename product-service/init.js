@@ -239,6 +239,7 @@ const newProducts = [];
 for (const template of productTemplates) {
     for (let i = 0; i < 3; i++) {
         const productCategories = getCategoryObjects(template.categoryNames);
+        const ratingCount = getRandomInt(3, 100);
 
         const product = {
             _id: ObjectId(),
@@ -247,7 +248,8 @@ for (const template of productTemplates) {
             amountLeft: getRandomInt(0, 100),
             orders: getRandomInt(8, 1000),
             description: template.description,
-            ratings: {[getRandomInt(3, 100)]: (getRandomInt(3, 100) / 20)},
+            ratingCount: NumberInt(ratingCount),
+            ratingSum: NumberLong(Math.round(ratingCount * getRandomInt(60, 100) / 20)),
             imageUrl: template.imageUrl + (i + 1) + '.png',
             categories: productCategories,
             available: getRandomInt(0, 8) !== 1,
@@ -0,0 +1,35 @@
+package com.shop.productservice.configuration;
+
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Bounded in-process caches for catalog reads. Entries expire after a short TTL, so stock shown
+ * on cached pages is at most that old, changes made through this service evict them right away
+ * on every replica via {@link com.shop.productservice.service.CatalogCacheInvalidator}.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String PRODUCT_DETAILS = "product-details";
+    public static final String FEATURED_PRODUCTS = "featured-products";
+    public static final String CATEGORIES = "categories";
+    public static final String MAX_PRICE = "max-price";
+    public static final String PRODUCT_COUNTS = "product-counts";
+    public static final String PRODUCT_FACETS = "product-facets";
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${catalog.cache.spec:maximumSize=10000,expireAfterWrite=60s,recordStats}") String spec) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(PRODUCT_DETAILS, FEATURED_PRODUCTS, CATEGORIES, MAX_PRICE,
+                PRODUCT_COUNTS, PRODUCT_FACETS);
+        cacheManager.setCaffeineSpec(CaffeineSpec.parse(spec));
+        return cacheManager;
+    }
+}
@@ -6,6 +6,7 @@ import com.shop.productservice.model.dto.ProductDto;
 import com.shop.productservice.model.dto.RateProductDto;
 import com.shop.productservice.service.CategoryService;
 import com.shop.productservice.service.ProductService;
+import com.shop.productservice.service.StockReservationLedger;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.Max;
 import lombok.NonNull;
@@ -27,6 +28,7 @@ public class ProductController {
 
     private final ProductService productService;
     private final CategoryService categoryService;
+    private final StockReservationLedger stockReservationLedger;
 
     @GetMapping
     public ResponseEntity<?> getProducts(@RequestHeader("X-User-Role") String role,
@@ -43,6 +45,37 @@ public class ProductController {
                         .getProducts(page, size, sort, direction, search, minPrice, maxPrice, categories,role));
     }
 
+    @GetMapping("/search")
+    public ResponseEntity<?> searchProducts(@RequestHeader("X-User-Role") String role,
+                                            @RequestParam(value = "page", defaultValue = "0") int page,
+                                            @RequestParam(value = "size", defaultValue = "6") int size,
+                                            @RequestParam(value = "sort", defaultValue = "id") String sort,
+                                            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+                                            @RequestParam(value = "search", defaultValue = "") String search,
+                                            @RequestParam(value = "minPrice", defaultValue = "0") @Min(0) int minPrice,
+                                            @RequestParam(value = "maxPrice", defaultValue = "9999") @Max(9999) int maxPrice,
+                                            @RequestParam(value = "categories", defaultValue = "", required = false) List<String> categories) {
+        return ResponseEntity
+                .ok(productService.searchProducts(page, size, sort, direction, search, minPrice, maxPrice,
+                        categories, role));
+    }
+
+    @GetMapping("/scroll")
+    public ResponseEntity<?> scrollProducts(@RequestHeader("X-User-Role") String role,
+                                            @RequestParam(value = "cursor", required = false) String cursor,
+                                            @RequestParam(value = "size", defaultValue = "6") @Min(1) @Max(ProductService.MAX_SCROLL_SIZE) int size,
+                                            @RequestParam(value = "sort", defaultValue = "id") String sort,
+                                            @RequestParam(value = "direction", defaultValue = "asc") String direction,
+                                            @RequestParam(value = "search", defaultValue = "") String search,
+                                            @RequestParam(value = "minPrice", defaultValue = "0") @Min(0) int minPrice,
+                                            @RequestParam(value = "maxPrice", defaultValue = "9999") @Max(9999) int maxPrice,
+                                            @RequestParam(value = "categories", defaultValue = "", required = false) List<String> categories,
+                                            @RequestParam(value = "withTotal", defaultValue = "false") boolean withTotal) {
+        return ResponseEntity
+                .ok(productService.scrollProducts(cursor, size, sort, direction, search, minPrice, maxPrice,
+                        categories, withTotal, role));
+    }
+
     @GetMapping("/categories")
     public ResponseEntity<?> getCategories() {
         return ResponseEntity.ok(categoryService.getCategories());
@@ -58,6 +91,11 @@ public class ProductController {
         return ResponseEntity.ok(productService.getDetails(id));
     }
 
+    @GetMapping("/{id}/stock")
+    public ResponseEntity<?> getStockLevel(@PathVariable String id) {
+        return ResponseEntity.ok(stockReservationLedger.getStockLevel(id));
+    }
+
     @PatchMapping("/rate")
     public ResponseEntity<?> rateProduct(@Valid @RequestBody RateProductDto rateProductDto) {
         productService.rateProduct(rateProductDto);
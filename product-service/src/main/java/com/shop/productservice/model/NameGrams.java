@@ -0,0 +1,45 @@
+package com.shop.productservice.model;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Lower-cased character n-grams of product names. Names are indexed with all bigrams and trigrams,
+ * a search term of three or more characters matches names containing all of its trigrams, a two
+ * character term its single bigram. Shorter terms have no grams and are matched without the index.
+ */
+public final class NameGrams {
+
+    private NameGrams() {
+    }
+
+    public static List<String> of(String name) {
+        if (name == null) {
+            return List.of();
+        }
+        String normalized = normalize(name);
+        Set<String> grams = new LinkedHashSet<>();
+        grams.addAll(grams(normalized, 2));
+        grams.addAll(grams(normalized, 3));
+        return List.copyOf(grams);
+    }
+
+    public static List<String> forSearch(String search) {
+        String normalized = normalize(search);
+        return normalized.length() < 3 ? grams(normalized, 2) : grams(normalized, 3);
+    }
+
+    private static List<String> grams(String text, int size) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + size <= text.length(); i++) {
+            grams.add(text.substring(i, i + size));
+        }
+        return List.copyOf(grams);
+    }
+
+    private static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT);
+    }
+}
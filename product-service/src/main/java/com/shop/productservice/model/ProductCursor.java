@@ -0,0 +1,100 @@
+package com.shop.productservice.model;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shop.productservice.exception.ProductException;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Position in a keyset scan over products ordered by {@link #getSort()} and then {@code _id}, both in
+ * {@link #getDirection()}. Clients receive it as an opaque base64url token, which carries the ordering
+ * it was created for, so a scan keeps its ordering across pages.
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ProductCursor {
+
+    public static final String ID = "id";
+    private static final Set<String> SORT_FIELDS = Set.of(ID, "name", "price", "orders");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String sort;
+    private final Sort.Direction direction;
+    /**
+     * sort value and id of the last product returned, both null before the first page
+     */
+    private final Object lastValue;
+    private final String lastId;
+
+    public static ProductCursor start(String sort, String direction) {
+        if (!SORT_FIELDS.contains(sort)) {
+            throw new ProductException("Unsupported sort field: " + sort);
+        }
+        return new ProductCursor(sort, direction.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC,
+                null, null);
+    }
+
+    public static ProductCursor decode(String token) {
+        try {
+            JsonNode node = MAPPER.readTree(Base64.getUrlDecoder().decode(token));
+            ProductCursor start = start(node.path("s").asText(), node.path("d").asText());
+            String lastId = node.path("id").asText();
+            if (lastId.isEmpty()) {
+                throw new IllegalArgumentException("Missing last id");
+            }
+            return new ProductCursor(start.sort, start.direction, value(start.sort, node.path("v")), lastId);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new ProductException("Invalid cursor.");
+        }
+    }
+
+    public boolean isStart() {
+        return lastId == null;
+    }
+
+    public ProductCursor after(ProductSummary product) {
+        Object value = switch (sort) {
+            case "name" -> product.getName();
+            case "price" -> product.getPrice();
+            case "orders" -> product.getOrders();
+            default -> null;
+        };
+        return new ProductCursor(sort, direction, value, product.getId());
+    }
+
+    public String encode() {
+        ObjectNode node = MAPPER.createObjectNode()
+                .put("s", sort)
+                .put("d", direction.name())
+                .put("id", lastId);
+        if (lastValue != null) {
+            node.put("v", lastValue.toString());
+        }
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(node.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Object value(String sort, JsonNode value) {
+        if (ID.equals(sort)) {
+            return null;
+        }
+        if (!value.isTextual()) {
+            throw new IllegalArgumentException("Missing sort value");
+        }
+        return switch (sort) {
+            case "price" -> new BigDecimal(value.asText());
+            case "orders" -> Integer.parseInt(value.asText());
+            default -> value.asText();
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package com.shop.productservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * One page of search results with the facets of the whole result set. Category counts ignore the
+ * category filter and the price range and histogram ignore the price filter, so they describe the
+ * options a shopper can still switch to.
+ */
+@Data
+@AllArgsConstructor
+public class ProductFacets {
+
+    private List<ProductSummary> products;
+    private long totalElements;
+    private List<CategoryCount> categories;
+    private List<PriceBucket> priceHistogram;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryCount {
+        private String name;
+        private long count;
+    }
+
+    /**
+     * products priced from {@code min} inclusive to {@code max}, exclusive except for the last bucket
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceBucket {
+        private BigDecimal min;
+        private BigDecimal max;
+        private long count;
+    }
+}
@@ -0,0 +1,29 @@
+package com.shop.productservice.model;
+
+import com.shop.productservice.model.entity.Category;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Read model of a product in listings. Queries returning it fetch only {@link #FIELDS}, leaving out
+ * the description and the name grams of the stored document.
+ */
+@Data
+public class ProductSummary {
+
+    public static final String FIELDS = "{ 'name': 1, 'price': 1, 'imageUrl': 1, 'amountLeft': 1, 'available': 1, "
+            + "'ratingSum': 1, 'ratingCount': 1, 'orders': 1, 'categories.name': 1 }";
+
+    private String id;
+    private String name;
+    private BigDecimal price;
+    private String imageUrl;
+    private int amountLeft;
+    private boolean available;
+    private long ratingSum;
+    private int ratingCount;
+    private int orders;
+    private List<Category> categories;
+}
@@ -1,16 +0,0 @@
-package com.shop.productservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-import java.util.Map;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class CartValidationResponse {
-    private String correlationId;
-    private Map<String, Integer> products;
-    private String error;
-}
@@ -1,14 +0,0 @@
-package com.shop.productservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class FileUploadMessage {
-    private String fileName;
-    private String contentType;
-    private byte[] fileData;
-}
\ No newline at end of file
@@ -1,14 +0,0 @@
-package com.shop.productservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@AllArgsConstructor
-@NoArgsConstructor
-public class OrderProductRatedRequest {
-    private String correlationId;
-    private String orderId;
-    private String productId;
-}
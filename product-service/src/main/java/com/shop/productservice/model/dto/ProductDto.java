@@ -1,13 +1,13 @@
 package com.shop.productservice.model.dto;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.shop.productservice.model.ProductSummary;
 import com.shop.productservice.model.entity.Category;
 import com.shop.productservice.model.entity.Product;
 import lombok.Data;
 
 import java.math.BigDecimal;
 import java.util.List;
-import java.util.Map;
 
 import static java.util.stream.Collectors.toList;
 
@@ -31,7 +31,7 @@ public class ProductDto {
         productDto.setPrice(product.getPrice());
         productDto.setImage(product.getImageUrl());
         productDto.setAvailable(product.isAvailable());
-        productDto.setRating(product.getRatings().values().iterator().next());
+        productDto.setRating(averageRating(product.getRatingSum(), product.getRatingCount()));
         productDto.setQuantity(product.getAmountLeft());
         productDto.setAvailable(product.isAvailable());
         productDto.setId(product.getId());
@@ -43,6 +43,23 @@ public class ProductDto {
         return productDto;
     }
 
+    public static ProductDto toDto(ProductSummary product) {
+        ProductDto productDto = new ProductDto();
+        productDto.setId(product.getId());
+        productDto.setName(product.getName());
+        productDto.setPrice(product.getPrice());
+        productDto.setImage(product.getImageUrl());
+        productDto.setRating(averageRating(product.getRatingSum(), product.getRatingCount()));
+        productDto.setQuantity(product.getAmountLeft());
+        productDto.setAvailable(product.isAvailable());
+        productDto.setCategories(product.getCategories().stream().map(Category::getName).collect(toList()));
+        return productDto;
+    }
+
+    public static double averageRating(long ratingSum, int ratingCount) {
+        return ratingCount == 0 ? 0.0 : Math.round(ratingSum * 100.0 / ratingCount) / 100.0;
+    }
+
     public static Product toEntity(ProductDto productDto, List<Category> categories) {
         Product product = new Product();
         product.setName(productDto.getName());
@@ -51,7 +68,6 @@ public class ProductDto {
         product.setAmountLeft(productDto.getQuantity());
         product.setDescription(productDto.getDescription());
         product.setOrders(0);
-        product.setRatings(Map.of(0, 0.0));
         product.setCategories(categories);
         return product;
     }
@@ -65,6 +81,15 @@ public class ProductDto {
         return productDto;
     }
 
+    public static ProductDto minDto(ProductSummary product) {
+        ProductDto productDto = new ProductDto();
+        productDto.setName(product.getName());
+        productDto.setPrice(product.getPrice());
+        productDto.setImage(product.getImageUrl());
+        productDto.setId(product.getId());
+        return productDto;
+    }
+
     public static ProductDto minEdited(Product product) {
         ProductDto productDto = new ProductDto();
         productDto.setName(product.getName());
@@ -1,15 +0,0 @@
-package com.shop.productservice.model.dto;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-import java.util.Set;
-
-@AllArgsConstructor
-@NoArgsConstructor
-@Data
-public class ProductPriceByIdRequest {
-    private String correlationId;
-    private Set<String> productIds;
-}
\ No newline at end of file
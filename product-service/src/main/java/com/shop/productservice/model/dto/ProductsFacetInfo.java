@@ -0,0 +1,32 @@
+package com.shop.productservice.model.dto;
+
+import com.shop.productservice.model.ProductFacets;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ProductsFacetInfo {
+
+    private List<ProductDto> products;
+    private long totalElements;
+    private List<ProductFacets.CategoryCount> categories;
+    private List<ProductFacets.PriceBucket> priceHistogram;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+
+    public static ProductsFacetInfo toDto(ProductFacets facets) {
+        return new ProductsFacetInfo(
+                facets.getProducts().stream().map(ProductDto::toDto).toList(),
+                facets.getTotalElements(),
+                facets.getCategories(),
+                facets.getPriceHistogram(),
+                facets.getMinPrice(),
+                facets.getMaxPrice());
+    }
+}
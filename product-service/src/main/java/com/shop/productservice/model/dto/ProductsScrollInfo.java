@@ -0,0 +1,23 @@
+package com.shop.productservice.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ProductsScrollInfo {
+
+    private List<ProductDto> products;
+    /**
+     * token for the next page, null on the last one
+     */
+    private String nextCursor;
+    /**
+     * only set when requested
+     */
+    private Long totalElements;
+}
@@ -5,10 +5,10 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
-public class ProductQuantityCheck {
-    private String userId;
+@AllArgsConstructor
+public class StockLevelDto {
     private String productId;
-    private int quantity;
+    private int available;
+    private int held;
 }
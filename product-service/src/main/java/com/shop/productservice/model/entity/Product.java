@@ -1,5 +1,6 @@
 package com.shop.productservice.model.entity;
 
+import com.shop.productservice.model.NameGrams;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.index.Indexed;
@@ -9,7 +10,6 @@ import org.springframework.data.mongodb.core.mapping.FieldType;
 
 import java.math.BigDecimal;
 import java.util.List;
-import java.util.Map;
 
 @Document(collection = "products")
 @Data
@@ -20,18 +20,29 @@ public class Product {
     @Indexed
     private String name;
     @Indexed
+    private List<String> nameGrams;
+    @Indexed
     @Field(targetType = FieldType.DECIMAL128)
     private BigDecimal price;
     private int amountLeft;
+    /**
+     * part of amountLeft handed out to stock shards, see StripedStockService
+     */
+    private int stripedStock;
     private String description;
     private String imageUrl;
     private boolean available = true;
 
     /**
-     * integer - amount of user who rated
-     * double - rating of product
+     * sum and number of all ratings, the average is computed when read
      */
-    private Map<Integer, Double> ratings;
+    private long ratingSum;
+    private int ratingCount;
     private int orders;
     private List<Category> categories;
+
+    public void setName(String name) {
+        this.name = name;
+        this.nameGrams = NameGrams.of(name);
+    }
 }
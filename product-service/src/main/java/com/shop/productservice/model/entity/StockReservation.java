@@ -0,0 +1,30 @@
+package com.shop.productservice.model.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.WildcardIndexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.Map;
+
+@Document(collection = "stock_reservations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservation {
+
+    @Id
+    private String userId;
+    @WildcardIndexed
+    private Map<String, Integer> products;
+    @Indexed
+    private Instant expiresAt;
+    /**
+     * set while the hold's stock is still being reserved, such a hold has no stock to release
+     */
+    private boolean pending;
+}
@@ -0,0 +1,30 @@
+package com.shop.productservice.model.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Document(collection = "stock_shards")
+@Data
+@NoArgsConstructor
+public class StockShard {
+
+    @Id
+    private String id;
+    @Indexed
+    private String productId;
+    /**
+     * stock this shard may still reserve
+     */
+    private int budget;
+    /**
+     * net stock reserved from this shard since the last consolidation
+     */
+    private int consumed;
+    /**
+     * sold count written by earlier releases, sold counts now go to the product directly
+     */
+    private int sold;
+}
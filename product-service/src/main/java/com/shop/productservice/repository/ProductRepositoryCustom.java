@@ -0,0 +1,33 @@
+package com.shop.productservice.repository;
+
+import com.shop.productservice.configuration.CacheConfig;
+import com.shop.productservice.model.ProductCursor;
+import com.shop.productservice.model.ProductFacets;
+import com.shop.productservice.model.ProductSummary;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+
+public interface ProductRepositoryCustom {
+
+    void incrementSoldCounts(Map<String, Integer> soldByProductId);
+
+    Page<ProductSummary> searchProducts(String search, List<String> categories, boolean onlyAvailable,
+                                        int minPrice, int maxPrice, Pageable pageable);
+
+    List<ProductSummary> findProductsAfter(String search, List<String> categories, boolean onlyAvailable,
+                                           int minPrice, int maxPrice, ProductCursor cursor, int limit);
+
+    ProductFacets searchWithFacets(String search, List<String> categories, boolean onlyAvailable,
+                                   int minPrice, int maxPrice, Pageable pageable);
+
+    @Cacheable(CacheConfig.PRODUCT_COUNTS)
+    long countProducts(String search, List<String> categories, boolean onlyAvailable, int minPrice, int maxPrice);
+
+    int backfillNameGrams();
+
+    int migrateRatings();
+}
@@ -0,0 +1,267 @@
+package com.shop.productservice.repository;
+
+import com.shop.productservice.model.NameGrams;
+import com.shop.productservice.model.ProductCursor;
+import com.shop.productservice.model.ProductFacets;
+import com.shop.productservice.model.ProductSummary;
+import com.shop.productservice.model.entity.Product;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.MatchOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@RequiredArgsConstructor
+public class ProductRepositoryCustomImpl implements ProductRepositoryCustom {
+
+    private static final int BACKFILL_BATCH = 1000;
+    private static final int PRICE_BUCKETS = 5;
+    private static final String[] SUMMARY_FIELDS = Document.parse(ProductSummary.FIELDS).keySet().toArray(String[]::new);
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public void incrementSoldCounts(Map<String, Integer> soldByProductId) {
+        if (soldByProductId.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        soldByProductId.forEach((productId, sold) -> bulk.updateOne(
+                Query.query(Criteria.where("id").is(productId)), new Update().inc("orders", sold)));
+        bulk.execute();
+    }
+
+    /**
+     * Matches names containing {@code search}, case-insensitive. The gram filter is served by the
+     * {@code nameGrams} index and narrows the candidates, the literal regex drops gram matches whose
+     * grams are not adjacent in the name.
+     */
+    @Override
+    public Page<ProductSummary> searchProducts(String search, List<String> categories, boolean onlyAvailable,
+                                               int minPrice, int maxPrice, Pageable pageable) {
+        Query query = Query.query(searchCriteria(search, categories, onlyAvailable, minPrice, maxPrice))
+                .with(pageable);
+        List<ProductSummary> products = findSummaries(query);
+        return PageableExecutionUtils.getPage(products, pageable,
+                () -> mongoTemplate.count(Query.of(query).limit(-1).skip(-1), Product.class));
+    }
+
+    /**
+     * Next page of a keyset scan: products after the cursor position in its ordering, with
+     * {@code _id} breaking ties, so each page is an index range scan instead of a skip.
+     */
+    @Override
+    public List<ProductSummary> findProductsAfter(String search, List<String> categories, boolean onlyAvailable,
+                                                  int minPrice, int maxPrice, ProductCursor cursor, int limit) {
+        Criteria filter = searchCriteria(search, categories, onlyAvailable, minPrice, maxPrice);
+        Sort sort = Sort.by(cursor.getDirection(), cursor.getSort());
+        if (!ProductCursor.ID.equals(cursor.getSort())) {
+            sort = sort.and(Sort.by(cursor.getDirection(), ProductCursor.ID));
+        }
+        Query query = Query.query(cursor.isStart() ? filter : new Criteria().andOperator(filter, keysetCriteria(cursor)))
+                .with(sort)
+                .limit(limit);
+        return findSummaries(query);
+    }
+
+    /**
+     * Runs the query against {@link Product}, so criteria and sort are mapped with its field types,
+     * but reads only the listing fields.
+     */
+    private List<ProductSummary> findSummaries(Query query) {
+        query.fields().include(SUMMARY_FIELDS);
+        return mongoTemplate.query(Product.class).as(ProductSummary.class).matching(query).all();
+    }
+
+    @Override
+    public long countProducts(String search, List<String> categories, boolean onlyAvailable,
+                              int minPrice, int maxPrice) {
+        return mongoTemplate.count(Query.query(searchCriteria(search, categories, onlyAvailable, minPrice, maxPrice)),
+                Product.class);
+    }
+
+    static Criteria keysetCriteria(ProductCursor cursor) {
+        boolean ascending = cursor.getDirection().isAscending();
+        if (ProductCursor.ID.equals(cursor.getSort())) {
+            return after(Criteria.where(ProductCursor.ID), cursor.getLastId(), ascending);
+        }
+        Criteria sameValue = Criteria.where(cursor.getSort()).is(cursor.getLastValue());
+        after(sameValue.and(ProductCursor.ID), cursor.getLastId(), ascending);
+        return new Criteria().orOperator(
+                after(Criteria.where(cursor.getSort()), cursor.getLastValue(), ascending),
+                sameValue);
+    }
+
+    private static Criteria after(Criteria criteria, Object value, boolean ascending) {
+        return ascending ? criteria.gt(value) : criteria.lt(value);
+    }
+
+    static Criteria searchCriteria(String search, List<String> categories, boolean onlyAvailable,
+                                   int minPrice, int maxPrice) {
+        Criteria criteria = nameCriteria(search, onlyAvailable);
+        criteria.and("price").gte(minPrice).lte(maxPrice);
+        if (categories != null && !categories.isEmpty()) {
+            criteria.and("categories.name").in(categories);
+        }
+        return criteria;
+    }
+
+    private static Criteria nameCriteria(String search, boolean onlyAvailable) {
+        Criteria criteria = Criteria.where("available").in(true, onlyAvailable);
+        String term = search == null ? "" : search.trim();
+        if (!term.isEmpty()) {
+            List<String> grams = NameGrams.forSearch(term);
+            if (!grams.isEmpty()) {
+                criteria.and("nameGrams").all(grams);
+            }
+            criteria.and("name").regex(Pattern.quote(term), "i");
+        }
+        return criteria;
+    }
+
+    /**
+     * Result page and facets in one {@code $facet} aggregation over the products matching the search.
+     * Each facet pipeline applies the category and price filters except the one it describes.
+     */
+    @Override
+    public ProductFacets searchWithFacets(String search, List<String> categories, boolean onlyAvailable,
+                                          int minPrice, int maxPrice, Pageable pageable) {
+        Aggregation aggregation = facetAggregation(search, categories, onlyAvailable, minPrice, maxPrice, pageable);
+        Document result = mongoTemplate.aggregate(aggregation, Product.class, Document.class).getUniqueMappedResult();
+        if (result == null) {
+            return new ProductFacets(List.of(), 0, List.of(), List.of(), null, null);
+        }
+        List<ProductSummary> products = result.getList("products", Document.class).stream()
+                .map(product -> mongoTemplate.getConverter().read(ProductSummary.class, product))
+                .toList();
+        long total = result.getList("total", Document.class).stream()
+                .findFirst()
+                .map(count -> ((Number) count.get("count")).longValue())
+                .orElse(0L);
+        List<ProductFacets.CategoryCount> categoryCounts = result.getList("categories", Document.class).stream()
+                .map(category -> new ProductFacets.CategoryCount(category.getString("_id"),
+                        ((Number) category.get("count")).longValue()))
+                .sorted(Comparator.comparingLong(ProductFacets.CategoryCount::getCount).reversed()
+                        .thenComparing(ProductFacets.CategoryCount::getName))
+                .toList();
+        List<ProductFacets.PriceBucket> histogram = result.getList("priceHistogram", Document.class).stream()
+                .map(bucket -> {
+                    Document bounds = bucket.get("_id", Document.class);
+                    return new ProductFacets.PriceBucket(decimal(bounds.get("min")), decimal(bounds.get("max")),
+                            ((Number) bucket.get("count")).longValue());
+                })
+                .toList();
+        Document priceRange = result.getList("priceRange", Document.class).stream().findFirst().orElse(new Document());
+        return new ProductFacets(products, total, categoryCounts, histogram,
+                decimal(priceRange.get("min")), decimal(priceRange.get("max")));
+    }
+
+    static Aggregation facetAggregation(String search, List<String> categories, boolean onlyAvailable,
+                                        int minPrice, int maxPrice, Pageable pageable) {
+        MatchOperation inPriceRange = Aggregation.match(Criteria.where("price").gte(minPrice).lte(maxPrice));
+        List<AggregationOperation> inCategories = categories == null || categories.isEmpty()
+                ? List.of()
+                : List.of(Aggregation.match(Criteria.where("categories.name").in(categories)));
+
+        List<AggregationOperation> page = new ArrayList<>(inCategories);
+        page.add(inPriceRange);
+        List<AggregationOperation> total = new ArrayList<>(page);
+        if (pageable.getSort().isSorted()) {
+            page.add(Aggregation.sort(pageable.getSort()));
+        }
+        page.add(Aggregation.skip(pageable.getOffset()));
+        page.add(Aggregation.limit(pageable.getPageSize()));
+        page.add(context -> new Document("$project", Document.parse(ProductSummary.FIELDS)));
+        total.add(Aggregation.count().as("count"));
+        List<AggregationOperation> priceRange = new ArrayList<>(inCategories);
+        priceRange.add(Aggregation.group().min("price").as("min").max("price").as("max"));
+        List<AggregationOperation> priceHistogram = new ArrayList<>(inCategories);
+        priceHistogram.add(Aggregation.bucketAuto("price", PRICE_BUCKETS));
+
+        return Aggregation.newAggregation(
+                Aggregation.match(nameCriteria(search, onlyAvailable)),
+                Aggregation.facet(page.toArray(AggregationOperation[]::new)).as("products")
+                        .and(total.toArray(AggregationOperation[]::new)).as("total")
+                        .and(inPriceRange, Aggregation.unwind("categories"),
+                                Aggregation.group("categories.name").count().as("count")).as("categories")
+                        .and(priceRange.toArray(AggregationOperation[]::new)).as("priceRange")
+                        .and(priceHistogram.toArray(AggregationOperation[]::new)).as("priceHistogram"));
+    }
+
+    private static BigDecimal decimal(Object value) {
+        if (value instanceof Decimal128 decimal) {
+            return decimal.bigDecimalValue();
+        }
+        return value == null ? null : new BigDecimal(value.toString());
+    }
+
+    @Override
+    public int backfillNameGrams() {
+        Query missing = Query.query(Criteria.where("nameGrams").exists(false));
+        missing.fields().include("name");
+        int updated = 0;
+        try (Stream<Product> products = mongoTemplate.stream(missing, Product.class)) {
+            Iterator<Product> iterator = products.iterator();
+            while (iterator.hasNext()) {
+                BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+                int batch = 0;
+                while (iterator.hasNext() && batch < BACKFILL_BATCH) {
+                    Product product = iterator.next();
+                    bulk.updateOne(Query.query(Criteria.where("id").is(product.getId())),
+                            Update.update("nameGrams", NameGrams.of(product.getName())));
+                    batch++;
+                }
+                bulk.execute();
+                updated += batch;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * Folds the legacy {@code ratings} map, holding the number of ratings mapped to their average,
+     * into the rating counters. The counters are incremented and the map removed in one update, so
+     * ratings added meanwhile are kept and a document is never migrated twice.
+     */
+    @Override
+    public int migrateRatings() {
+        Query legacy = Query.query(Criteria.where("ratings").exists(true));
+        legacy.fields().include("ratings");
+        int migrated = 0;
+        for (Document product : mongoTemplate.find(legacy, Document.class, mongoTemplate.getCollectionName(Product.class))) {
+            long count = 0;
+            double sum = 0;
+            Document ratings = product.get("ratings", Document.class);
+            for (Map.Entry<String, Object> rating : ratings == null ? Set.<Map.Entry<String, Object>>of() : ratings.entrySet()) {
+                long ratingCount = Long.parseLong(rating.getKey());
+                count += ratingCount;
+                sum += ratingCount * ((Number) rating.getValue()).doubleValue();
+            }
+            Update update = new Update().inc("ratingSum", Math.round(sum)).inc("ratingCount", count).unset("ratings");
+            migrated += (int) mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(product.get("_id")).and("ratings").exists(true)),
+                    update, Product.class).getModifiedCount();
+        }
+        return migrated;
+    }
+}
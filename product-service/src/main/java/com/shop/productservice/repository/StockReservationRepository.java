@@ -0,0 +1,7 @@
+package com.shop.productservice.repository;
+
+import com.shop.productservice.model.entity.StockReservation;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+public interface StockReservationRepository extends MongoRepository<StockReservation, String> {
+}
@@ -0,0 +1,82 @@
+package com.shop.productservice.service;
+
+import com.shop.productservice.configuration.CacheConfig;
+import com.shop.common.contract.CatalogInvalidation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.PartitionOffset;
+import org.springframework.kafka.annotation.TopicPartition;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Evicts catalog caches after a change and broadcasts the eviction to the other replicas. Every
+ * replica reads the single partition of {@value #TOPIC} from its end without a consumer group, so
+ * each one sees every message.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogCacheInvalidator {
+
+    public static final String TOPIC = "product-catalog-invalidation";
+
+    private final CacheManager cacheManager;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+
+    /**
+     * Evicts the detail pages of products whose stock or sales changed. Lists that merely show them,
+     * like featured products, are left to expire.
+     */
+    public void productsChanged(Collection<String> productIds) {
+        if (!productIds.isEmpty()) {
+            publish(new CatalogInvalidation(List.copyOf(productIds), false));
+        }
+    }
+
+    /**
+     * Drops every cached catalog read, for admin changes that may show up on other products' pages.
+     */
+    public void catalogChanged() {
+        publish(new CatalogInvalidation(List.of(), true));
+    }
+
+    @KafkaListener(topicPartitions = @TopicPartition(topic = TOPIC,
+            partitionOffsets = @PartitionOffset(partition = "0", initialOffset = "0", seekPosition = "END")),
+            containerFactory = "invalidationListenerContainerFactory")
+    public void handleInvalidation(CatalogInvalidation invalidation) {
+        evict(invalidation);
+    }
+
+    void evict(CatalogInvalidation invalidation) {
+        if (invalidation.isAll()) {
+            cacheManager.getCacheNames().forEach(name -> cache(name).clear());
+            return;
+        }
+        Cache details = cache(CacheConfig.PRODUCT_DETAILS);
+        invalidation.getProductIds().forEach(details::evict);
+    }
+
+    private void publish(CatalogInvalidation invalidation) {
+        evict(invalidation);
+        try {
+            kafkaTemplate.send(TOPIC, invalidation);
+        } catch (Exception e) {
+            log.error("Error publishing catalog invalidation {}", invalidation, e);
+        }
+    }
+
+    private Cache cache(String name) {
+        Cache cache = cacheManager.getCache(name);
+        if (cache == null) {
+            throw new IllegalStateException("Cache " + name + " is not configured");
+        }
+        return cache;
+    }
+}
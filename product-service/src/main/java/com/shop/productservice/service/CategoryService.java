@@ -1,8 +1,10 @@
 package com.shop.productservice.service;
 
+import com.shop.productservice.configuration.CacheConfig;
 import com.shop.productservice.model.dto.CategoryDto;
 import com.shop.productservice.repository.CategoryRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -13,6 +15,7 @@ public class CategoryService {
 
     private final CategoryRepository categoryRepository;
 
+    @Cacheable(CacheConfig.CATEGORIES)
     public List<CategoryDto> getCategories() {
         return categoryRepository.findAll().stream().map(CategoryDto::toDto).toList();
     }
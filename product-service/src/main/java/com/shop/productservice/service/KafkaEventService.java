@@ -1,5 +1,22 @@
 package com.shop.productservice.service;
 
+import com.shop.common.contract.CartValidationRequest;
+import com.shop.common.contract.CartValidationResponse;
+import com.shop.common.contract.OrderProductRatedRequest;
+import com.shop.common.contract.ProductBase;
+import com.shop.common.contract.ProductInfoRequest;
+import com.shop.common.contract.ProductInfoResponse;
+import com.shop.common.contract.ProductOrderDto;
+import com.shop.common.contract.ProductPriceByIdRequest;
+import com.shop.common.contract.ProductPriceByIdResponse;
+import com.shop.common.contract.ProductQuantityCheck;
+import com.shop.common.contract.ProductsByIdRequest;
+import com.shop.common.contract.ProductsByIdResponse;
+import com.shop.common.contract.TotalPriceOfProductsRequest;
+import com.shop.common.contract.TotalPriceOfProductsResponse;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
+import com.shop.common.kafka.RequestDeadline;
 import com.shop.productservice.exception.ProductException;
 import com.shop.productservice.model.dto.*;
 import com.shop.productservice.model.entity.Product;
@@ -7,18 +24,20 @@ import com.shop.productservice.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.annotation.TopicPartition;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ScheduledExecutorService;
 
 @Service
 @RequiredArgsConstructor
@@ -26,10 +45,15 @@ import java.util.concurrent.ScheduledExecutorService;
 public class KafkaEventService {
 
     private final ProductRepository productRepository;
+    private final StockReservationService stockReservationService;
+    private final StockReservationLedger stockReservationLedger;
+    private final StripedStockService stripedStockService;
+    private final CatalogCacheInvalidator catalogCacheInvalidator;
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    protected final Map<String, CompletableFuture<OrderProductRatedRequest>> orderProductAsRatedMap = new ConcurrentHashMap<>();
+    private final ReplyRouting replyRouting;
+    private final PendingRequestRegistry pendingRequests;
 
-    @KafkaListener(topics = "product-cart-quantity-check-request", groupId = "product-group",
+    @KafkaListener(topics = "product-cart-quantity-check-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void checkProductAmountAvaibility(ProductQuantityCheck productQuantityCheck) {
         Product product = productRepository
@@ -37,20 +61,21 @@ public class KafkaEventService {
                 .orElseThrow(() -> new ProductException("Product not found."));
         kafkaTemplate.send(
                 "product-cart-quantity-check-response",
+                productQuantityCheck.getUserId(),
                 new ProductQuantityCheck(productQuantityCheck.getUserId(),
                         productQuantityCheck.getProductId(),
-                        Math.min(product.getAmountLeft(), productQuantityCheck.getQuantity())
+                        stripedStockService.availableStock(product)
                 )
         );
     }
 
-    @KafkaListener(topics = "product-cart-info-request", groupId = "product-group",
+    @KafkaListener(topics = "product-cart-info-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void handleProductInfoRequest(ProductInfoRequest request) {
         try {
             List<Product> products = productRepository.findAllById(request.getProductIds());
             List<ProductBase> productBases = products.stream()
-                    .map(ProductBase::mapToBase)
+                    .map(this::mapToBase)
                     .toList();
 
             ProductInfoResponse response = new ProductInfoResponse(
@@ -58,13 +83,13 @@ public class KafkaEventService {
                     productBases
             );
 
-            kafkaTemplate.send("product-cart-info-response", response);
+            sendReply("product-cart-info-response", response);
         } catch (Exception e) {
             log.error("Error processing product info request", e);
         }
     }
 
-    @KafkaListener(topics = "cart-validation-request", groupId = "product-group",
+    @KafkaListener(topics = "cart-validation-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void handleValidationRequest(CartValidationRequest request) {
         try {
@@ -72,21 +97,21 @@ public class KafkaEventService {
 
             for (Product product : products) {
                 int requestedQuantity = request.getProducts().get(product.getId());
-                if (product.getAmountLeft() < requestedQuantity) {
+                if (stripedStockService.availableStock(product) < requestedQuantity) {
                     throw new ProductException("Not enough products in stock.");
                 }
             }
 
-            kafkaTemplate.send("cart-validation-response",
+            sendReply("cart-validation-response",
                     new CartValidationResponse(request.getCorrelationId(), null, null));
 
         } catch (ProductException e) {
-            kafkaTemplate.send("cart-validation-response",
+            sendReply("cart-validation-response",
                     new CartValidationResponse(request.getCorrelationId(), null, e.getMessage()));
         }
     }
     @Transactional
-    @KafkaListener(topics = "total-price-request", groupId = "product-group",
+    @KafkaListener(topics = "total-price-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void getTotalPriceAndBlockProductsRequest(TotalPriceOfProductsRequest request) {
         getTotalPriceAndBlock(request);
@@ -95,31 +120,51 @@ public class KafkaEventService {
     @Transactional
     public void getTotalPriceAndBlock(TotalPriceOfProductsRequest request) {
         try {
+            if (request.getUserId() != null) {
+                stockReservationLedger.release(request.getUserId());
+            }
             List<Product> products = productRepository.findAllById(request.getProducts().keySet());
 
             BigDecimal totalPrice = BigDecimal.ZERO;
+            Map<String, Integer> reserved = new LinkedHashMap<>();
             for (Product product : products) {
                 int requestedQuantity = request.getProducts().get(product.getId());
-                if (product.getAmountLeft() < requestedQuantity) {
+                if (stripedStockService.availableStock(product) < requestedQuantity) {
                     throw new ProductException("Not enough products in stock.");
                 }
                 totalPrice = totalPrice.add(product.getPrice().multiply(BigDecimal.valueOf(requestedQuantity)));
-                product.setAmountLeft(product.getAmountLeft() - requestedQuantity);
+                reserved.put(product.getId(), requestedQuantity);
             }
 
-            productRepository.saveAll(products);
+            Instant deadline = RequestDeadline.current();
+            if (deadline != null && RequestDeadline.isExpired(deadline)) {
+                log.warn("Skipping stock reservation for {}, caller deadline {} has passed",
+                        request.getCorrelationId(), deadline);
+                return;
+            }
+            boolean stockReserved = request.getUserId() == null
+                    ? stockReservationService.reserve(reserved)
+                    : stockReservationLedger.hold(request.getUserId(), reserved);
+            if (!stockReserved) {
+                throw new ProductException("Not enough products in stock.");
+            }
 
-            kafkaTemplate.send("total-price-response",
-                    new TotalPriceOfProductsResponse(request.getCorrelationId(), totalPrice, null));
+            try {
+                sendReply("total-price-response",
+                        new TotalPriceOfProductsResponse(request.getCorrelationId(), totalPrice, null));
+            } catch (RuntimeException e) {
+                releaseStock(request);
+                throw e;
+            }
 
         } catch (ProductException e) {
-            kafkaTemplate.send("total-price-response",
+            sendReply("total-price-response",
                     new TotalPriceOfProductsResponse(request.getCorrelationId(), null, e.getMessage()));
         }
     }
 
     @Transactional
-    @KafkaListener(topics = "total-price-payment-request", groupId = "product-group",
+    @KafkaListener(topics = "total-price-payment-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void getTotalPriceRequest(TotalPriceOfProductsRequest request) {
         try {
@@ -131,16 +176,16 @@ public class KafkaEventService {
                 totalPrice = totalPrice.add(product.getPrice().multiply(BigDecimal.valueOf(requestedQuantity)));
             }
 
-            kafkaTemplate.send("total-price-payment-response",
+            sendReply("total-price-payment-response",
                     new TotalPriceOfProductsResponse(request.getCorrelationId(), totalPrice, null));
 
         } catch (ProductException e) {
-            kafkaTemplate.send("total-price-payment-response",
+            sendReply("total-price-payment-response",
                     new TotalPriceOfProductsResponse(request.getCorrelationId(), null, e.getMessage()));
         }
     }
 
-    @KafkaListener(topics = "products-total-price-by-id-request", groupId = "product-group",
+    @KafkaListener(topics = "products-total-price-by-id-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void getTotalPriceByIdRequest(ProductPriceByIdRequest request) {
         try {
@@ -151,45 +196,53 @@ public class KafkaEventService {
                 productPriceMap.put(product.getId(), product.getPrice());
             }
 
-            kafkaTemplate.send("products-total-price-by-id-response",
+            sendReply("products-total-price-by-id-response",
                     new ProductPriceByIdResponse(request.getCorrelationId(), null, productPriceMap));
 
         } catch (Exception e) {
-            kafkaTemplate.send("products-total-price-by-id-response",
+            sendReply("products-total-price-by-id-response",
                     new ProductPriceByIdResponse(request.getCorrelationId(), e.getMessage(), null));
         }
     }
 
     @Transactional
-    @KafkaListener(topics = "order-product-unlock-request", groupId = "product-group",
+    @KafkaListener(topics = "order-product-unlock-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void handleOrderProductUnlockRequest(TotalPriceOfProductsRequest request) {
         try {
-            List<Product> products = productRepository.findAllById(request.getProducts().keySet());
-
-            for (Product product : products) {
-                int requestedQuantity = request.getProducts().get(product.getId());
-                product.setAmountLeft(product.getAmountLeft() + requestedQuantity);
-            }
-
-            productRepository.saveAll(products);
-            kafkaTemplate.send("order-product-unlock-response",
+            releaseStock(request);
+            sendReply("order-product-unlock-response",
                     new TotalPriceOfProductsResponse(request.getCorrelationId(), null, null));
 
         } catch (Exception e) {
-            kafkaTemplate.send("order-product-unlock-response",
+            sendReply("order-product-unlock-response",
                     new TotalPriceOfProductsResponse(request.getCorrelationId(), null, e.getMessage()));
             log.error("Error processing order product unlock request", e);
         }
     }
 
-    @KafkaListener(topics = "products-by-id-request", groupId = "product-group",
+    @KafkaListener(topics = "order-stock-confirm-request",
+            containerFactory = "kafkaListenerContainerFactory")
+    public void handleOrderStockConfirmRequest(TotalPriceOfProductsRequest request) {
+        try {
+            String error = stockReservationLedger.confirm(request.getUserId(), request.getProducts())
+                    ? null : "Not enough products in stock.";
+            sendReply("order-stock-confirm-response",
+                    new TotalPriceOfProductsResponse(request.getCorrelationId(), null, error));
+        } catch (Exception e) {
+            sendReply("order-stock-confirm-response",
+                    new TotalPriceOfProductsResponse(request.getCorrelationId(), null, e.getMessage()));
+            log.error("Error confirming stock hold of user {}", request.getUserId(), e);
+        }
+    }
+
+    @KafkaListener(topics = "products-by-id-request",
             containerFactory = "kafkaListenerContainerFactory")
     public void getProductsByIdsRequest(ProductsByIdRequest request) {
         try {
             List<Product> products = productRepository.findAllById(request.getProducts());
             List<ProductOrderDto> productBases = products.stream()
-                    .map(ProductOrderDto::mapToDto)
+                    .map(KafkaEventService::mapToOrderDto)
                     .toList();
 
             ProductsByIdResponse response = new ProductsByIdResponse(
@@ -197,57 +250,88 @@ public class KafkaEventService {
                     null,
                     productBases
             );
-            kafkaTemplate.send("products-by-id-response", response);
+            sendReply("products-by-id-response", response);
         } catch (Exception e) {
             ProductsByIdResponse response = new ProductsByIdResponse(
                     request.getCorrelationId(),
                     e.getMessage(),
                     null
             );
-            kafkaTemplate.send("products-by-id-response", response);
+            sendReply("products-by-id-response", response);
         }
     }
 
-    @KafkaListener(topics = "product-sold-request", groupId = "product-group",
-            containerFactory = "kafkaListenerContainerFactory")
-    public void incrementSoldItems(Map<String, Integer> request) {
-        try {
-            List<Product> products = productRepository.findAllById(request.keySet());
-            for (Product product : products) {
-                product.setOrders(product.getOrders() + request.get(product.getId()));
+    /**
+     * Applies the sold counts of a whole batch as a single bulk write, striped products included, so a
+     * failed batch has written nothing and can be retried. Failures are left to the container's error
+     * handler, which retries the batch and then sends it to {@code product-sold-request.DLT}.
+     */
+    @KafkaListener(topics = "product-sold-request",
+            containerFactory = "batchListenerContainerFactory")
+    public void incrementSoldItems(List<Map<String, Integer>> requests) {
+        Map<String, Integer> sold = new HashMap<>();
+        for (Map<String, Integer> request : requests) {
+            if (request != null) {
+                request.forEach((productId, amount) -> sold.merge(productId, amount, Integer::sum));
             }
-            productRepository.saveAll(products);
-        } catch (Exception e) {
-            log.error("Error processing product sold request", e);
         }
+        productRepository.incrementSoldCounts(sold);
+        catalogCacheInvalidator.productsChanged(sold.keySet());
     }
 
     public CompletableFuture<OrderProductRatedRequest> setOrderProductAsRated(String orderId, String productId) {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<OrderProductRatedRequest> future = new CompletableFuture<>();
-        orderProductAsRatedMap.put(correlationId, future);
-
+        Instant deadline = RequestDeadline.forRequest(Duration.ofSeconds(5));
+        CompletableFuture<OrderProductRatedRequest> future = pendingRequests.register(
+                correlationId, RequestDeadline.remaining(deadline), "Timeout waiting for rating");
+        if (future.isDone()) {
+            return future;
+        }
         try {
             OrderProductRatedRequest request = new OrderProductRatedRequest(correlationId, orderId, productId);
-            kafkaTemplate.send("order-product-rated-request", request);
-            ScheduledExecutorService scheduler = java.util.concurrent.Executors.newScheduledThreadPool(1);
-            scheduler.schedule(() -> {
-                orderProductAsRatedMap.remove(correlationId);
-                future.completeExceptionally(new RuntimeException("Timeout waiting for rating"));
-            }, 5, java.util.concurrent.TimeUnit.SECONDS);
+            RequestDeadline.stamp(deadline, () -> kafkaTemplate.send("order-product-rated-request", orderId, request));
         } catch (Exception e) {
-            orderProductAsRatedMap.remove(correlationId);
-            future.completeExceptionally(e);
+            pendingRequests.completeExceptionally(correlationId, e);
         }
         return future;
     }
 
-    @KafkaListener(topics = "order-product-rated-response", groupId = "product-group",
-            containerFactory = "kafkaListenerContainerFactory")
+    @KafkaListener(topicPartitions = @TopicPartition(topic = "order-product-rated-response", partitions = "${kafka.reply.partition:0}"),
+            containerFactory = "replyListenerContainerFactory")
     public void handleOrderProductRatedResponse(String correlationId) {
-        CompletableFuture<OrderProductRatedRequest> future = orderProductAsRatedMap.remove(correlationId);
-        if (future != null) {
-            future.complete(null);
+        pendingRequests.complete(correlationId, null);
+    }
+
+    private void releaseStock(TotalPriceOfProductsRequest request) {
+        if (request.getUserId() != null) {
+            stockReservationLedger.release(request.getUserId());
+        } else {
+            stockReservationService.release(request.getProducts());
         }
     }
+
+    private void sendReply(String topic, Object response) {
+        Integer partition = replyRouting.currentReplyPartition();
+        RequestDeadline.stamp(RequestDeadline.current(), () -> partition == null
+                ? kafkaTemplate.send(topic, response)
+                : kafkaTemplate.send(topic, partition, null, response));
+    }
+
+    private ProductBase mapToBase(Product product) {
+        return new ProductBase(
+                product.getId(),
+                stripedStockService.availableStock(product),
+                product.getPrice(),
+                product.getName(),
+                product.getImageUrl()
+        );
+    }
+
+    private static ProductOrderDto mapToOrderDto(Product product) {
+        return new ProductOrderDto(
+                product.getId(),
+                product.getName(),
+                product.getImageUrl()
+        );
+    }
 }
@@ -2,7 +2,11 @@ package com.shop.productservice.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.common.contract.FileUploadMessage;
+import com.shop.productservice.configuration.CacheConfig;
 import com.shop.productservice.exception.ProductException;
+import com.shop.productservice.model.ProductCursor;
+import com.shop.productservice.model.ProductSummary;
 import com.shop.productservice.model.dto.*;
 import com.shop.productservice.model.entity.Category;
 import com.shop.productservice.model.entity.Product;
@@ -10,6 +14,9 @@ import com.shop.productservice.repository.CategoryRepository;
 import com.shop.productservice.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -22,26 +29,27 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.*;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ProductService {
 
+    public static final int MAX_SCROLL_SIZE = 100;
+
     private final ProductRepository productRepository;
     private final CategoryService categoryService;
     private final KafkaEventService kafkaEventService;
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final CategoryRepository categoryRepository;
+    private final CatalogCacheInvalidator catalogCacheInvalidator;
+    private final StripedStockService stripedStockService;
 
     public ProductsListInfo getProducts(int page, int size, String sort, String direction,
                                         String search, int minPrice, int maxPrice, List<String> categories, String role) {
-        Page<Product> products = fetchProducts(page, size, sort, direction, search, minPrice, maxPrice, categories, role);
+        Page<ProductSummary> products = fetchProducts(page, size, sort, direction, search, minPrice, maxPrice, categories, role);
         ProductsListInfo response = new ProductsListInfo(
-                products.getContent().stream().map(product -> ProductDto.toDto(product, false)).toList(),
+                products.getContent().stream().map(ProductDto::toDto).toList(),
                 products.getTotalElements()
         );
         log.info(String.valueOf(products.getTotalElements()));
@@ -53,18 +61,66 @@ public class ProductService {
         return response;
     }
 
-    private Page<Product> fetchProducts(int page, int size, String sort, String direction, String search, int minPrice, int maxPrice, List<String> categories, String role) {
+    private Page<ProductSummary> fetchProducts(int page, int size, String sort, String direction, String search, int minPrice, int maxPrice, List<String> categories, String role) {
         Sort.Direction direct = direction.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
         boolean isAdmin = role.equalsIgnoreCase("ROLE_ADMIN");
         Sort sortObj = Sort.by(direct, sort);
         Pageable pageable = PageRequest.of(page, size, sortObj);
-        Page<Product> products;
-        if (categories == null || categories.isEmpty()) {
-            products = productRepository.findByNameMatchesRegexIgnoreCase(".*" + search + ".*", !isAdmin, minPrice, maxPrice, pageable);
-        } else {
-            products = productRepository.findByNameMatchesRegexIgnoreCaseAndCategoriesIn(".*" + search + ".*", categories, !isAdmin, minPrice, maxPrice, pageable);
+        return productRepository.searchProducts(search, categories, !isAdmin, minPrice, maxPrice, pageable);
+    }
+
+    /**
+     * Search page with category counts and price facets from a single aggregation. Results are cached
+     * per query, so popular searches stay in memory until they expire or the catalog changes.
+     */
+    @Cacheable(CacheConfig.PRODUCT_FACETS)
+    public ProductsFacetInfo searchProducts(int page, int size, String sort, String direction, String search,
+                                            int minPrice, int maxPrice, List<String> categories, String role) {
+        Sort.Direction direct = direction.equalsIgnoreCase("asc") ? Sort.Direction.ASC : Sort.Direction.DESC;
+        boolean isAdmin = role.equalsIgnoreCase("ROLE_ADMIN");
+        Pageable pageable = PageRequest.of(page, size, Sort.by(direct, sort));
+        return ProductsFacetInfo.toDto(
+                productRepository.searchWithFacets(search, categories, !isAdmin, minPrice, maxPrice, pageable));
+    }
+
+    /**
+     * Keyset variant of {@link #getProducts}. Without a cursor the scan starts with the given ordering,
+     * with one it continues in the cursor's ordering. The total is only counted when asked for.
+     */
+    public ProductsScrollInfo scrollProducts(String cursor, int size, String sort, String direction, String search,
+                                             int minPrice, int maxPrice, List<String> categories,
+                                             boolean withTotal, String role) {
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new ProductException("Page size must be between 1 and " + MAX_SCROLL_SIZE + ".");
+        }
+        boolean onlyAvailable = !role.equalsIgnoreCase("ROLE_ADMIN");
+        ProductCursor position = cursor == null || cursor.isBlank()
+                ? ProductCursor.start(sort, direction)
+                : ProductCursor.decode(cursor);
+        List<ProductSummary> products = productRepository.findProductsAfter(search, categories, onlyAvailable,
+                minPrice, maxPrice, position, size + 1);
+        String nextCursor = null;
+        if (products.size() > size) {
+            products = products.subList(0, size);
+            nextCursor = position.after(products.get(size - 1)).encode();
+        }
+        Long total = withTotal
+                ? productRepository.countProducts(search, categories, onlyAvailable, minPrice, maxPrice)
+                : null;
+        return new ProductsScrollInfo(products.stream().map(ProductDto::toDto).toList(),
+                nextCursor, total);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateProducts() {
+        int updated = productRepository.backfillNameGrams();
+        if (updated > 0) {
+            log.info("Indexed name grams of {} products", updated);
+        }
+        int migrated = productRepository.migrateRatings();
+        if (migrated > 0) {
+            log.info("Migrated ratings of {} products to rating counters", migrated);
         }
-        return products;
     }
 
     public BigDecimal getMaxPrice() {
@@ -75,47 +131,45 @@ public class ProductService {
         if (!role.equalsIgnoreCase("ROLE_ADMIN")) throw new ProductException("User is not an admin.");
         Product product = productRepository.findById(id).orElseThrow(() -> new ProductException("Product not found."));
         product.setAvailable(available.isAvailable());
-        return ProductDto.minEdited(productRepository.save(product));
+        ProductDto saved = ProductDto.minEdited(productRepository.save(product));
+        catalogCacheInvalidator.catalogChanged();
+        return saved;
     }
 
-    @Transactional(rollbackFor = ProductException.class)
+    /**
+     * Adds the rating with a single {@code $inc}, so concurrent ratings never overwrite each other. The
+     * order is marked as rated asynchronously, a failed confirmation is only logged.
+     */
     public void rateProduct(RateProductDto rateProductDto) {
-        Product product = productRepository.findById(rateProductDto.getProductId())
-                .orElseThrow(() -> new ProductException("Product not found."));
-
-        Map<Integer, Double> ratings = product.getRatings();
-        int totalRatings = ratings.isEmpty() ? 0 : Collections.max(ratings.keySet());
-        double currentAvg = ratings.getOrDefault(totalRatings, 0.0);
-
-        double finalRating = ((totalRatings * currentAvg) + (double) rateProductDto.getRating()) / (totalRatings + 1);
-        finalRating = Math.round(finalRating * 100.0) / 100.0;
-
-        double finalRating1 = finalRating;
-        product.getRatings().putIfAbsent(totalRatings + 1, finalRating1);
-        product.getRatings().remove(totalRatings);
-
-        try {
-            kafkaEventService
-                    .setOrderProductAsRated(rateProductDto.getOrderId(), rateProductDto.getProductId())
-                    .get(5, TimeUnit.SECONDS);
-        } catch (InterruptedException | ExecutionException | TimeoutException e) {
-            throw new ProductException("Error while rating product.");
+        if (productRepository.incrementRating(rateProductDto.getProductId(), rateProductDto.getRating()) == 0) {
+            throw new ProductException("Product not found.");
         }
-        productRepository.save(product);
+        catalogCacheInvalidator.productsChanged(List.of(rateProductDto.getProductId()));
+        kafkaEventService.setOrderProductAsRated(rateProductDto.getOrderId(), rateProductDto.getProductId())
+                .whenComplete((confirmation, e) -> {
+                    if (e != null) {
+                        log.warn("Could not mark product {} of order {} as rated", rateProductDto.getProductId(),
+                                rateProductDto.getOrderId(), e);
+                    }
+                });
     }
 
+    @Cacheable(CacheConfig.FEATURED_PRODUCTS)
     public Map<String, Object> getFeaturedProducts() {
-        List<Product> products = productRepository.findTop9ByAvailableTrueOrderByOrdersDesc();
+        List<ProductSummary> products = productRepository.findTop9ByAvailableTrueOrderByOrdersDesc();
         log.info(String.valueOf(products.size()));
-        return Map.of("products", products.stream().map(product -> ProductDto.toDto(product, false)).toList());
+        return Map.of("products", products.stream().map(ProductDto::toDto).toList());
     }
 
+    @Cacheable(CacheConfig.PRODUCT_DETAILS)
     public Map<String, Object> getDetails(String id) {
         Product product = productRepository.findByIdAndAvailableTrue(id).orElseThrow(() -> new ProductException("Product not found."));
         Collection<List<Category>> categories = Collections.singleton(product.getCategories());
-        List<Product> relatedProducts = productRepository.findTop4ByCategoriesInAndIdNotAndAvailableTrue(categories, id);
+        List<ProductSummary> relatedProducts = productRepository.findTop4ByCategoriesInAndIdNotAndAvailableTrue(categories, id);
+        ProductDto details = ProductDto.toDto(product, true);
+        details.setQuantity(stripedStockService.availableStock(product));
         return Map.of(
-                "product", ProductDto.toDto(product, true),
+                "product", details,
                 "relatedProducts", relatedProducts.stream().map(ProductDto::minDto).toList());
     }
 
@@ -136,7 +190,9 @@ public class ProductService {
         if (productDto.getQuantity() >= 0) {
             product.setAmountLeft(productDto.getQuantity());
         }
-        return ProductDto.minEdited(productRepository.save(product));
+        ProductDto saved = ProductDto.minEdited(productRepository.save(product));
+        catalogCacheInvalidator.catalogChanged();
+        return saved;
     }
 
     @Transactional
@@ -156,7 +212,9 @@ public class ProductService {
 
         List<Category> categories = categoryRepository.findByNameIn(product.getCategories());
 
-        return ProductDto.minDto(productRepository.save(ProductDto.toEntity(product, categories)));
+        ProductDto saved = ProductDto.minDto(productRepository.save(ProductDto.toEntity(product, categories)));
+        catalogCacheInvalidator.catalogChanged();
+        return saved;
     }
 
     public String saveImage(MultipartFile image) {
@@ -190,6 +248,8 @@ public class ProductService {
         if (categoryOptional.isPresent()) {
             throw new ProductException("Category already exists.");
         }
-        return new CategoryDto(categoryRepository.save(new Category(category.getName())).getName());
+        CategoryDto saved = new CategoryDto(categoryRepository.save(new Category(category.getName())).getName());
+        catalogCacheInvalidator.catalogChanged();
+        return saved;
     }
 }
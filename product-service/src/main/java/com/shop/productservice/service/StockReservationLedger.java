@@ -0,0 +1,199 @@
+package com.shop.productservice.service;
+
+import com.shop.productservice.exception.ProductException;
+import com.shop.productservice.model.dto.StockLevelDto;
+import com.shop.productservice.model.entity.Product;
+import com.shop.productservice.model.entity.StockReservation;
+import com.shop.productservice.repository.ProductRepository;
+import com.shop.productservice.repository.StockReservationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-boxed stock holds taken when a user opens the order summary, at most one per user.
+ * <p>
+ * Each hold is stored in {@code stock_reservations} and released by a timer of the instance that took
+ * it at its expiry. A periodic sweep on every instance releases overdue holds whose timer is gone,
+ * because their instance stopped. Holds are removed with a conditional {@code findAndRemove} before
+ * their stock is touched, which makes expiry, release and confirmation safe to race each other and
+ * across instances.
+ * <p>
+ * A new hold first claims the user's document with an insert while still {@code pending}, then
+ * reserves its stock and clears the flag. A pending hold removed in the meantime releases nothing,
+ * the claiming call notices the lost claim and releases its own quantities instead.
+ */
+@Service
+@Slf4j
+public class StockReservationLedger {
+
+    private static final Duration EXPIRY_RETRY = Duration.ofSeconds(30);
+    private static final int SWEEP_BATCH = 500;
+
+    private final StockReservationService stockReservationService;
+    private final StripedStockService stripedStockService;
+    private final StockReservationRepository reservationRepository;
+    private final ProductRepository productRepository;
+    private final MongoTemplate mongoTemplate;
+    private final Duration holdTtl;
+    private final Duration sweepGrace;
+    private final ScheduledExecutorService expiryTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "stock-hold-expiry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public StockReservationLedger(StockReservationService stockReservationService,
+                                  StripedStockService stripedStockService,
+                                  StockReservationRepository reservationRepository,
+                                  ProductRepository productRepository,
+                                  MongoTemplate mongoTemplate,
+                                  @Value("${stock.reservation.ttl:10m}") Duration holdTtl,
+                                  @Value("${stock.reservation.sweep-grace:30s}") Duration sweepGrace) {
+        this.stockReservationService = stockReservationService;
+        this.stripedStockService = stripedStockService;
+        this.reservationRepository = reservationRepository;
+        this.productRepository = productRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.holdTtl = holdTtl;
+        this.sweepGrace = sweepGrace;
+    }
+
+    public boolean hold(String userId, Map<String, Integer> products) {
+        release(userId);
+        Instant expiresAt = Instant.now().plus(holdTtl).truncatedTo(ChronoUnit.MILLIS);
+        try {
+            reservationRepository.insert(new StockReservation(userId, products, expiresAt, true));
+        } catch (DuplicateKeyException e) {
+            log.warn("Stock hold of user {} is already being taken by another request", userId);
+            return false;
+        }
+        boolean reserved;
+        try {
+            reserved = stockReservationService.reserve(products);
+        } catch (RuntimeException e) {
+            mongoTemplate.remove(pendingHold(userId), StockReservation.class);
+            throw e;
+        }
+        if (!reserved) {
+            mongoTemplate.remove(pendingHold(userId), StockReservation.class);
+            return false;
+        }
+        if (mongoTemplate.updateFirst(pendingHold(userId), Update.update("pending", false), StockReservation.class)
+                .getModifiedCount() == 0) {
+            log.warn("Stock hold of user {} was released while being taken, returning its stock", userId);
+            stockReservationService.release(products);
+            return false;
+        }
+        schedule(userId, expiresAt);
+        return true;
+    }
+
+    public void release(String userId) {
+        releaseRemoved(mongoTemplate.findAndRemove(byUser(userId), StockReservation.class));
+    }
+
+    /**
+     * Turns the hold into a permanent reservation for a placed order. If the hold expired or no
+     * longer matches the order, the ordered quantities are reserved again. Returns {@code false} when
+     * that fails, so the order has no stock behind it.
+     */
+    public boolean confirm(String userId, Map<String, Integer> products) {
+        StockReservation hold = mongoTemplate.findAndRemove(byUser(userId), StockReservation.class);
+        if (hold != null && !hold.isPending() && hold.getProducts().equals(products)) {
+            return true;
+        }
+        releaseRemoved(hold);
+        if (!stockReservationService.reserve(products)) {
+            log.warn("Order of user {} was placed after its stock hold lapsed and stock ran out", userId);
+            return false;
+        }
+        return true;
+    }
+
+    public StockLevelDto getStockLevel(String productId) {
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductException("Product not found."));
+        Query holding = Query.query(Criteria.where("products." + productId).exists(true).and("pending").ne(true));
+        holding.fields().include("products." + productId);
+        int held = mongoTemplate.find(holding, StockReservation.class).stream()
+                .mapToInt(hold -> hold.getProducts().get(productId))
+                .sum();
+        return new StockLevelDto(productId, stripedStockService.availableStock(product), held);
+    }
+
+    void expire(String userId) {
+        Query expired = Query.query(Criteria.where("userId").is(userId).and("expiresAt").lte(Instant.now()));
+        StockReservation hold = mongoTemplate.findAndRemove(expired, StockReservation.class);
+        if (hold != null) {
+            releaseRemoved(hold);
+            log.info("Released expired stock hold of user {}", userId);
+        }
+    }
+
+    /**
+     * Releases holds that outlived their expiry by {@code stock.reservation.sweep-grace}, which only
+     * happens when the instance whose timer should have released them is gone.
+     */
+    @Scheduled(fixedDelayString = "${stock.reservation.sweep-interval-ms:60000}")
+    public void sweepExpiredHolds() {
+        Query overdue = Query.query(Criteria.where("expiresAt").lte(Instant.now().minus(sweepGrace)))
+                .with(Sort.by("expiresAt"))
+                .limit(SWEEP_BATCH);
+        overdue.fields().include("userId");
+        for (StockReservation hold : mongoTemplate.find(overdue, StockReservation.class)) {
+            try {
+                expire(hold.getUserId());
+            } catch (Exception e) {
+                log.error("Error sweeping stock hold of user {}", hold.getUserId(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiryTimer.shutdownNow();
+    }
+
+    private void schedule(String userId, Instant expiresAt) {
+        long delay = Math.max(0, Duration.between(Instant.now(), expiresAt).toMillis());
+        expiryTimer.schedule(() -> {
+            try {
+                expire(userId);
+            } catch (Exception e) {
+                log.error("Error releasing stock hold of user {}, retrying", userId, e);
+                schedule(userId, Instant.now().plus(EXPIRY_RETRY));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void releaseRemoved(StockReservation hold) {
+        if (hold != null && !hold.isPending()) {
+            stockReservationService.release(hold.getProducts());
+        }
+    }
+
+    private static Query pendingHold(String userId) {
+        return byUser(userId).addCriteria(Criteria.where("pending").is(true));
+    }
+
+    private static Query byUser(String userId) {
+        return Query.query(Criteria.where("userId").is(userId));
+    }
+}
@@ -0,0 +1,112 @@
+package com.shop.productservice.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.shop.productservice.model.entity.Product;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reserves stock with conditional {@code $inc} updates.
+ * <p>
+ * Every product is decremented by an update filtered on {@code _id} and {@code amountLeft >= quantity},
+ * so a product that is unknown or has too little stock matches nothing and leaves the collection
+ * untouched. The first such miss stops the reservation and the decrements applied before it are
+ * released again, so a cart is either reserved completely or not at all. Striped products are
+ * reserved through {@link StripedStockService} first. Every reservation and release that changes stock
+ * is announced through {@link CatalogCacheInvalidator}, so caches holding {@code amountLeft} drop it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockReservationService {
+
+    private final MongoTemplate mongoTemplate;
+    private final StripedStockService stripedStockService;
+    private final CatalogCacheInvalidator catalogCacheInvalidator;
+
+    public boolean reserve(Map<String, Integer> quantities) {
+        if (!reserveAll(quantities)) {
+            return false;
+        }
+        catalogCacheInvalidator.productsChanged(quantities.keySet());
+        return true;
+    }
+
+    public void release(Map<String, Integer> quantities) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            if (stripedStockService.isStriped(entry.getKey())) {
+                stripedStockService.release(entry.getKey(), entry.getValue());
+            } else {
+                entries.add(entry);
+            }
+        }
+        release(entries);
+        catalogCacheInvalidator.productsChanged(quantities.keySet());
+    }
+
+    private boolean reserveAll(Map<String, Integer> quantities) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>();
+        List<Map.Entry<String, Integer>> striped = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            if (!stripedStockService.isStriped(entry.getKey())) {
+                entries.add(entry);
+            } else if (stripedStockService.reserve(entry.getKey(), entry.getValue())) {
+                striped.add(entry);
+            } else {
+                releaseStriped(striped);
+                return false;
+            }
+        }
+        if (entries.isEmpty()) {
+            return true;
+        }
+        int applied = 0;
+        try {
+            for (Map.Entry<String, Integer> entry : entries) {
+                Query query = Query.query(Criteria.where("id").is(entry.getKey())
+                        .and("amountLeft").gte(entry.getValue()));
+                UpdateResult result = mongoTemplate.updateFirst(query,
+                        new Update().inc("amountLeft", -entry.getValue()), Product.class);
+                if (result.getMatchedCount() == 0) {
+                    log.debug("Not enough stock of {}, releasing {} reserved products", entry.getKey(), applied);
+                    release(entries.subList(0, applied));
+                    releaseStriped(striped);
+                    return false;
+                }
+                applied++;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            release(entries.subList(0, applied));
+            releaseStriped(striped);
+            throw e;
+        }
+    }
+
+    private void releaseStriped(List<Map.Entry<String, Integer>> entries) {
+        entries.forEach(entry -> stripedStockService.release(entry.getKey(), entry.getValue()));
+    }
+
+    private void release(List<Map.Entry<String, Integer>> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Map.Entry<String, Integer> entry : entries) {
+            bulk.updateOne(Query.query(Criteria.where("id").is(entry.getKey())),
+                    new Update().inc("amountLeft", entry.getValue()));
+        }
+        bulk.execute();
+    }
+}
@@ -0,0 +1,191 @@
+package com.shop.productservice.service;
+
+import com.shop.productservice.model.entity.Product;
+import com.shop.productservice.model.entity.StockShard;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.ComparisonOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Striped stock counters for hot products ({@code stock.striping.products}).
+ * <p>
+ * Part of a product's free stock is handed out as budgets to {@code stock.striping.shards} shard
+ * documents, so concurrent reservations update different documents instead of queueing on the
+ * product. The product keeps {@code amountLeft} as the total and records the handed out part in
+ * {@code stripedStock}; shards track their remaining budget and the stock consumed from it, which
+ * keeps {@code stripedStock} equal to the sum of budget and consumed without touching the product.
+ * A periodic consolidation folds consumed stock back into the product and hands
+ * out fresh budgets. Every transfer takes from a shard or the product first, so an interrupted
+ * consolidation can strand stock but never oversell it.
+ * <p>
+ * A reservation that neither a shard nor the product can serve drains the shards inline at most once
+ * per {@code stock.striping.inline-drain-interval} and product, so a sold out product does not
+ * collapse its shards on every failed reservation.
+ */
+@Service
+@Slf4j
+public class StripedStockService {
+
+    private final MongoTemplate mongoTemplate;
+    private final Set<String> stripedProducts;
+    private final int shards;
+    private final long inlineDrainIntervalNanos;
+    private final Map<String, Long> lastInlineDrain = new ConcurrentHashMap<>();
+
+    public StripedStockService(MongoTemplate mongoTemplate,
+                               @Value("${stock.striping.products:}") Set<String> stripedProducts,
+                               @Value("${stock.striping.shards:8}") int shards,
+                               @Value("${stock.striping.inline-drain-interval:1s}") Duration inlineDrainInterval) {
+        this.mongoTemplate = mongoTemplate;
+        this.stripedProducts = stripedProducts;
+        this.shards = shards;
+        this.inlineDrainIntervalNanos = inlineDrainInterval.toNanos();
+    }
+
+    public boolean isStriped(String productId) {
+        return stripedProducts.contains(productId);
+    }
+
+    public boolean reserve(String productId, int quantity) {
+        int start = ThreadLocalRandom.current().nextInt(shards);
+        for (int i = 0; i < shards; i++) {
+            if (takeFromShard(shardId(productId, (start + i) % shards), quantity)) {
+                return true;
+            }
+        }
+        if (takeFromProduct(productId, quantity)) {
+            return true;
+        }
+        if (!claimInlineDrain(productId)) {
+            return false;
+        }
+        drain(productId);
+        return takeFromProduct(productId, quantity);
+    }
+
+    public void release(String productId, int quantity) {
+        updateRandomShard(productId, new Update().inc("budget", quantity).inc("consumed", -quantity));
+    }
+
+    public int availableStock(Product product) {
+        if (product.getStripedStock() == 0) {
+            return product.getAmountLeft();
+        }
+        int budgets = mongoTemplate.find(byProduct(product.getId()), StockShard.class).stream()
+                .mapToInt(StockShard::getBudget)
+                .sum();
+        return product.getAmountLeft() - product.getStripedStock() + budgets;
+    }
+
+    @Scheduled(fixedDelayString = "${stock.striping.consolidate-interval-ms:5000}")
+    public void consolidate() {
+        for (String productId : stripedProducts) {
+            try {
+                drain(productId);
+                distribute(productId);
+            } catch (Exception e) {
+                log.error("Error consolidating stock shards of product {}", productId, e);
+            }
+        }
+        Query unlisted = Query.query(Criteria.where("stripedStock").gt(0).and("id").nin(stripedProducts));
+        unlisted.fields().include("id");
+        mongoTemplate.find(unlisted, Product.class).forEach(product -> drain(product.getId()));
+    }
+
+    void drain(String productId) {
+        for (StockShard shard : mongoTemplate.find(byProduct(productId), StockShard.class)) {
+            StockShard drained = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("id").is(shard.getId())),
+                    new Update().set("budget", 0).set("consumed", 0).set("sold", 0),
+                    StockShard.class);
+            if (drained == null) {
+                continue;
+            }
+            mongoTemplate.updateFirst(byId(productId), new Update()
+                            .inc("amountLeft", -drained.getConsumed())
+                            .inc("stripedStock", -(drained.getBudget() + drained.getConsumed()))
+                            .inc("orders", drained.getSold()),
+                    Product.class);
+        }
+    }
+
+    void distribute(String productId) {
+        Product product = mongoTemplate.findById(productId, Product.class);
+        if (product == null) {
+            return;
+        }
+        int share = (product.getAmountLeft() - product.getStripedStock()) / shards;
+        if (share == 0 || !allocate(productId, share * shards)) {
+            return;
+        }
+        for (int i = 0; i < shards; i++) {
+            mongoTemplate.upsert(Query.query(Criteria.where("id").is(shardId(productId, i))),
+                    new Update().inc("budget", share).setOnInsert("productId", productId),
+                    StockShard.class);
+        }
+    }
+
+    private boolean claimInlineDrain(String productId) {
+        long now = System.nanoTime();
+        Long last = lastInlineDrain.get(productId);
+        if (last == null) {
+            return lastInlineDrain.putIfAbsent(productId, now) == null;
+        }
+        return now - last >= inlineDrainIntervalNanos && lastInlineDrain.replace(productId, last, now);
+    }
+
+    private boolean takeFromShard(String shardId, int quantity) {
+        Query query = Query.query(Criteria.where("id").is(shardId).and("budget").gte(quantity));
+        Update update = new Update().inc("budget", -quantity).inc("consumed", quantity);
+        return mongoTemplate.updateFirst(query, update, StockShard.class).getModifiedCount() > 0;
+    }
+
+    private boolean takeFromProduct(String productId, int quantity) {
+        return mongoTemplate.updateFirst(withFreeStock(productId, quantity),
+                new Update().inc("amountLeft", -quantity), Product.class).getModifiedCount() > 0;
+    }
+
+    private boolean allocate(String productId, int quantity) {
+        return mongoTemplate.updateFirst(withFreeStock(productId, quantity),
+                new Update().inc("stripedStock", quantity), Product.class).getModifiedCount() > 0;
+    }
+
+    private void updateRandomShard(String productId, Update update) {
+        String shardId = shardId(productId, ThreadLocalRandom.current().nextInt(shards));
+        mongoTemplate.upsert(Query.query(Criteria.where("id").is(shardId)),
+                update.setOnInsert("productId", productId), StockShard.class);
+    }
+
+    static Query withFreeStock(String productId, int quantity) {
+        return byId(productId).addCriteria(Criteria.expr(ComparisonOperators.valueOf(
+                        ArithmeticOperators.valueOf("amountLeft")
+                                .subtract(ConditionalOperators.ifNull("stripedStock").then(0)))
+                .greaterThanEqualToValue(quantity)));
+    }
+
+    private static Query byId(String productId) {
+        return Query.query(Criteria.where("id").is(productId));
+    }
+
+    private static Query byProduct(String productId) {
+        return Query.query(Criteria.where("productId").is(productId));
+    }
+
+    private static String shardId(String productId, int shard) {
+        return productId + ":" + shard;
+    }
+}
@@ -1,5 +1,6 @@
 package com.shop.productservice;
 
+import com.shop.common.contract.FileUploadMessage;
 import com.shop.productservice.exception.ProductException;
 import com.shop.productservice.model.dto.*;
 import com.shop.productservice.model.entity.Category;
@@ -8,6 +9,7 @@ import com.shop.productservice.repository.CategoryRepository;
 import com.shop.productservice.repository.ProductRepository;
 import com.shop.productservice.service.KafkaEventService;
 import com.shop.productservice.service.ProductService;
+import com.shop.productservice.service.StockReservationService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -51,6 +53,9 @@ public class ProductServiceIntegrationTest {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private StockReservationService stockReservationService;
+
     @MockitoBean
     private KafkaEventService kafkaEventService;
 
@@ -84,7 +89,8 @@ public class ProductServiceIntegrationTest {
         Product mainProduct = new Product();
         mainProduct.setName("Main Product");
         mainProduct.setAvailable(true);
-        mainProduct.setRatings(Map.of(4,3.5));
+        mainProduct.setRatingCount(4);
+        mainProduct.setRatingSum(14);
         mainProduct.setCategories(List.of(category));
         productRepository.save(mainProduct);
 
@@ -108,7 +114,8 @@ public class ProductServiceIntegrationTest {
         Product product = new Product();
         product.setName("Test Product");
         product.setAvailable(false);
-        product.setRatings(Map.of(4,3.5));
+        product.setRatingCount(4);
+        product.setRatingSum(14);
         product = productRepository.save(product);
 
         ProductAvailability availability = new ProductAvailability();
@@ -126,7 +133,6 @@ public class ProductServiceIntegrationTest {
     void whenRateProduct_thenRatingIsUpdated() {
         Product product = new Product();
         product.setName("Test Product");
-        product.setRatings(new HashMap<>());
         product = productRepository.save(product);
 
         RateProductDto rateDto = new RateProductDto();
@@ -141,15 +147,15 @@ public class ProductServiceIntegrationTest {
 
         Optional<Product> updated = productRepository.findById(product.getId());
         assertTrue(updated.isPresent());
-        assertEquals(5.0, updated.get().getRatings().get(1));
+        assertEquals(5, updated.get().getRatingSum());
+        assertEquals(1, updated.get().getRatingCount());
         verify(kafkaEventService).setOrderProductAsRated("order-123", product.getId());
     }
 
     @Test
-    void whenRateProductWithKafkaTimeout_thenThrowException() {
+    void whenRateProductConfirmationTimesOut_thenRatingIsKept() {
         Product product = new Product();
         product.setName("Test Product");
-        product.setRatings(new HashMap<>());
         product = productRepository.save(product);
 
         RateProductDto rateDto = new RateProductDto();
@@ -160,7 +166,9 @@ public class ProductServiceIntegrationTest {
         when(kafkaEventService.setOrderProductAsRated(any(), any()))
                 .thenReturn(CompletableFuture.failedFuture(new TimeoutException()));
 
-        assertThrows(ProductException.class, () -> productService.rateProduct(rateDto));
+        productService.rateProduct(rateDto);
+
+        assertEquals(1, productRepository.findById(product.getId()).orElseThrow().getRatingCount());
     }
 
     @Test
@@ -175,7 +183,8 @@ public class ProductServiceIntegrationTest {
             product.setPrice(BigDecimal.valueOf(100 * (i + 1)));
             product.setAvailable(true);
             product.setAmountLeft(i);
-            product.setRatings(Map.of(1, 1.0 + i));
+            product.setRatingCount(1);
+            product.setRatingSum(1 + i);
             product.setCategories(i % 2 == 0 ? List.of(electronics) : List.of(books));
             productRepository.save(product);
         }
@@ -196,7 +205,8 @@ public class ProductServiceIntegrationTest {
         for (int i = 0; i < 10; i++) {
             Product product = new Product();
             product.setName("Product " + i);
-            product.setRatings(Map.of(4,3.5));
+            product.setRatingCount(4);
+            product.setRatingSum(14);
             product.setAvailable(true);
             product.setCategories(List.of(new Category("Electronics")));
             product.setOrders(i);
@@ -312,11 +322,13 @@ public class ProductServiceIntegrationTest {
         available.setName("Available");
         available.setPrice(BigDecimal.valueOf(100));
         available.setCategories(List.of(new Category("Electronics")));
-        available.setRatings(Map.of(4, 2.8));
+        available.setRatingCount(4);
+        available.setRatingSum(11);
         available.setAmountLeft(4);
         available.setAvailable(true);
         Product unavailable = new Product();
-        unavailable.setRatings(Map.of(4, 3.8));
+        unavailable.setRatingCount(4);
+        unavailable.setRatingSum(15);
         unavailable.setCategories(List.of(new Category("Electronics")));
         unavailable.setName("Unavailable");
         unavailable.setPrice(BigDecimal.valueOf(100));
@@ -354,4 +366,51 @@ public class ProductServiceIntegrationTest {
 
         assertEquals(500.0, maxPrice.doubleValue());
     }
+
+    @Test
+    void whenReserveStock_thenAmountsAreDecremented() {
+        Product first = productWithStock(5);
+        Product second = productWithStock(3);
+
+        assertTrue(stockReservationService.reserve(Map.of(first.getId(), 2, second.getId(), 3)));
+
+        assertEquals(3, productRepository.findById(first.getId()).orElseThrow().getAmountLeft());
+        assertEquals(0, productRepository.findById(second.getId()).orElseThrow().getAmountLeft());
+    }
+
+    @Test
+    void whenReserveMoreThanInStock_thenAppliedDecrementsAreRolledBack() {
+        Product first = productWithStock(5);
+        Product second = productWithStock(1);
+        Map<String, Integer> cart = new LinkedHashMap<>();
+        cart.put(first.getId(), 2);
+        cart.put(second.getId(), 3);
+
+        assertFalse(stockReservationService.reserve(cart));
+
+        assertEquals(5, productRepository.findById(first.getId()).orElseThrow().getAmountLeft());
+        assertEquals(1, productRepository.findById(second.getId()).orElseThrow().getAmountLeft());
+    }
+
+    @Test
+    void whenReserveUnknownProduct_thenNothingIsReservedOrCreated() {
+        Product product = productWithStock(5);
+        Map<String, Integer> cart = new LinkedHashMap<>();
+        cart.put(product.getId(), 2);
+        cart.put("000000000000000000000000", 1);
+
+        assertFalse(stockReservationService.reserve(cart));
+
+        assertEquals(5, productRepository.findById(product.getId()).orElseThrow().getAmountLeft());
+        assertFalse(productRepository.existsById("000000000000000000000000"));
+        assertEquals(1, productRepository.count());
+    }
+
+    private Product productWithStock(int amountLeft) {
+        Product product = new Product();
+        product.setName("Stocked");
+        product.setAmountLeft(amountLeft);
+        product.setAvailable(true);
+        return productRepository.save(product);
+    }
 }
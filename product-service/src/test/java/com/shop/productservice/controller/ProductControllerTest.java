@@ -3,6 +3,7 @@ package com.shop.productservice.controller;
 import com.shop.productservice.model.dto.*;
 import com.shop.productservice.service.CategoryService;
 import com.shop.productservice.service.ProductService;
+import com.shop.productservice.service.StockReservationLedger;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -28,6 +29,9 @@ class ProductControllerTest {
     @Mock
     private CategoryService categoryService;
 
+    @Mock
+    private StockReservationLedger stockReservationLedger;
+
     @Mock
     private MultipartFile multipartFile;
 
@@ -47,6 +51,19 @@ class ProductControllerTest {
         assertEquals(expectedResponse, response.getBody());
     }
 
+    @Test
+    void scrollProducts_ShouldReturnPageWithCursor() {
+        ProductsScrollInfo expectedResponse = new ProductsScrollInfo(List.of(), "next", null);
+        when(productService.scrollProducts("cursor", 6, "price", "asc", "", 0, 100, List.of(), false, "ROLE_USER"))
+                .thenReturn(expectedResponse);
+
+        ResponseEntity<?> response = productController.scrollProducts("ROLE_USER", "cursor", 6, "price", "asc",
+                "", 0, 100, List.of(), false);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(expectedResponse, response.getBody());
+    }
+
     @Test
     void getCategories_ShouldReturnCategories() {
         List<CategoryDto> expectedCategories = List.of(new CategoryDto("Category1"));
@@ -58,6 +75,17 @@ class ProductControllerTest {
         assertEquals(expectedCategories, response.getBody());
     }
 
+    @Test
+    void getStockLevel_ShouldReturnHeldAndAvailableQuantity() {
+        StockLevelDto expected = new StockLevelDto("1", 8, 2);
+        when(stockReservationLedger.getStockLevel("1")).thenReturn(expected);
+
+        ResponseEntity<?> response = productController.getStockLevel("1");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(expected, response.getBody());
+    }
+
     @Test
     void getFeaturedProducts_ShouldReturnFeaturedProducts() {
         Map<String, Object> expectedProducts = Map.of("products", List.of());
@@ -5,12 +5,21 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.core.MethodParameter;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authorization.AuthorizationDeniedException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.validation.method.ParameterValidationResult;
+import org.springframework.web.method.annotation.HandlerMethodValidationException;
+
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class GlobalExceptionHandlerTest {
@@ -56,6 +65,23 @@ class GlobalExceptionHandlerTest {
         assertEquals("Unauthorized", response.getBody().getMessage());
     }
 
+    @Test
+    void handleMethodValidationException_ShouldReturnBadRequestWithParameterErrors() {
+        MethodParameter parameter = mock(MethodParameter.class);
+        when(parameter.getParameterName()).thenReturn("size");
+        ParameterValidationResult result = mock(ParameterValidationResult.class);
+        when(result.getMethodParameter()).thenReturn(parameter);
+        when(result.getResolvableErrors()).thenReturn(
+                List.of(new DefaultMessageSourceResolvable(null, null, "must be greater than or equal to 1")));
+        HandlerMethodValidationException exception = mock(HandlerMethodValidationException.class);
+        when(exception.getParameterValidationResults()).thenReturn(List.of(result));
+
+        ResponseEntity<ErrorResponse> response = globalExceptionHandler.handleMethodValidationException(exception);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(Map.of("size", "must be greater than or equal to 1"), response.getBody().getDetails());
+    }
+
     @Test
     void handleRuntimeException_ShouldReturnInternalServerError() {
         RuntimeException exception = new RuntimeException("Runtime error");
@@ -0,0 +1,179 @@
+package com.shop.productservice.repository;
+
+import com.shop.productservice.model.ProductCursor;
+import com.shop.productservice.model.ProductFacets;
+import com.shop.productservice.model.ProductSummary;
+import com.shop.productservice.model.entity.Product;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ExecutableFindOperation;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.math.BigDecimal;
+
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ProductRepositoryCustomImplTest {
+
+    @Test
+    void searchCriteria_ShouldRequireAllTrigramsAndLiteralSubstring() {
+        Document query = ProductRepositoryCustomImpl.searchCriteria("Ru.n", null, false, 0, 100).getCriteriaObject();
+
+        assertEquals(new Document("$all", List.of("ru.", "u.n")), query.get("nameGrams"));
+        Pattern name = (Pattern) query.get("name");
+        assertTrue(name.matcher("Trail RU.N shoes").find());
+        assertFalse(name.matcher("Running shoes").find());
+        assertFalse(query.containsKey("categories.name"));
+    }
+
+    @Test
+    void searchCriteria_ShouldUseBigram_WhenSearchHasTwoCharacters() {
+        Document query = ProductRepositoryCustomImpl.searchCriteria("Ba", List.of("Boxing"), true, 0, 100)
+                .getCriteriaObject();
+
+        assertEquals(new Document("$all", List.of("ba")), query.get("nameGrams"));
+        assertEquals(new Document("$in", List.of("Boxing")), query.get("categories.name"));
+        assertEquals(new Document("$in", List.of(true, true)), query.get("available"));
+    }
+
+    @Test
+    void searchCriteria_ShouldSkipNameFilter_WhenSearchEmpty() {
+        Document query = ProductRepositoryCustomImpl.searchCriteria(" ", List.of(), false, 10, 20).getCriteriaObject();
+
+        assertFalse(query.containsKey("nameGrams"));
+        assertFalse(query.containsKey("name"));
+        assertEquals(new Document("$gte", 10).append("$lte", 20), query.get("price"));
+    }
+
+    @Test
+    void searchCriteria_ShouldMatchSingleCharacterWithoutGrams() {
+        Document query = ProductRepositoryCustomImpl.searchCriteria("x", null, false, 0, 100).getCriteriaObject();
+
+        assertFalse(query.containsKey("nameGrams"));
+        assertTrue(((Pattern) query.get("name")).matcher("Box").find());
+    }
+
+    @Test
+    void keysetCriteria_ShouldContinueAfterLastValueAndBreakTiesById() {
+        ProductSummary last = new ProductSummary();
+        last.setId("p7");
+        last.setPrice(new BigDecimal("12.50"));
+
+        Document query = ProductRepositoryCustomImpl.keysetCriteria(ProductCursor.start("price", "asc").after(last))
+                .getCriteriaObject();
+
+        assertEquals(List.of(
+                new Document("price", new Document("$gt", new BigDecimal("12.50"))),
+                new Document("price", new BigDecimal("12.50")).append("id", new Document("$gt", "p7"))
+        ), query.get("$or"));
+    }
+
+    @Test
+    void keysetCriteria_ShouldOnlyCompareId_WhenSortedById() {
+        ProductSummary last = new ProductSummary();
+        last.setId("p7");
+
+        Document query = ProductRepositoryCustomImpl.keysetCriteria(ProductCursor.start("id", "desc").after(last))
+                .getCriteriaObject();
+
+        assertEquals(new Document("id", new Document("$lt", "p7")), query);
+    }
+
+    @Test
+    void findProductsAfter_ShouldReadOnlyListingFieldsInKeysetOrder() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class, RETURNS_DEEP_STUBS);
+        ExecutableFindOperation.FindWithQuery<ProductSummary> find = mongoTemplate.query(Product.class).as(ProductSummary.class);
+
+        new ProductRepositoryCustomImpl(mongoTemplate).findProductsAfter("", null, true, 0, 100,
+                ProductCursor.start("price", "desc"), 7);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(find).matching(query.capture());
+        assertEquals(7, query.getValue().getLimit());
+        assertEquals(new Document("price", -1).append("id", -1), query.getValue().getSortObject());
+        Document fields = query.getValue().getFieldsObject();
+        assertTrue(fields.containsKey("categories.name"));
+        assertFalse(fields.containsKey("description"));
+        assertFalse(fields.containsKey("nameGrams"));
+    }
+
+    @Test
+    void facetAggregation_ShouldApplyEachFilterExceptToItsOwnFacet() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        QueryMapper queryMapper = new QueryMapper(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+
+        List<Document> pipeline = ProductRepositoryCustomImpl.facetAggregation("run", List.of("Running"), true, 10, 50,
+                        PageRequest.of(2, 6, Sort.by("price")))
+                .toPipeline(new TypeBasedAggregationOperationContext(Product.class, mappingContext, queryMapper));
+
+        assertEquals(2, pipeline.size());
+        assertEquals(List.of("run"), pipeline.get(0).get("$match", Document.class).get("nameGrams", Document.class).get("$all"));
+        Document facets = pipeline.get(1).get("$facet", Document.class);
+        assertEquals(Stream.of(
+                Document.parse("{ $match: { 'categories.name': { $in: ['Running'] } } }"),
+                Document.parse("{ $match: { price: { $gte: 10, $lte: 50 } } }"),
+                Document.parse("{ $sort: { price: 1 } }"),
+                Document.parse("{ $skip: 12 }"),
+                Document.parse("{ $limit: 6 }"),
+                new Document("$project", Document.parse(ProductSummary.FIELDS))
+        ).map(Document::toJson).toList(), facets.getList("products", Document.class).stream().map(Document::toJson).toList());
+        assertFalse(facets.getList("categories", Document.class).get(0).toJson().contains("categories.name"));
+        assertFalse(facets.getList("priceHistogram", Document.class).get(0).toJson().contains("price"));
+        assertEquals(Document.parse("{ $bucketAuto: { groupBy: '$price', buckets: 5 } }"),
+                facets.getList("priceHistogram", Document.class).get(1));
+    }
+
+    @Test
+    void searchWithFacets_ShouldMapFacetResults() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        Document result = Document.parse("""
+                { products: [ { _id: 'p1', name: 'Trail runner', price: { $numberDecimal: '12.50' }, amountLeft: 3,
+                                available: true, ratingSum: 9, ratingCount: 2, orders: 7, categories: [ { name: 'Running' } ] } ],
+                  total: [ { count: 9 } ],
+                  categories: [ { _id: 'Outdoor', count: 2 }, { _id: 'Running', count: 9 } ],
+                  priceRange: [ { min: { $numberDecimal: '5.00' }, max: { $numberDecimal: '80.00' } } ],
+                  priceHistogram: [ { _id: { min: { $numberDecimal: '5.00' }, max: { $numberDecimal: '20.00' } }, count: 4 } ] }
+                """);
+        when(mongoTemplate.aggregate(any(Aggregation.class), eq(Product.class), eq(Document.class)))
+                .thenReturn(new AggregationResults<>(List.of(result), new Document()));
+
+        ProductFacets facets = new ProductRepositoryCustomImpl(mongoTemplate)
+                .searchWithFacets("run", null, true, 0, 100, PageRequest.of(0, 6, Sort.by("price")));
+
+        assertEquals(1, facets.getProducts().size());
+        assertEquals(new BigDecimal("12.50"), facets.getProducts().get(0).getPrice());
+        assertEquals("Running", facets.getProducts().get(0).getCategories().get(0).getName());
+        assertEquals(9, facets.getTotalElements());
+        assertEquals(List.of(new ProductFacets.CategoryCount("Running", 9), new ProductFacets.CategoryCount("Outdoor", 2)),
+                facets.getCategories());
+        assertEquals(List.of(new ProductFacets.PriceBucket(new BigDecimal("5.00"), new BigDecimal("20.00"), 4)),
+                facets.getPriceHistogram());
+        assertEquals(new BigDecimal("5.00"), facets.getMinPrice());
+        assertEquals(new BigDecimal("80.00"), facets.getMaxPrice());
+    }
+}
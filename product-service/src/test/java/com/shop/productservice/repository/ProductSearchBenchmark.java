@@ -0,0 +1,103 @@
+package com.shop.productservice.repository;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.shop.productservice.model.entity.Category;
+import com.shop.productservice.model.entity.Product;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Catalog search latency on 100k products, unanchored regex scan versus the name gram index. Run with
+ * {@code gradle benchmark}, needs Docker.
+ */
+@Tag("benchmark")
+@Testcontainers
+class ProductSearchBenchmark {
+
+    private static final int PRODUCTS = 100_000;
+    private static final int ITERATIONS = 200;
+    private static final List<String> SEARCHES = List.of("running", "glove", "pro 7", "xl", "ultralight 42");
+    private static final String[] WORDS = {"running", "trail", "boxing", "glove", "shoe", "jacket", "pro",
+            "ultralight", "ski", "helmet", "bottle", "mat", "xl", "carbon", "team", "winter", "swim", "bag"};
+
+    @Container
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:8.0.6");
+
+    @Test
+    void compareRegexAndGramSearch() {
+        try (MongoClient client = MongoClients.create(mongoDBContainer.getReplicaSetUrl())) {
+            MongoTemplate mongoTemplate = new MongoTemplate(client, "benchmark");
+            seed(mongoTemplate);
+            ProductRepositoryCustomImpl repository = new ProductRepositoryCustomImpl(mongoTemplate);
+            Pageable pageable = PageRequest.of(0, 6, Sort.by("name"));
+
+            for (String search : SEARCHES) {
+                Query regex = Query.query(Criteria.where("name").regex(".*" + search + ".*", "i")
+                        .and("available").in(true, false).and("price").gte(0).lte(1000));
+                long regexTotal = mongoTemplate.count(regex, Product.class);
+                long gramTotal = repository.searchProducts(search, null, false, 0, 1000, pageable).getTotalElements();
+                assertEquals(regexTotal, gramTotal, search);
+
+                double regexMs = measure(() -> {
+                    mongoTemplate.find(Query.of(regex).with(pageable), Product.class);
+                    return mongoTemplate.count(regex, Product.class);
+                });
+                double gramMs = measure(() -> repository.searchProducts(search, null, false, 0, 1000, pageable));
+                System.out.printf("%-14s %6d hits   regex %8.2f ms   grams %8.2f ms%n",
+                        "'" + search + "'", gramTotal, regexMs, gramMs);
+            }
+        }
+    }
+
+    private static void seed(MongoTemplate mongoTemplate) {
+        mongoTemplate.indexOps(Product.class).ensureIndex(new Index("nameGrams", Sort.Direction.ASC));
+        mongoTemplate.indexOps(Product.class).ensureIndex(new Index("name", Sort.Direction.ASC));
+        Random random = new Random(42);
+        List<Product> batch = new ArrayList<>();
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setName(WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + " " + random.nextInt(100));
+            product.setPrice(BigDecimal.valueOf(random.nextInt(1000)));
+            product.setAmountLeft(10);
+            product.setAvailable(true);
+            product.setCategories(List.of(new Category("Running")));
+            batch.add(product);
+            if (batch.size() == 5_000) {
+                mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class).insert(batch).execute();
+                batch.clear();
+            }
+        }
+    }
+
+    private static double measure(Supplier<?> search) {
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            search.get();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            search.get();
+        }
+        return (System.nanoTime() - start) / 1_000_000.0 / ITERATIONS;
+    }
+}
@@ -0,0 +1,82 @@
+package com.shop.productservice.service;
+
+import com.shop.productservice.configuration.CacheConfig;
+import com.shop.common.contract.CatalogInvalidation;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CatalogCacheInvalidatorTest {
+
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+
+    private CacheManager cacheManager;
+
+    private CatalogCacheInvalidator invalidator;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager = new CacheConfig().cacheManager("maximumSize=100,recordStats");
+        invalidator = new CatalogCacheInvalidator(cacheManager, kafkaTemplate);
+        cacheManager.getCache(CacheConfig.PRODUCT_DETAILS).put("1", "details 1");
+        cacheManager.getCache(CacheConfig.PRODUCT_DETAILS).put("2", "details 2");
+        cacheManager.getCache(CacheConfig.FEATURED_PRODUCTS).put("featured", "featured");
+        cacheManager.getCache(CacheConfig.CATEGORIES).put("categories", "categories");
+    }
+
+    @Test
+    void productsChanged_ShouldEvictDetailsLocallyAndBroadcast() {
+        invalidator.productsChanged(List.of("1"));
+
+        assertNull(cacheManager.getCache(CacheConfig.PRODUCT_DETAILS).get("1"));
+        assertNotNull(cacheManager.getCache(CacheConfig.PRODUCT_DETAILS).get("2"));
+        assertNotNull(cacheManager.getCache(CacheConfig.FEATURED_PRODUCTS).get("featured"));
+        verify(kafkaTemplate).send(CatalogCacheInvalidator.TOPIC, new CatalogInvalidation(List.of("1"), false));
+    }
+
+    @Test
+    void productsChanged_ShouldNotBroadcast_WhenNothingChanged() {
+        invalidator.productsChanged(List.of());
+
+        verifyNoInteractions(kafkaTemplate);
+    }
+
+    @Test
+    void catalogChanged_ShouldClearAllCaches() {
+        invalidator.catalogChanged();
+
+        assertNull(cacheManager.getCache(CacheConfig.PRODUCT_DETAILS).get("2"));
+        assertNull(cacheManager.getCache(CacheConfig.FEATURED_PRODUCTS).get("featured"));
+        assertNull(cacheManager.getCache(CacheConfig.CATEGORIES).get("categories"));
+        verify(kafkaTemplate).send(CatalogCacheInvalidator.TOPIC, new CatalogInvalidation(List.of(), true));
+    }
+
+    @Test
+    void catalogChanged_ShouldStillEvictLocally_WhenPublishFails() {
+        when(kafkaTemplate.send(any(String.class), any())).thenThrow(new IllegalStateException("broker down"));
+
+        invalidator.catalogChanged();
+
+        assertNull(cacheManager.getCache(CacheConfig.CATEGORIES).get("categories"));
+    }
+
+    @Test
+    void handleInvalidation_ShouldEvictWithoutRebroadcasting() {
+        invalidator.handleInvalidation(new CatalogInvalidation(List.of("2"), false));
+
+        assertNull(cacheManager.getCache(CacheConfig.PRODUCT_DETAILS).get("2"));
+        verifyNoInteractions(kafkaTemplate);
+    }
+}
@@ -1,20 +1,39 @@
 package com.shop.productservice.service;
 
+import com.shop.common.contract.CartValidationRequest;
+import com.shop.common.contract.CartValidationResponse;
+import com.shop.common.contract.OrderProductRatedRequest;
+import com.shop.common.contract.ProductInfoRequest;
+import com.shop.common.contract.ProductInfoResponse;
+import com.shop.common.contract.ProductQuantityCheck;
+import com.shop.common.contract.ProductsByIdRequest;
+import com.shop.common.contract.ProductsByIdResponse;
+import com.shop.common.contract.TotalPriceOfProductsRequest;
+import com.shop.common.contract.TotalPriceOfProductsResponse;
+import com.shop.common.kafka.PendingRequestRegistry;
+import com.shop.common.kafka.ReplyRouting;
+import com.shop.common.kafka.RequestDeadline;
 import com.shop.productservice.model.dto.*;
 import com.shop.productservice.model.entity.Product;
 import com.shop.productservice.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -28,9 +47,28 @@ class KafkaEventServiceTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Mock
+    private StockReservationLedger stockReservationLedger;
+
+    @Mock
+    private StripedStockService stripedStockService;
+
+    @Mock
+    private CatalogCacheInvalidator catalogCacheInvalidator;
+
     @Mock
     private KafkaTemplate<String, Object> kafkaTemplate;
 
+    @Spy
+    private PendingRequestRegistry pendingRequests =
+            new PendingRequestRegistry("test", 100, Duration.ofMillis(10), 64);
+
+    @Spy
+    private ReplyRouting replyRouting = new ReplyRouting(0, 1);
+
     @InjectMocks
     private KafkaEventService kafkaEventService;
 
@@ -44,16 +82,20 @@ class KafkaEventServiceTest {
         testProduct.setPrice(BigDecimal.TEN);
         testProduct.setAmountLeft(10);
         testProduct.setOrders(0);
+        lenient().when(stripedStockService.availableStock(any(Product.class)))
+                .thenAnswer(invocation -> invocation.<Product>getArgument(0).getAmountLeft());
     }
 
     @Test
-    void checkProductAmountAvailability_ShouldSendAvailableQuantity() {
+    void checkProductAmountAvailability_ShouldSendAvailableStock() {
         ProductQuantityCheck request = new ProductQuantityCheck("user1", "1", 5);
         when(productRepository.findById("1")).thenReturn(Optional.of(testProduct));
+        when(stripedStockService.availableStock(testProduct)).thenReturn(10);
 
         kafkaEventService.checkProductAmountAvaibility(request);
 
-        verify(kafkaTemplate).send(eq("product-cart-quantity-check-response"), any(ProductQuantityCheck.class));
+        verify(kafkaTemplate).send("product-cart-quantity-check-response", "user1",
+                new ProductQuantityCheck("user1", "1", 10));
     }
 
     @Test
@@ -66,6 +108,30 @@ class KafkaEventServiceTest {
         verify(kafkaTemplate).send(eq("product-cart-info-response"), any(ProductInfoResponse.class));
     }
 
+    @Test
+    void handleProductInfoRequest_ShouldReportStripedAvailableStock() {
+        when(productRepository.findAllById(List.of("1"))).thenReturn(List.of(testProduct));
+        when(stripedStockService.availableStock(testProduct)).thenReturn(4);
+
+        kafkaEventService.handleProductInfoRequest(new ProductInfoRequest("corr1", List.of("1")));
+
+        ArgumentCaptor<Object> response = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate).send(eq("product-cart-info-response"), response.capture());
+        assertEquals(4, ((ProductInfoResponse) response.getValue()).getProducts().get(0).getAmountLeft());
+    }
+
+    @Test
+    void handleValidationRequest_ShouldCheckStripedAvailableStock() {
+        when(productRepository.findAllById(anyCollection())).thenReturn(List.of(testProduct));
+        when(stripedStockService.availableStock(testProduct)).thenReturn(3);
+
+        kafkaEventService.handleValidationRequest(new CartValidationRequest("corr1", Map.of("1", 5)));
+
+        ArgumentCaptor<Object> response = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate).send(eq("cart-validation-response"), response.capture());
+        assertEquals("Not enough products in stock.", ((CartValidationResponse) response.getValue()).getError());
+    }
+
     @Test
     void handleValidationRequest_ShouldSendSuccessResponse_WhenAllProductsAvailable() {
         CartValidationRequest request = new CartValidationRequest("corr1", Map.of("1", 5));
@@ -93,11 +159,51 @@ class KafkaEventServiceTest {
     void getTotalPriceAndBlockProductsRequest_ShouldCalculateTotalAndBlockStock() {
         TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest("corr1", Map.of("1", 2));
         when(productRepository.findAllById(anyCollection())).thenReturn(List.of(testProduct));
+        when(stockReservationService.reserve(Map.of("1", 2))).thenReturn(true);
 
         kafkaEventService.getTotalPriceAndBlockProductsRequest(request);
 
         verify(kafkaTemplate).send(eq("total-price-response"), any(TotalPriceOfProductsResponse.class));
-        verify(productRepository).saveAll(anyList());
+        verify(productRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void getTotalPriceAndBlockProductsRequest_ShouldReplaceUserHold() {
+        TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest("corr1", Map.of("1", 2), "user1");
+        when(productRepository.findAllById(anyCollection())).thenReturn(List.of(testProduct));
+        when(stockReservationLedger.hold("user1", Map.of("1", 2))).thenReturn(true);
+
+        kafkaEventService.getTotalPriceAndBlockProductsRequest(request);
+
+        verify(stockReservationLedger).release("user1");
+        verify(kafkaTemplate).send(eq("total-price-response"), any(TotalPriceOfProductsResponse.class));
+        verifyNoInteractions(stockReservationService);
+    }
+
+    @Test
+    void getTotalPriceAndBlockProductsRequest_ShouldSendError_WhenReservationLosesRace() {
+        TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest("corr1", Map.of("1", 2));
+        when(productRepository.findAllById(anyCollection())).thenReturn(List.of(testProduct));
+        when(stockReservationService.reserve(Map.of("1", 2))).thenReturn(false);
+
+        kafkaEventService.getTotalPriceAndBlockProductsRequest(request);
+
+        verify(kafkaTemplate).send(eq("total-price-response"), argThat(response ->
+                ((TotalPriceOfProductsResponse)response).getErrorMessage() != null
+        ));
+    }
+
+    @Test
+    void getTotalPriceAndBlockProductsRequest_ShouldNotBlockStock_WhenCallerDeadlinePassed() {
+        TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest("corr1", Map.of("1", 2));
+        when(productRepository.findAllById(anyCollection())).thenReturn(List.of(testProduct));
+
+        try (RequestDeadline.Scope ignored = RequestDeadline.open(Instant.now().minusMillis(1))) {
+            kafkaEventService.getTotalPriceAndBlockProductsRequest(request);
+        }
+
+        verifyNoInteractions(stockReservationService);
+        verifyNoInteractions(kafkaTemplate);
     }
 
     @Test
@@ -111,6 +217,7 @@ class KafkaEventServiceTest {
         verify(kafkaTemplate).send(eq("total-price-response"), argThat(response ->
                 ((TotalPriceOfProductsResponse)response).getErrorMessage() != null
         ));
+        verifyNoInteractions(stockReservationService);
     }
 
     @Test
@@ -134,32 +241,100 @@ class KafkaEventServiceTest {
     }
 
     @Test
-    void incrementSoldItems_ShouldUpdateProductOrders() {
-        Map<String, Integer> request = Map.of("1", 3);
-        when(productRepository.findAllById(anyCollection())).thenReturn(List.of(testProduct));
+    void incrementSoldItems_ShouldCoalesceBatchIntoOneBulkIncrement() {
+        kafkaEventService.incrementSoldItems(List.of(Map.of("1", 3), Map.of("1", 2, "2", 1)));
+
+        verify(productRepository).incrementSoldCounts(Map.of("1", 5, "2", 1));
+        verify(productRepository, never()).saveAll(anyList());
+        verify(catalogCacheInvalidator).productsChanged(Set.of("1", "2"));
+    }
+
+    @Test
+    void incrementSoldItems_ShouldSkipUndeserializableRecords() {
+        List<Map<String, Integer>> batch = new ArrayList<>();
+        batch.add(null);
+        batch.add(Map.of("1", 3));
+
+        kafkaEventService.incrementSoldItems(batch);
+
+        verify(productRepository).incrementSoldCounts(Map.of("1", 3));
+    }
+
+    @Test
+    void incrementSoldItems_ShouldCountStripedProductsInSameBulk() {
+        kafkaEventService.incrementSoldItems(List.of(Map.of("hot", 3, "1", 1)));
+
+        verify(productRepository).incrementSoldCounts(Map.of("hot", 3, "1", 1));
+        verifyNoInteractions(stripedStockService);
+    }
+
+    @Test
+    void incrementSoldItems_ShouldFailBatch_WhenBulkWriteFails() {
+        doThrow(new RuntimeException("write failed")).when(productRepository).incrementSoldCounts(anyMap());
+
+        assertThrows(RuntimeException.class, () -> kafkaEventService.incrementSoldItems(List.of(Map.of("1", 1))));
+
+        verifyNoInteractions(catalogCacheInvalidator);
+    }
+
+    @Test
+    void handleOrderProductUnlockRequest_ShouldReleaseStock() {
+        TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest("corr1", Map.of("1", 2));
+
+        kafkaEventService.handleOrderProductUnlockRequest(request);
+
+        verify(stockReservationService).release(Map.of("1", 2));
+        verify(kafkaTemplate).send(eq("order-product-unlock-response"), any(TotalPriceOfProductsResponse.class));
+    }
+
+    @Test
+    void handleOrderProductUnlockRequest_ShouldReleaseUserHold() {
+        TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest("corr1", Map.of("1", 2), "user1");
+
+        kafkaEventService.handleOrderProductUnlockRequest(request);
+
+        verify(stockReservationLedger).release("user1");
+        verifyNoInteractions(stockReservationService);
+    }
+
+    @Test
+    void handleOrderStockConfirmRequest_ShouldConfirmUserHold() {
+        TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest("corr1", Map.of("1", 2), "user1");
+        when(stockReservationLedger.confirm("user1", Map.of("1", 2))).thenReturn(true);
+
+        kafkaEventService.handleOrderStockConfirmRequest(request);
+
+        verify(kafkaTemplate).send(eq("order-stock-confirm-response"),
+                argThat(response -> ((TotalPriceOfProductsResponse) response).getErrorMessage() == null));
+    }
+
+    @Test
+    void handleOrderStockConfirmRequest_ShouldReportShortage_WhenStockRanOut() {
+        TotalPriceOfProductsRequest request = new TotalPriceOfProductsRequest("corr1", Map.of("1", 2), "user1");
+        when(stockReservationLedger.confirm("user1", Map.of("1", 2))).thenReturn(false);
 
-        kafkaEventService.incrementSoldItems(request);
+        kafkaEventService.handleOrderStockConfirmRequest(request);
 
-        assertEquals(3, testProduct.getOrders());
-        verify(productRepository).saveAll(anyList());
+        verify(kafkaTemplate).send(eq("order-stock-confirm-response"),
+                argThat(response -> "Not enough products in stock.".equals(
+                        ((TotalPriceOfProductsResponse) response).getErrorMessage())));
     }
 
     @Test
     void setOrderProductAsRated_ShouldSendRequestAndReturnFuture() {
-        when(kafkaTemplate.send(anyString(), any())).thenReturn(null);
+        when(kafkaTemplate.send(anyString(), any(), any())).thenReturn(null);
 
         CompletableFuture<OrderProductRatedRequest> future =
                 kafkaEventService.setOrderProductAsRated("order1", "product1");
 
         assertNotNull(future);
-        verify(kafkaTemplate).send(eq("order-product-rated-request"), any(OrderProductRatedRequest.class));
+        verify(kafkaTemplate).send(eq("order-product-rated-request"), eq("order1"), any(OrderProductRatedRequest.class));
     }
 
     @Test
     void handleOrderProductRatedResponse_ShouldCompleteFuture() {
         String correlationId = UUID.randomUUID().toString();
-        CompletableFuture<OrderProductRatedRequest> future = new CompletableFuture<>();
-        kafkaEventService.orderProductAsRatedMap.put(correlationId, future);
+        CompletableFuture<OrderProductRatedRequest> future = pendingRequests.register(correlationId, Duration.ofSeconds(5), "Timeout");
 
         kafkaEventService.handleOrderProductRatedResponse(correlationId);
 
@@ -1,7 +1,11 @@
 package com.shop.productservice.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.common.contract.OrderProductRatedRequest;
 import com.shop.productservice.exception.ProductException;
+import com.shop.productservice.model.ProductCursor;
+import com.shop.productservice.model.ProductFacets;
+import com.shop.productservice.model.ProductSummary;
 import com.shop.productservice.model.dto.*;
 import com.shop.productservice.model.entity.Category;
 import com.shop.productservice.model.entity.Product;
@@ -15,6 +19,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.web.multipart.MultipartFile;
 import java.math.BigDecimal;
@@ -43,6 +49,12 @@ class ProductServiceTest {
     @Mock
     private CategoryRepository categoryRepository;
 
+    @Mock
+    private CatalogCacheInvalidator catalogCacheInvalidator;
+
+    @Mock
+    private StripedStockService stripedStockService;
+
     @Mock
     private MultipartFile multipartFile;
 
@@ -50,6 +62,7 @@ class ProductServiceTest {
     private ProductService productService;
 
     private Product testProduct;
+    private ProductSummary testSummary;
     private ProductDto testProductDto;
     private final Category category1 = new Category("Category1");
 
@@ -62,7 +75,18 @@ class ProductServiceTest {
         testProduct.setAmountLeft(10);
         testProduct.setAvailable(true);
         testProduct.setCategories(List.of(category1));
-        testProduct.setRatings(new HashMap<>(Map.of(4, 4.3)));
+        testProduct.setRatingSum(17);
+        testProduct.setRatingCount(4);
+
+        testSummary = new ProductSummary();
+        testSummary.setId("1");
+        testSummary.setName("Test Product");
+        testSummary.setPrice(BigDecimal.TEN);
+        testSummary.setAmountLeft(10);
+        testSummary.setAvailable(true);
+        testSummary.setCategories(List.of(category1));
+        testSummary.setRatingSum(17);
+        testSummary.setRatingCount(4);
 
         testProductDto = new ProductDto();
         testProductDto.setId("1");
@@ -75,8 +99,8 @@ class ProductServiceTest {
 
     @Test
     void getProducts_ShouldReturnProductsListInfo() {
-        Page<Product> productPage = new PageImpl<>(List.of(testProduct));
-        when(productRepository.findByNameMatchesRegexIgnoreCase(anyString(), anyBoolean(), anyInt(), anyInt(), any()))
+        Page<ProductSummary> productPage = new PageImpl<>(List.of(testSummary));
+        when(productRepository.searchProducts(eq("test"), isNull(), eq(true), anyInt(), anyInt(), any()))
                 .thenReturn(productPage);
         when(categoryService.getCategories()).thenReturn(List.of(new CategoryDto("Category1")));
         when(productRepository.findTopByAvailableTrueAndAmountLeftGreaterThanOrderByPriceDesc(anyInt()))
@@ -90,6 +114,76 @@ class ProductServiceTest {
         assertEquals(BigDecimal.TEN, result.getMaxPrice());
     }
 
+    @Test
+    void searchProducts_ShouldReturnPageWithFacets() {
+        ProductFacets facets = new ProductFacets(List.of(testSummary), 1,
+                List.of(new ProductFacets.CategoryCount("Category1", 1)),
+                List.of(new ProductFacets.PriceBucket(BigDecimal.TEN, BigDecimal.TEN, 1)), BigDecimal.TEN, BigDecimal.TEN);
+        when(productRepository.searchWithFacets(eq("test"), eq(List.of("Category1")), eq(true), eq(0), eq(100),
+                eq(PageRequest.of(1, 6, Sort.by(Sort.Direction.DESC, "price"))))).thenReturn(facets);
+
+        ProductsFacetInfo result = productService.searchProducts(1, 6, "price", "desc", "test", 0, 100,
+                List.of("Category1"), "ROLE_CUSTOMER");
+
+        assertEquals("1", result.getProducts().get(0).getId());
+        assertEquals(1, result.getTotalElements());
+        assertEquals(facets.getCategories(), result.getCategories());
+        assertEquals(BigDecimal.TEN, result.getMaxPrice());
+        verifyNoInteractions(categoryService);
+    }
+
+    @Test
+    void scrollProducts_ShouldReturnCursorToNextPage_WhenMoreProductsMatch() {
+        ProductSummary next = new ProductSummary();
+        next.setId("2");
+        when(productRepository.findProductsAfter(eq("test"), isNull(), eq(true), eq(0), eq(100), any(), eq(2)))
+                .thenReturn(List.of(testSummary, next));
+
+        ProductsScrollInfo result = productService.scrollProducts(null, 1, "price", "asc", "test", 0, 100, null,
+                false, "ROLE_CUSTOMER");
+
+        assertEquals(1, result.getProducts().size());
+        assertNull(result.getTotalElements());
+        ProductCursor cursor = ProductCursor.decode(result.getNextCursor());
+        assertEquals("price", cursor.getSort());
+        assertEquals(BigDecimal.TEN, cursor.getLastValue());
+        assertEquals("1", cursor.getLastId());
+        verify(productRepository, never()).countProducts(any(), any(), anyBoolean(), anyInt(), anyInt());
+    }
+
+    @Test
+    void scrollProducts_ShouldContinueInCursorOrderingAndCount_WhenRequested() {
+        String cursor = ProductCursor.start("orders", "desc").after(testSummary).encode();
+        when(productRepository.findProductsAfter(any(), any(), anyBoolean(), anyInt(), anyInt(), any(), anyInt()))
+                .thenReturn(List.of(testSummary));
+        when(productRepository.countProducts("", List.of(), false, 0, 100)).thenReturn(42L);
+
+        ProductsScrollInfo result = productService.scrollProducts(cursor, 6, "name", "asc", "", 0, 100, List.of(),
+                true, "ROLE_ADMIN");
+
+        assertNull(result.getNextCursor());
+        assertEquals(42L, result.getTotalElements());
+        verify(productRepository).findProductsAfter(any(), any(), anyBoolean(), anyInt(), anyInt(),
+                argThat(position -> position.getSort().equals("orders") && position.getLastId().equals("1")), eq(7));
+    }
+
+    @Test
+    void scrollProducts_ShouldThrow_WhenSizeOutOfRange() {
+        assertThrows(ProductException.class, () -> productService.scrollProducts(null, 0, "id", "asc", "",
+                0, 100, null, false, "ROLE_CUSTOMER"));
+        assertThrows(ProductException.class, () -> productService.scrollProducts(null,
+                ProductService.MAX_SCROLL_SIZE + 1, "id", "asc", "", 0, 100, null, false, "ROLE_CUSTOMER"));
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void scrollProducts_ShouldThrow_WhenCursorInvalid() {
+        assertThrows(ProductException.class, () -> productService.scrollProducts("not-a-cursor", 6, "id", "asc", "",
+                0, 100, null, false, "ROLE_CUSTOMER"));
+        assertThrows(ProductException.class, () -> productService.scrollProducts(null, 6, "description", "asc", "",
+                0, 100, null, false, "ROLE_CUSTOMER"));
+    }
+
     @Test
     void changeProductAvailability_ShouldChangeAvailabilityForAdmin() {
         when(productRepository.findById("1")).thenReturn(Optional.of(testProduct));
@@ -101,6 +195,7 @@ class ProductServiceTest {
 
         assertNotNull(result);
         verify(productRepository).save(testProduct);
+        verify(catalogCacheInvalidator).catalogChanged();
     }
 
     @Test
@@ -112,22 +207,39 @@ class ProductServiceTest {
     }
 
     @Test
-    void rateProduct_ShouldUpdateProductRating() {
-        when(productRepository.findById("1")).thenReturn(Optional.of(testProduct));
-        when(kafkaEventService.setOrderProductAsRated("order1", "1"))
-                .thenReturn(CompletableFuture.completedFuture(null));
-        when(productRepository.save(any(Product.class))).thenReturn(testProduct);
-        RateProductDto rateDto = new RateProductDto("1", 1, "order1");
+    void rateProduct_ShouldIncrementRatingAndConfirmAsynchronously() {
+        CompletableFuture<OrderProductRatedRequest> confirmation = new CompletableFuture<>();
+        when(productRepository.incrementRating("1", 4)).thenReturn(1L);
+        when(kafkaEventService.setOrderProductAsRated("order1", "1")).thenReturn(confirmation);
 
-        productService.rateProduct(rateDto);
+        productService.rateProduct(new RateProductDto("1", 4, "order1"));
 
-        verify(productRepository).save(any(Product.class));
-        verify(kafkaEventService).setOrderProductAsRated("order1", "1");
+        assertFalse(confirmation.isDone());
+        verify(productRepository, never()).save(any(Product.class));
+        verify(catalogCacheInvalidator).productsChanged(List.of("1"));
+    }
+
+    @Test
+    void rateProduct_ShouldThrow_WhenProductNotFound() {
+        when(productRepository.incrementRating("1", 4)).thenReturn(0L);
+
+        assertThrows(ProductException.class, () -> productService.rateProduct(new RateProductDto("1", 4, "order1")));
+
+        verifyNoInteractions(kafkaEventService);
+    }
+
+    @Test
+    void getDetails_ShouldDeriveAverageRating() {
+        when(productRepository.findByIdAndAvailableTrue("1")).thenReturn(Optional.of(testProduct));
+
+        Map<String, Object> result = productService.getDetails("1");
+
+        assertEquals(4.25, ((ProductDto) result.get("product")).getRating());
     }
 
     @Test
     void getFeaturedProducts_ShouldReturnFeaturedProducts() {
-        when(productRepository.findTop9ByAvailableTrueOrderByOrdersDesc()).thenReturn(List.of(testProduct));
+        when(productRepository.findTop9ByAvailableTrueOrderByOrdersDesc()).thenReturn(List.of(testSummary));
 
         Map<String, Object> result = productService.getFeaturedProducts();
 
@@ -140,12 +252,14 @@ class ProductServiceTest {
     void getDetails_ShouldReturnProductDetails() {
         when(productRepository.findByIdAndAvailableTrue("1")).thenReturn(Optional.ofNullable(testProduct));
         when(productRepository.findTop4ByCategoriesInAndIdNotAndAvailableTrue(any(), anyString()))
-                .thenReturn(List.of(testProduct));
+                .thenReturn(List.of(testSummary));
+
+        when(stripedStockService.availableStock(testProduct)).thenReturn(4);
 
         Map<String, Object> result = productService.getDetails("1");
 
         assertNotNull(result);
-        assertTrue(result.containsKey("product"));
+        assertEquals(4, ((ProductDto) result.get("product")).getQuantity());
         assertTrue(result.containsKey("relatedProducts"));
     }
 
@@ -197,5 +311,6 @@ class ProductServiceTest {
 
         assertNotNull(result);
         assertEquals("New Category", result.getName());
+        verify(catalogCacheInvalidator).catalogChanged();
     }
 }
\ No newline at end of file
@@ -0,0 +1,102 @@
+package com.shop.productservice.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.shop.productservice.model.entity.Product;
+import com.shop.productservice.model.entity.StockShard;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Reservation throughput on a single SKU, plain document versus striped shards. Run with
+ * {@code gradle benchmark}, needs Docker.
+ */
+@Tag("benchmark")
+@Testcontainers
+class StockReservationBenchmark {
+
+    private static final int THREADS = 64;
+    private static final int RESERVATIONS = 20_000;
+    private static final int SHARDS = 8;
+
+    @Container
+    static MongoDBContainer mongoDBContainer = new MongoDBContainer("mongo:8.0.6");
+
+    @Test
+    void compareSingleSkuReservationThroughput() throws Exception {
+        try (MongoClient client = MongoClients.create(mongoDBContainer.getReplicaSetUrl())) {
+            MongoTemplate mongoTemplate = new MongoTemplate(client, "benchmark");
+            StripedStockService plain = new StripedStockService(mongoTemplate, Set.of(), SHARDS, Duration.ofSeconds(1));
+            StripedStockService striped = new StripedStockService(mongoTemplate, Set.of("hot"), SHARDS, Duration.ofSeconds(1));
+
+            run("warmup", mongoTemplate, plain);
+            run("single document", mongoTemplate, plain);
+            run(SHARDS + " shards", mongoTemplate, striped);
+        }
+    }
+
+    private void run(String label, MongoTemplate mongoTemplate, StripedStockService stripedStockService)
+            throws Exception {
+        mongoTemplate.dropCollection(Product.class);
+        mongoTemplate.dropCollection(StockShard.class);
+        Product product = new Product();
+        product.setId("hot");
+        product.setAmountLeft(RESERVATIONS);
+        mongoTemplate.save(product);
+        stripedStockService.consolidate();
+
+        StockReservationService reservations = new StockReservationService(mongoTemplate, stripedStockService,
+                mock(CatalogCacheInvalidator.class));
+        ScheduledExecutorService consolidation = Executors.newSingleThreadScheduledExecutor();
+        consolidation.scheduleWithFixedDelay(stripedStockService::consolidate, 100, 100, TimeUnit.MILLISECONDS);
+        ExecutorService workers = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger remaining = new AtomicInteger(RESERVATIONS);
+        AtomicInteger reserved = new AtomicInteger();
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(workers.submit(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    if (reservations.reserve(Map.of("hot", 1))) {
+                        reserved.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        workers.shutdown();
+        consolidation.shutdown();
+        consolidation.awaitTermination(10, TimeUnit.SECONDS);
+        stripedStockService.drain("hot");
+
+        Product after = mongoTemplate.findById("hot", Product.class);
+        System.out.printf("%-16s %,8d reservations/s, %d of %d reserved%n", label,
+                RESERVATIONS * 1_000_000_000L / elapsed, reserved.get(), RESERVATIONS);
+        assertEquals(RESERVATIONS, reserved.get());
+        assertEquals(0, after.getAmountLeft());
+        assertEquals(0, after.getStripedStock());
+    }
+}
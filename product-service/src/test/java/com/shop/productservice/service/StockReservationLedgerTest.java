@@ -0,0 +1,222 @@
+package com.shop.productservice.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.shop.productservice.exception.ProductException;
+import com.shop.productservice.model.dto.StockLevelDto;
+import com.shop.productservice.model.entity.Product;
+import com.shop.productservice.model.entity.StockReservation;
+import com.shop.productservice.repository.ProductRepository;
+import com.shop.productservice.repository.StockReservationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationLedgerTest {
+
+    @Mock
+    private StockReservationService stockReservationService;
+
+    @Mock
+    private StripedStockService stripedStockService;
+
+    @Mock
+    private StockReservationRepository reservationRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private StockReservationLedger ledger;
+
+    private final Map<String, Integer> products = Map.of("1", 2, "2", 1);
+
+    @BeforeEach
+    void setUp() {
+        ledger = new StockReservationLedger(stockReservationService, stripedStockService, reservationRepository,
+                productRepository, mongoTemplate, Duration.ofMinutes(10), Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        ledger.shutdown();
+    }
+
+    @Test
+    void hold_ShouldClaimHoldBeforeReservingStock() {
+        when(stockReservationService.reserve(products)).thenReturn(true);
+        claimConfirmed(1);
+
+        assertTrue(ledger.hold("user1", products));
+
+        ArgumentCaptor<StockReservation> captor = ArgumentCaptor.forClass(StockReservation.class);
+        InOrder inOrder = inOrder(reservationRepository, stockReservationService, mongoTemplate);
+        inOrder.verify(reservationRepository).insert(captor.capture());
+        inOrder.verify(stockReservationService).reserve(products);
+        inOrder.verify(mongoTemplate).updateFirst(any(Query.class), eq(Update.update("pending", false)),
+                eq(StockReservation.class));
+        assertEquals("user1", captor.getValue().getUserId());
+        assertEquals(products, captor.getValue().getProducts());
+        assertTrue(captor.getValue().isPending());
+        assertTrue(captor.getValue().getExpiresAt().isAfter(Instant.now().plus(Duration.ofMinutes(9))));
+    }
+
+    @Test
+    void hold_ShouldReleasePreviousHoldOfUser() {
+        StockReservation previous = new StockReservation("user1", Map.of("3", 4), Instant.now(), false);
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(StockReservation.class))).thenReturn(previous);
+        when(stockReservationService.reserve(products)).thenReturn(true);
+        claimConfirmed(1);
+
+        ledger.hold("user1", products);
+
+        verify(stockReservationService).release(Map.of("3", 4));
+    }
+
+    @Test
+    void hold_ShouldFailWithoutReserving_WhenConcurrentHoldClaimedUser() {
+        when(reservationRepository.insert(any(StockReservation.class))).thenThrow(new DuplicateKeyException("dup"));
+
+        assertFalse(ledger.hold("user1", products));
+
+        verify(stockReservationService, never()).reserve(any());
+    }
+
+    @Test
+    void hold_ShouldReleaseOwnQuantities_WhenClaimRemovedWhileReserving() {
+        when(stockReservationService.reserve(products)).thenReturn(true);
+        claimConfirmed(0);
+
+        assertFalse(ledger.hold("user1", products));
+
+        verify(stockReservationService).release(products);
+    }
+
+    @Test
+    void hold_ShouldDropClaim_WhenStockInsufficient() {
+        when(stockReservationService.reserve(products)).thenReturn(false);
+
+        assertFalse(ledger.hold("user1", products));
+
+        verify(mongoTemplate).remove(any(Query.class), eq(StockReservation.class));
+        verify(stockReservationService, never()).release(any());
+    }
+
+    @Test
+    void release_ShouldNotReleaseStock_WhenHoldStillPending() {
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(StockReservation.class)))
+                .thenReturn(new StockReservation("user1", products, Instant.now(), true));
+
+        ledger.release("user1");
+
+        verify(stockReservationService, never()).release(any());
+    }
+
+    @Test
+    void expire_ShouldReleaseStockOfExpiredHold() {
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(StockReservation.class)))
+                .thenReturn(new StockReservation("user1", products, Instant.now(), false));
+
+        ledger.expire("user1");
+
+        verify(stockReservationService).release(products);
+    }
+
+    @Test
+    void expire_ShouldDoNothing_WhenHoldRenewedOrConfirmed() {
+        ledger.expire("user1");
+
+        verifyNoInteractions(stockReservationService);
+    }
+
+    @Test
+    void confirm_ShouldKeepStock_WhenHoldMatchesOrder() {
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(StockReservation.class)))
+                .thenReturn(new StockReservation("user1", products, Instant.now(), false));
+
+        assertTrue(ledger.confirm("user1", products));
+
+        verifyNoInteractions(stockReservationService);
+    }
+
+    @Test
+    void confirm_ShouldReserveAgain_WhenHoldExpired() {
+        when(stockReservationService.reserve(products)).thenReturn(true);
+
+        assertTrue(ledger.confirm("user1", products));
+
+        verify(stockReservationService).reserve(products);
+        verify(stockReservationService, never()).release(any());
+    }
+
+    @Test
+    void confirm_ShouldReportFailure_WhenHoldExpiredAndStockRanOut() {
+        when(stockReservationService.reserve(products)).thenReturn(false);
+
+        assertFalse(ledger.confirm("user1", products));
+    }
+
+    @Test
+    void sweepExpiredHolds_ShouldReleaseOverdueHoldsOfAnyInstance() {
+        when(mongoTemplate.find(any(Query.class), eq(StockReservation.class))).thenReturn(List.of(
+                new StockReservation("user1", null, null, false),
+                new StockReservation("user2", null, null, false)));
+        when(mongoTemplate.findAndRemove(any(Query.class), eq(StockReservation.class)))
+                .thenReturn(new StockReservation("user1", products, Instant.now(), false), null);
+
+        ledger.sweepExpiredHolds();
+
+        verify(mongoTemplate, times(2)).findAndRemove(any(Query.class), eq(StockReservation.class));
+        verify(stockReservationService).release(products);
+    }
+
+    @Test
+    void getStockLevel_ShouldSumHeldQuantities() {
+        Product product = new Product();
+        product.setId("1");
+        product.setAmountLeft(7);
+        when(productRepository.findById("1")).thenReturn(Optional.of(product));
+        when(stripedStockService.availableStock(product)).thenReturn(7);
+        when(mongoTemplate.find(any(Query.class), eq(StockReservation.class))).thenReturn(List.of(
+                new StockReservation("user1", Map.of("1", 2), null, false),
+                new StockReservation("user2", Map.of("1", 3), null, false)));
+
+        StockLevelDto stock = ledger.getStockLevel("1");
+
+        assertEquals(new StockLevelDto("1", 7, 5), stock);
+    }
+
+    @Test
+    void getStockLevel_ShouldThrow_WhenProductNotFound() {
+        when(productRepository.findById("1")).thenReturn(Optional.empty());
+
+        assertThrows(ProductException.class, () -> ledger.getStockLevel("1"));
+    }
+
+    private void claimConfirmed(long modified) {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockReservation.class)))
+                .thenReturn(UpdateResult.acknowledged(modified, modified, null));
+    }
+}
@@ -0,0 +1,165 @@
+package com.shop.productservice.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.shop.productservice.model.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationServiceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private StripedStockService stripedStockService;
+
+    @Mock
+    private BulkOperations releaseBulk;
+
+    @Mock
+    private CatalogCacheInvalidator catalogCacheInvalidator;
+
+    @InjectMocks
+    private StockReservationService stockReservationService;
+
+    @Test
+    void reserve_ShouldSendConditionalDecrementsWithoutUpsert() {
+        givenStock("1", "2", "3");
+
+        assertTrue(stockReservationService.reserve(cart()));
+
+        verify(mongoTemplate).updateFirst(
+                eq(Query.query(Criteria.where("id").is("1").and("amountLeft").gte(2))),
+                eq(new Update().inc("amountLeft", -2)), eq(Product.class));
+        verify(mongoTemplate, times(3)).updateFirst(any(Query.class), any(Update.class), eq(Product.class));
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(Product.class));
+        verify(mongoTemplate, never()).bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        verify(catalogCacheInvalidator).productsChanged(cart().keySet());
+    }
+
+    @Test
+    void reserve_ShouldReleaseAppliedDecrements_WhenProductOutOfStock() {
+        givenStock("1", "2");
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(releaseBulk);
+
+        assertFalse(stockReservationService.reserve(cart()));
+
+        verify(releaseBulk).updateOne(any(Query.class), eq(new Update().inc("amountLeft", 2)));
+        verify(releaseBulk).updateOne(any(Query.class), eq(new Update().inc("amountLeft", 1)));
+        verify(releaseBulk, never()).updateOne(any(Query.class), eq(new Update().inc("amountLeft", 5)));
+        verify(releaseBulk).execute();
+        verifyNoInteractions(catalogCacheInvalidator);
+    }
+
+    @Test
+    void reserve_ShouldStopAndNotRelease_WhenFirstProductOutOfStock() {
+        givenStock();
+
+        assertFalse(stockReservationService.reserve(cart()));
+
+        verify(mongoTemplate, times(1)).updateFirst(any(Query.class), any(Update.class), eq(Product.class));
+        verify(mongoTemplate, never()).bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+    }
+
+    @Test
+    void reserve_ShouldReleaseAndRethrow_WhenUpdateFails() {
+        RuntimeException failure = new RuntimeException("write failed");
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Product.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null))
+                .thenThrow(failure);
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(releaseBulk);
+
+        assertSame(failure, assertThrows(RuntimeException.class, () -> stockReservationService.reserve(cart())));
+
+        verify(releaseBulk).updateOne(any(Query.class), eq(new Update().inc("amountLeft", 2)));
+        verify(releaseBulk).execute();
+    }
+
+    @Test
+    void reserve_ShouldReserveStripedProductsOnShards() {
+        when(stripedStockService.isStriped(anyString())).thenAnswer(invocation -> "2".equals(invocation.getArgument(0)));
+        when(stripedStockService.reserve("2", 1)).thenReturn(true);
+        givenStock("1", "3");
+
+        assertTrue(stockReservationService.reserve(cart()));
+
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), any(Update.class), eq(Product.class));
+    }
+
+    @Test
+    void reserve_ShouldReleaseStripedProducts_WhenProductOutOfStock() {
+        when(stripedStockService.isStriped(anyString())).thenAnswer(invocation -> "2".equals(invocation.getArgument(0)));
+        when(stripedStockService.reserve("2", 1)).thenReturn(true);
+        givenStock();
+
+        assertFalse(stockReservationService.reserve(cart()));
+
+        verify(stripedStockService).release("2", 1);
+    }
+
+    @Test
+    void reserve_ShouldSkipMongo_WhenStripedProductOutOfStock() {
+        when(stripedStockService.isStriped(anyString())).thenReturn(true);
+        when(stripedStockService.reserve("1", 2)).thenReturn(true);
+        when(stripedStockService.reserve("2", 1)).thenReturn(false);
+
+        assertFalse(stockReservationService.reserve(cart()));
+
+        verify(stripedStockService).release("1", 2);
+        verify(stripedStockService, never()).reserve("3", 5);
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void release_ShouldIncrementStockOfEveryProduct() {
+        when(mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class)).thenReturn(releaseBulk);
+
+        stockReservationService.release(cart());
+
+        verify(releaseBulk, times(3)).updateOne(any(Query.class), any(Update.class));
+        verify(releaseBulk).execute();
+        verify(catalogCacheInvalidator).productsChanged(cart().keySet());
+    }
+
+    @Test
+    void reserve_ShouldSkipMongo_WhenCartEmpty() {
+        assertTrue(stockReservationService.reserve(Map.of()));
+
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    private static Map<String, Integer> cart() {
+        Map<String, Integer> cart = new LinkedHashMap<>();
+        cart.put("1", 2);
+        cart.put("2", 1);
+        cart.put("3", 5);
+        return cart;
+    }
+
+    private void givenStock(String... productIds) {
+        List<String> inStock = List.of(productIds);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Product.class))).thenAnswer(invocation -> {
+            Object id = invocation.<Query>getArgument(0).getQueryObject().get("id");
+            return UpdateResult.acknowledged(inStock.contains(id) ? 1 : 0, inStock.contains(id) ? 1L : 0L, null);
+        });
+    }
+}
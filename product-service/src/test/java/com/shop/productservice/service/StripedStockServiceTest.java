@@ -0,0 +1,190 @@
+package com.shop.productservice.service;
+
+import com.mongodb.client.result.UpdateResult;
+import com.shop.productservice.model.entity.Product;
+import com.shop.productservice.model.entity.StockShard;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StripedStockServiceTest {
+
+    private static final int SHARDS = 4;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    private StripedStockService stripedStockService;
+
+    @BeforeEach
+    void setUp() {
+        stripedStockService = new StripedStockService(mongoTemplate, Set.of("hot"), SHARDS, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void isStriped_ShouldMatchConfiguredProducts() {
+        assertTrue(stripedStockService.isStriped("hot"));
+        assertFalse(stripedStockService.isStriped("cold"));
+    }
+
+    @Test
+    void reserve_ShouldTakeFromFirstShardWithBudget() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockShard.class)))
+                .thenReturn(updated(0), updated(1));
+
+        assertTrue(stripedStockService.reserve("hot", 2));
+
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class),
+                eq(new Update().inc("budget", -2).inc("consumed", 2)), eq(StockShard.class));
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Product.class));
+    }
+
+    @Test
+    void reserve_ShouldFallBackToProduct_WhenShardsExhausted() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockShard.class))).thenReturn(updated(0));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Product.class))).thenReturn(updated(1));
+
+        assertTrue(stripedStockService.reserve("hot", 2));
+
+        verify(mongoTemplate, times(SHARDS)).updateFirst(any(Query.class), any(Update.class), eq(StockShard.class));
+        verify(mongoTemplate).updateFirst(any(Query.class), eq(new Update().inc("amountLeft", -2)), eq(Product.class));
+        verify(mongoTemplate, never()).find(any(Query.class), eq(StockShard.class));
+    }
+
+    @Test
+    void reserve_ShouldDrainShardsBeforeGivingUp() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockShard.class))).thenReturn(updated(0));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Product.class))).thenReturn(updated(0));
+        when(mongoTemplate.find(any(Query.class), eq(StockShard.class))).thenReturn(List.of());
+
+        assertFalse(stripedStockService.reserve("hot", 2));
+
+        verify(mongoTemplate).find(any(Query.class), eq(StockShard.class));
+        verify(mongoTemplate, times(2)).updateFirst(any(Query.class), eq(new Update().inc("amountLeft", -2)), eq(Product.class));
+    }
+
+    @Test
+    void reserve_ShouldNotDrainAgain_WithinInlineDrainInterval() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(StockShard.class))).thenReturn(updated(0));
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Product.class))).thenReturn(updated(0));
+        when(mongoTemplate.find(any(Query.class), eq(StockShard.class))).thenReturn(List.of());
+
+        assertFalse(stripedStockService.reserve("hot", 2));
+        assertFalse(stripedStockService.reserve("hot", 2));
+        assertFalse(stripedStockService.reserve("hot", 1));
+
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(StockShard.class));
+    }
+
+    @Test
+    void release_ShouldReturnStockToShardBudget() {
+        stripedStockService.release("hot", 3);
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(any(Query.class), update.capture(), eq(StockShard.class));
+        Document inc = (Document) update.getValue().getUpdateObject().get("$inc");
+        assertEquals(3, inc.get("budget"));
+        assertEquals(-3, inc.get("consumed"));
+    }
+
+    @Test
+    void drain_ShouldFoldShardsIntoProduct() {
+        StockShard shard = shard(5, 3, 2);
+        when(mongoTemplate.find(any(Query.class), eq(StockShard.class))).thenReturn(List.of(shard));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), eq(StockShard.class))).thenReturn(shard);
+
+        stripedStockService.drain("hot");
+
+        verify(mongoTemplate).updateFirst(any(Query.class),
+                eq(new Update().inc("amountLeft", -3).inc("stripedStock", -8).inc("orders", 2)), eq(Product.class));
+    }
+
+    @Test
+    void distribute_ShouldSplitFreeStockAcrossShards() {
+        Product product = new Product();
+        product.setAmountLeft(42);
+        product.setStripedStock(0);
+        when(mongoTemplate.findById("hot", Product.class)).thenReturn(product);
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Product.class))).thenReturn(updated(1));
+
+        stripedStockService.distribute("hot");
+
+        verify(mongoTemplate).updateFirst(any(Query.class), eq(new Update().inc("stripedStock", 40)), eq(Product.class));
+        verify(mongoTemplate, times(SHARDS)).upsert(any(Query.class),
+                eq(new Update().inc("budget", 10).setOnInsert("productId", "hot")), eq(StockShard.class));
+    }
+
+    @Test
+    void distribute_ShouldKeepStockOnProduct_WhenTooLittleToSplit() {
+        Product product = new Product();
+        product.setAmountLeft(3);
+        when(mongoTemplate.findById("hot", Product.class)).thenReturn(product);
+
+        stripedStockService.distribute("hot");
+
+        verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(Product.class));
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class), eq(StockShard.class));
+    }
+
+    @Test
+    void availableStock_ShouldCountFreeStockAndShardBudgets() {
+        Product product = new Product();
+        product.setId("hot");
+        product.setAmountLeft(50);
+        product.setStripedStock(40);
+        when(mongoTemplate.find(any(Query.class), eq(StockShard.class)))
+                .thenReturn(List.of(shard(10, 0, 0), shard(4, 6, 0)));
+
+        assertEquals(24, stripedStockService.availableStock(product));
+    }
+
+    @Test
+    void withFreeStock_ShouldCompareAmountLeftMinusStripedStock() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(new MongoCustomConversions(List.of()).getSimpleTypeHolder());
+        QueryMapper queryMapper = new QueryMapper(new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext));
+
+        Document query = queryMapper.getMappedObject(StripedStockService.withFreeStock("hot", 2).getQueryObject(),
+                mappingContext.getPersistentEntity(Product.class));
+
+        assertEquals("hot", query.get("_id"));
+        assertEquals(Document.parse("{ $gte: [ { $subtract: [ '$amountLeft', { $ifNull: [ '$stripedStock', 0 ] } ] }, 2 ] }"),
+                query.get("$expr"));
+    }
+
+    private static UpdateResult updated(long count) {
+        return UpdateResult.acknowledged(count, count, null);
+    }
+
+    private static StockShard shard(int budget, int consumed, int sold) {
+        StockShard shard = new StockShard();
+        shard.setId("hot:0");
+        shard.setProductId("hot");
+        shard.setBudget(budget);
+        shard.setConsumed(consumed);
+        shard.setSold(sold);
+        return shard;
+    }
+}